@@ -0,0 +1,68 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.benchmark;
+
+import io.micrometer.core.instrument.Tags;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils;
+
+/**
+ * Measures the rendering of a letter's HTML to the in-memory PDF uploaded to Gov Notify.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HtmlPdfGeneratorBenchmark {
+
+    @Param({
+        "CSIDVDEFLET/v1.1",
+        "IDVPSCDEFAULT/v1.1",
+        "IDVPSCEXT1/v1.0",
+        "IDVPSCEXT2/v1.0",
+        "IDVPSCDIRNEW/v1.0",
+        "IDVPSCDIRTRAN/v1.0",
+        "new_psc_direction_letter_v1"
+    })
+    public String template;
+
+    @Param({"false", "true"})
+    public boolean welsh;
+
+    private HtmlPdfGenerator pdfGenerator;
+    private String html;
+    private Tags tags;
+
+    @Setup
+    public void setUp() {
+        var templateKey = LetterFixtures.templateKey(template);
+        pdfGenerator = LetterFixtures.htmlPdfGenerator(LetterFixtures.svgArtworkCache());
+        tags = MetricsUtils.createLetterTags(templateKey);
+        html = LetterFixtures.templatePersonaliser().personaliseLetterTemplate(
+                templateKey,
+                LetterFixtures.REFERENCE,
+                LetterFixtures.personalisationDetails(welsh),
+                LetterFixtures.address());
+    }
+
+    @Benchmark
+    public byte[] generatePdfFromHtml() throws IOException {
+        try (var pdf = pdfGenerator.generatePdfFromHtml(html, LetterFixtures.REFERENCE, tags)) {
+            return pdf.readAllBytes();
+        }
+    }
+
+}
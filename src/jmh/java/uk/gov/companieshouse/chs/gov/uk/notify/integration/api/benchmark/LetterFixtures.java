@@ -0,0 +1,97 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.benchmark;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ChsGovUkNotifyIntegrationService.APPLICATION_NAMESPACE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.COMPANY_NAME;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.COMPANY_NUMBER;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.EXTENSION_REQUEST_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IDV_START_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IDV_VERIFICATION_DUE_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IS_LLP;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IS_WELSH;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.PSC_APPOINTMENT_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.PSC_NAME;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.VERIFICATION_DUE_DATE;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.PdfRendererPool;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.SvgArtworkCache;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.SvgReplacedElementFactory;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.TemplateLookup;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.LetterTemplateEngines;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.PathsPublisher;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.validation.TemplateContextValidator;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * The letter data and the rendering pipeline components shared by the benchmarks, wired up as
+ * the application would wire them, but without starting the application.
+ */
+final class LetterFixtures {
+
+    static final String REFERENCE = "benchmark-reference";
+
+    static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAMESPACE);
+
+    private LetterFixtures() {
+        // static fixtures only
+    }
+
+    static LetterTemplateKey templateKey(final String template) {
+        var separator = template.indexOf('/');
+        return separator < 0
+                ? new LetterTemplateKey(LetterTemplateKey.CHIPS_APPLICATION_ID, null, template)
+                : new LetterTemplateKey(LetterTemplateKey.CHIPS_APPLICATION_ID,
+                        template.substring(0, separator), template.substring(separator + 1));
+    }
+
+    static Map<String, String> personalisationDetails(final boolean welsh) {
+        var details = new HashMap<String, String>();
+        details.put(COMPANY_NAME, "BENCHMARK LIMITED");
+        details.put(COMPANY_NUMBER, "00006400");
+        details.put(PSC_NAME, "Vaughan Jones");
+        details.put(IS_LLP, "false");
+        details.put(VERIFICATION_DUE_DATE, "21 March 2025");
+        details.put(IDV_VERIFICATION_DUE_DATE, "21 March 2025");
+        details.put(IDV_START_DATE, "7 February 2025");
+        details.put(PSC_APPOINTMENT_DATE, "24 June 2020");
+        details.put(EXTENSION_REQUEST_DATE, "15 February 2025");
+        if (welsh) {
+            details.put(IS_WELSH, "true");
+        }
+        return details;
+    }
+
+    static AddressDao address() {
+        var address = new AddressDao();
+        address.setAddressLine1("Vaughan Jones");
+        address.setAddressLine2("Crown Way");
+        address.setAddressLine3("Cardiff");
+        address.setAddressLine4("CF14 3UZ");
+        return address;
+    }
+
+    static TemplatePersonaliser templatePersonaliser() {
+        return new TemplatePersonaliser(new LetterTemplateEngines(), new TemplateLookup(),
+                new TemplateContextValidator(), new PathsPublisher());
+    }
+
+    static SvgArtworkCache svgArtworkCache() {
+        return new SvgArtworkCache(new SimpleMeterRegistry());
+    }
+
+    static HtmlPdfGenerator htmlPdfGenerator(final SvgArtworkCache artworkCache) {
+        var meterRegistry = new SimpleMeterRegistry();
+        var svgReplacedElementFactory =
+                new SvgReplacedElementFactory(LOGGER, meterRegistry, artworkCache);
+        return new HtmlPdfGenerator(new PdfRendererPool(svgReplacedElementFactory, 1, LOGGER),
+                artworkCache, false, meterRegistry, LOGGER);
+    }
+
+}
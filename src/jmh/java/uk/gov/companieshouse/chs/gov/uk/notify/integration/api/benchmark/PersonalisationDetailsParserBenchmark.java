@@ -0,0 +1,48 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser;
+
+/**
+ * Measures the parsing of personalisation details held as a JSON string, as they are in letter
+ * requests saved before they were held as a sub-document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonalisationDetailsParserBenchmark {
+
+    @Param({"false", "true"})
+    public boolean welsh;
+
+    private String personalisationDetails;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        personalisationDetails = new ObjectMapper()
+                .writeValueAsString(LetterFixtures.personalisationDetails(welsh));
+    }
+
+    @Benchmark
+    public Map<String, Object> parsePersonalisationDetails() {
+        return PersonalisationDetailsParser.parsePersonalisationDetails(personalisationDetails);
+    }
+
+}
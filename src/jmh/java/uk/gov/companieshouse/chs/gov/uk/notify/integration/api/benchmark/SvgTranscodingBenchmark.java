@@ -0,0 +1,86 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.benchmark;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.pdf.PdfTemplate;
+import com.lowagie.text.pdf.PdfWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.svg.SVGDocument;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.SvgArtworkCache;
+
+/**
+ * Measures the drawing of the SVG artwork of a letter into a new letter PDF, as carried out by
+ * <code>SvgReplacedElement.paint</code>, either with the artwork already transcoded by Batik
+ * for an earlier letter (<code>transcoded</code>), or transcoding it afresh.
+ * <p>
+ * The artwork is common to all templates, differing only between Welsh and English letters.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SvgTranscodingBenchmark {
+
+    private static final String ARTWORK_DIRECTORY = "/assets/templates/letters/common/";
+
+    @Param({"false", "true"})
+    public boolean welsh;
+
+    @Param({"false", "true"})
+    public boolean transcoded;
+
+    private final SvgArtworkCache artworkCache = LetterFixtures.svgArtworkCache();
+    private SVGDocument logo;
+    private SVGDocument footer;
+
+    @Setup
+    public void setUp() throws IOException {
+        var prefix = welsh ? "welsh_" : "";
+        logo = parse(prefix + "logo.svg");
+        footer = parse(prefix + "page_1_footer_artwork.svg");
+    }
+
+    @Benchmark
+    public PdfTemplate[] paint() {
+        if (!transcoded) {
+            artworkCache.clear();
+        }
+        var document = new Document();
+        var writer = PdfWriter.getInstance(document, OutputStream.nullOutputStream());
+        document.open();
+        var contentByte = writer.getDirectContent();
+        var templates = new PdfTemplate[] {
+            artworkCache.getTemplate(logo, contentByte, 150f, 60f),
+            artworkCache.getTemplate(footer, contentByte, 595f, 120f)
+        };
+        for (PdfTemplate template : templates) {
+            contentByte.addTemplate(template, 0, 0);
+        }
+        document.close();
+        return templates;
+    }
+
+    private static SVGDocument parse(final String filename) throws IOException {
+        var url = SvgTranscodingBenchmark.class.getResource(ARTWORK_DIRECTORY + filename);
+        var factory = new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName());
+        return factory.createSVGDocument(url.toString());
+    }
+
+}
@@ -0,0 +1,64 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
+
+/**
+ * Measures the population of a letter template with the letter's data to produce its HTML.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplatePersonaliserBenchmark {
+
+    @Param({
+        "CSIDVDEFLET/v1.1",
+        "IDVPSCDEFAULT/v1.1",
+        "IDVPSCEXT1/v1.0",
+        "IDVPSCEXT2/v1.0",
+        "IDVPSCDIRNEW/v1.0",
+        "IDVPSCDIRTRAN/v1.0",
+        "new_psc_direction_letter_v1"
+    })
+    public String template;
+
+    @Param({"false", "true"})
+    public boolean welsh;
+
+    private TemplatePersonaliser templatePersonaliser;
+    private LetterTemplateKey templateKey;
+    private Map<String, String> personalisationDetails;
+    private AddressDao address;
+
+    @Setup
+    public void setUp() {
+        templatePersonaliser = LetterFixtures.templatePersonaliser();
+        templateKey = LetterFixtures.templateKey(template);
+        personalisationDetails = LetterFixtures.personalisationDetails(welsh);
+        address = LetterFixtures.address();
+    }
+
+    @Benchmark
+    public String personaliseLetterTemplate() {
+        return templatePersonaliser.personaliseLetterTemplate(templateKey,
+                LetterFixtures.REFERENCE, personalisationDetails, address);
+    }
+
+}
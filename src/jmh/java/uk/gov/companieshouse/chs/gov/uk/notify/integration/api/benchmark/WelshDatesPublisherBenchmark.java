@@ -0,0 +1,46 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.WelshDatesPublisher;
+
+/**
+ * Measures the publication of the Welsh forms of a letter's dates to its template context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WelshDatesPublisherBenchmark {
+
+    @Param({"false", "true"})
+    public boolean welsh;
+
+    private Context context;
+
+    @Setup
+    public void setUp() {
+        context = new Context();
+        LetterFixtures.personalisationDetails(welsh).forEach(context::setVariable);
+    }
+
+    @Benchmark
+    public Context publishWelshDates() {
+        WelshDatesPublisher.publishWelshDates(context);
+        return context;
+    }
+
+}
@@ -2,16 +2,29 @@ package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.config;
 
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ChsGovUkNotifyIntegrationService.APPLICATION_NAMESPACE;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import uk.gov.companieshouse.api.interceptor.InternalUserInterceptor;
-import uk.gov.service.notify.NotificationClient;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.HttpClientNotifyTransport;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.SdkNotifyTransport;
 
 @Configuration
+@EnableScheduling
 public class ApplicationConfig {
 
+    /**
+     * Qualifies the transport that actually calls Gov Notify, which the mock used in
+     * non-production environments hands calls it does not simulate to.
+     */
+    public static final String GOV_NOTIFY_TRANSPORT = "govNotifyTransport";
+
     @Value("${gov.uk.notify.api.key}")
     private String apiKey;
 
@@ -27,15 +40,40 @@ public class ApplicationConfig {
     }
 
     /**
-     * Creates NotificationClient that provides communication with
-     * the Gov Notify service. Only used in production environments
-     * or when the mock is not active in other environments.
+     * Creates the transport that calls the Gov Notify service through a shared HTTP client,
+     * reusing its connection from call to call.
+     *
+     * @param baseUrl the base URL of the Gov Notify API
+     * @param connectTimeout how long to wait for a connection to Gov Notify
+     * @param requestTimeout how long to wait for Gov Notify to respond to a call
+     * @param objectMapper writes the JSON bodies of the calls
+     * @return the Gov Notify transport
+     */
+    @Bean
+    @Qualifier(GOV_NOTIFY_TRANSPORT)
+    @ConditionalOnProperty(name = "gov.uk.notify.transport", havingValue = "http-client",
+            matchIfMissing = true)
+    public NotifyTransport httpClientNotifyTransport(
+            @Value("${gov.uk.notify.api.base-url:https://api.notifications.service.gov.uk}")
+            String baseUrl,
+            @Value("${gov.uk.notify.connect-timeout:PT10S}") Duration connectTimeout,
+            @Value("${gov.uk.notify.request-timeout:PT30S}") Duration requestTimeout,
+            ObjectMapper objectMapper) {
+        return new HttpClientNotifyTransport(apiKey, baseUrl, connectTimeout, requestTimeout,
+                objectMapper);
+    }
+
+    /**
+     * Creates the transport that calls the Gov Notify service through the Gov Notify Java client,
+     * which opens a new connection for each call. Used instead of the HTTP client transport
+     * when <code>gov.uk.notify.transport=sdk</code>.
      *
-     * @return the notification client
+     * @return the Gov Notify transport
      */
     @Bean
-    @Profile("!local & !dev & !test")
-    public NotificationClient getNotificationClient() {
-        return new NotificationClient(apiKey);
+    @Qualifier(GOV_NOTIFY_TRANSPORT)
+    @ConditionalOnProperty(name = "gov.uk.notify.transport", havingValue = "sdk")
+    public NotifyTransport sdkNotifyTransport() {
+        return new SdkNotifyTransport(apiKey);
     }
 }
@@ -45,6 +45,7 @@ public class SecurityConfig implements WebMvcConfigurer {
     public void addInterceptors(final InterceptorRegistry registry) {
         registry.addInterceptor(internalUserInterceptor).addPathPatterns(
                 "/gov-uk-notify-integration/letter",
+                "/gov-uk-notify-integration/letters",
                 "/gov-uk-notify-integration/letters/reference",
                 "/gov-uk-notify-integration/letters/view_by_reference");
     }
@@ -0,0 +1,221 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.emaildispatcher;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.chs.notification.integration.model.EmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult.Outcome;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.WelshDatesPublisher;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Sends many emails through the Gov Notify service in one go, keeping the round trips to the
+ * database to a fixed number per batch rather than several per email.
+ * <p>
+ * The email requests are loaded with a single query, claimed for sending with a single update
+ * (so that no email being sent by another caller is sent again), their status changes are
+ * written with bulk writes, and the Gov Notify responses are stored with a single bulk insert.
+ * The emails are sent concurrently, each on its own virtual thread, subject to the limit on
+ * concurrent calls to the Gov Notify email endpoint imposed by the {@link GovUkNotifyService}.
+ * An email that Gov Notify fails to accept is left to the {@link SendRetryScheduler}, when
+ * retrying is enabled, so that the emails failed by an outage are sent once it is over.
+ * </p>
+ */
+@Component
+public class BulkEmailDispatcher {
+
+    private record UniqueReference(String appId, String reference) { }
+
+    private record PreparedEmail(NotificationEmailRequest request,
+                                 Map<String, Object> personalisationDetails) { }
+
+    private final GovUkNotifyService govUkNotifyService;
+    private final NotificationDatabaseService notificationDatabaseService;
+    private final SendRetryScheduler sendRetryScheduler;
+    private final Logger logger;
+
+    public BulkEmailDispatcher(GovUkNotifyService govUkNotifyService,
+                               NotificationDatabaseService notificationDatabaseService,
+                               SendRetryScheduler sendRetryScheduler,
+                               Logger logger) {
+        this.govUkNotifyService = govUkNotifyService;
+        this.notificationDatabaseService = notificationDatabaseService;
+        this.sendRetryScheduler = sendRetryScheduler;
+        this.logger = logger;
+    }
+
+    /**
+     * Sends the emails requested.
+     * @param requests the (app ID, reference) pairs identifying the email requests to be sent
+     * @param contextId the context ID used for logging
+     * @return the outcome for each email requested, in the order requested
+     */
+    public List<BulkSendResult> sendEmails(final List<EmailRequest> requests,
+                                           final String contextId) {
+        var references = requests.stream().map(EmailRequest::getReference).collect(Collectors.toSet());
+        var savedRequests = notificationDatabaseService.getEmails(references).stream()
+                .collect(Collectors.toMap(
+                        saved -> new UniqueReference(
+                                saved.getRequest().getSenderDetails().getAppId(),
+                                saved.getRequest().getSenderDetails().getReference()),
+                        Function.identity(),
+                        (first, second) -> first));
+
+        var outcomes = new LinkedHashMap<UniqueReference, Outcome>();
+        var toSend = new LinkedHashMap<UniqueReference, PreparedEmail>();
+        for (var request : requests) {
+            var key = new UniqueReference(request.getAppId(), request.getReference());
+            if (outcomes.containsKey(key) || toSend.containsKey(key)) {
+                continue;
+            }
+            var saved = savedRequests.get(key);
+            if (saved == null) {
+                outcomes.put(key, Outcome.NOT_FOUND);
+            } else if (RequestStatus.SENT.equals(saved.getStatus())) {
+                outcomes.put(key, Outcome.ALREADY_SENT);
+            } else {
+                var personalisationDetails = preparePersonalisationDetails(saved, contextId);
+                if (personalisationDetails == null) {
+                    outcomes.put(key, Outcome.INVALID);
+                } else {
+                    toSend.put(key, new PreparedEmail(saved, personalisationDetails));
+                }
+            }
+        }
+
+        outcomes.putAll(send(toSend, contextId));
+
+        logger.infoContext(contextId, "Processed bulk email request for " + outcomes.size()
+                + " emails", createLogMap(contextId, "bulk_email_send"));
+
+        return requests.stream()
+                .map(request -> new UniqueReference(request.getAppId(), request.getReference()))
+                .map(key -> new BulkSendResult(key.appId(), key.reference(), outcomes.get(key)))
+                .toList();
+    }
+
+    private Map<UniqueReference, Outcome> send(final Map<UniqueReference, PreparedEmail> toSend,
+                                               final String contextId) {
+        var outcomes = new LinkedHashMap<UniqueReference, Outcome>();
+        if (toSend.isEmpty()) {
+            return outcomes;
+        }
+
+        var claimed = notificationDatabaseService.claimRequests(
+                        toSend.values().stream().map(PreparedEmail::request).toList(),
+                        NotificationEmailRequest.class).stream()
+                .collect(Collectors.toMap(NotificationEmailRequest::getId, Function.identity()));
+
+        var claimedRequests = new LinkedHashMap<UniqueReference, NotificationEmailRequest>();
+        var futures = new LinkedHashMap<UniqueReference, Future<GovUkNotifyService.EmailResp>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            toSend.forEach((key, email) -> {
+                var claimedRequest = claimed.get(email.request().getId());
+                if (claimedRequest == null) {
+                    outcomes.put(key, Outcome.ALREADY_PROCESSING);
+                    return;
+                }
+                claimedRequests.put(key, claimedRequest);
+                var request = email.request().getRequest();
+                futures.put(key, executor.submit(() -> govUkNotifyService.sendEmail(
+                        request.getRecipientDetails().getEmailAddress(),
+                        request.getEmailDetails().getTemplateId(),
+                        request.getSenderDetails().getReference(),
+                        email.personalisationDetails())));
+            });
+        }
+
+        var responses = new ArrayList<GovUkNotifyService.EmailResp>();
+        var sent = new ArrayList<NotificationEmailRequest>();
+        var failed = new ArrayList<NotificationEmailRequest>();
+        var rateLimited = new ArrayList<NotificationEmailRequest>();
+        futures.forEach((key, future) -> {
+            var request = claimedRequests.get(key);
+            if (isRateLimited(future)) {
+                rateLimited.add(request);
+                outcomes.put(key, Outcome.RATE_LIMITED);
+                return;
+            }
+            var response = getResponse(future, contextId);
+            responses.add(response);
+            if (response.success()) {
+                sent.add(request);
+                outcomes.put(key, Outcome.SENT);
+            } else if (sendRetryScheduler.scheduleRetry(request, NotificationEmailRequest.class,
+                    response.httpStatus())) {
+                outcomes.put(key, Outcome.RETRY_SCHEDULED);
+            } else {
+                failed.add(request);
+                outcomes.put(key, Outcome.FAILED);
+            }
+        });
+
+        notificationDatabaseService.storeEmailResponses(responses);
+        notificationDatabaseService.updateStatuses(sent, NotificationEmailRequest.class,
+                RequestStatus.SENT);
+        notificationDatabaseService.updateStatuses(failed, NotificationEmailRequest.class,
+                RequestStatus.FAILED);
+        if (!rateLimited.isEmpty()) {
+            logger.infoContext(contextId, rateLimited.size()
+                    + " emails not sent as the Gov Notify rate limit was reached",
+                    createLogMap(contextId, "email_rate_limited"));
+            notificationDatabaseService.updateStatuses(rateLimited,
+                    NotificationEmailRequest.class, RequestStatus.PENDING);
+        }
+        return outcomes;
+    }
+
+    private static boolean isRateLimited(final Future<GovUkNotifyService.EmailResp> future) {
+        return future.state() == Future.State.FAILED
+                && future.exceptionNow() instanceof NotifyRateLimitExceededException;
+    }
+
+    private GovUkNotifyService.EmailResp getResponse(
+            final Future<GovUkNotifyService.EmailResp> future, final String contextId) {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.errorContext(contextId, ie, createLogMap(contextId, "email_failure"));
+        } catch (ExecutionException ee) {
+            logger.errorContext(contextId, new Exception("Failed to send email: "
+                    + ee.getCause().getMessage()), createLogMap(contextId, "email_failure"));
+        }
+        return new GovUkNotifyService.EmailResp(false, null);
+    }
+
+    private Map<String, Object> preparePersonalisationDetails(
+            final NotificationEmailRequest emailRequest, final String contextId) {
+        try {
+            // Copied, so that the Welsh dates published into it are not saved with the request.
+            Map<String, Object> personalisationDetails = new HashMap<>(
+                    emailRequest.getRequest().getEmailDetails().getPersonalisationDetails());
+            WelshDatesPublisher.publishWelshDates(personalisationDetails);
+            return personalisationDetails;
+        } catch (Exception e) {
+            logger.errorContext(contextId, new Exception(
+                    "Failed to prepare personalisation details for email "
+                            + emailRequest.getId() + ": " + e.getMessage()),
+                    createLogMap(contextId, "parse_error"));
+            return null;
+        }
+    }
+
+}
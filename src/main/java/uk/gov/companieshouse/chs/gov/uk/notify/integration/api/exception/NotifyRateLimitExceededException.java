@@ -0,0 +1,24 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception;
+
+import java.time.Duration;
+
+/**
+ * Exception thrown to indicate that a notification has not been sent because the budget of
+ * requests that may be made to Gov Notify has been used up for now.
+ */
+public class NotifyRateLimitExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public NotifyRateLimitExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return how long it will be until another request may be made to Gov Notify
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,273 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ValidationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.chs.notification.integration.model.LetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult.Outcome;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Renders and sends many letters through the Gov Notify service in one go.
+ * <p>
+ * The letter requests are loaded with a single query, claimed for sending with a single update
+ * (so that no letter being sent by another caller is sent again), their status changes are
+ * written with bulk writes, and the Gov Notify responses are stored with a single bulk insert.
+ * Letter PDFs are rendered in parallel by a pool of render threads sized to the number of cores,
+ * and each PDF is uploaded to Gov Notify (on a virtual thread) as soon as it has been rendered,
+ * so that uploads proceed whilst later letters are still rendering. The number of concurrent
+ * uploads is limited by the {@link GovUkNotifyService}. So that rendering cannot run ahead of
+ * uploading and fill the heap with PDFs awaiting upload, a letter is rendered only once a permit
+ * is available, which it holds until it has been uploaded. There are enough permits for each
+ * upload allowed at once, and for each render thread to have one PDF ready to upload next.
+ * A letter that Gov Notify fails to accept is left to the {@link SendRetryScheduler}, when
+ * retrying is enabled, so that the letters failed by an outage are sent once it is over.
+ * </p>
+ */
+@Component
+public class BulkLetterDispatcher {
+
+    private record UniqueReference(String appId, String reference) { }
+
+    private final LetterDispatcher letterDispatcher;
+    private final NotificationDatabaseService notificationDatabaseService;
+    private final SendRetryScheduler sendRetryScheduler;
+    private final ExecutorService renderExecutor;
+    private final ExecutorService uploadExecutor;
+    private final Semaphore renderedPdfPermits;
+    private final Logger logger;
+
+    public BulkLetterDispatcher(
+            final LetterDispatcher letterDispatcher,
+            final NotificationDatabaseService notificationDatabaseService,
+            final SendRetryScheduler sendRetryScheduler,
+            @Value("${bulk.letter.render-threads:0}") final int renderThreads,
+            @Value("${gov.uk.notify.letter.max-concurrent-requests:5}")
+            final int maxConcurrentUploads,
+            final Logger logger) {
+        this.letterDispatcher = letterDispatcher;
+        this.notificationDatabaseService = notificationDatabaseService;
+        this.sendRetryScheduler = sendRetryScheduler;
+        this.logger = logger;
+        var renderThreadCount =
+                renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        this.renderExecutor = Executors.newFixedThreadPool(renderThreadCount,
+                new CustomizableThreadFactory("bulk-letter-render-"));
+        this.uploadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.renderedPdfPermits = new Semaphore(maxConcurrentUploads + renderThreadCount, true);
+    }
+
+    /**
+     * Renders and sends the letters requested.
+     * @param requests the (app ID, reference) pairs identifying the letter requests to be sent
+     * @param contextId the context ID used for logging
+     * @return the outcome for each letter requested, in the order requested
+     */
+    public List<BulkSendResult> sendLetters(final List<LetterRequest> requests,
+                                            final String contextId) {
+        var references = requests.stream().map(LetterRequest::getReference).collect(Collectors.toSet());
+        var savedRequests = notificationDatabaseService.getLetters(references).stream()
+                .collect(Collectors.toMap(
+                        saved -> new UniqueReference(
+                                saved.getRequest().getSenderDetails().getAppId(),
+                                saved.getRequest().getSenderDetails().getReference()),
+                        Function.identity(),
+                        (first, second) -> first));
+
+        var outcomes = new LinkedHashMap<UniqueReference, Outcome>();
+        var toSend = new LinkedHashMap<UniqueReference, NotificationLetterRequest>();
+        for (var request : requests) {
+            var key = new UniqueReference(request.getAppId(), request.getReference());
+            if (outcomes.containsKey(key) || toSend.containsKey(key)) {
+                continue;
+            }
+            var saved = savedRequests.get(key);
+            if (saved == null) {
+                outcomes.put(key, Outcome.NOT_FOUND);
+            } else if (RequestStatus.SENT.equals(saved.getStatus())) {
+                outcomes.put(key, Outcome.ALREADY_SENT);
+            } else {
+                toSend.put(key, saved);
+            }
+        }
+
+        outcomes.putAll(send(toSend, contextId));
+
+        logger.infoContext(contextId, "Processed bulk letter request for " + outcomes.size()
+                + " letters", createLogMap(contextId, "bulk_letter_send"));
+
+        return requests.stream()
+                .map(request -> new UniqueReference(request.getAppId(), request.getReference()))
+                .map(key -> new BulkSendResult(key.appId(), key.reference(), outcomes.get(key)))
+                .toList();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renderExecutor.shutdownNow();
+        uploadExecutor.shutdownNow();
+    }
+
+    private Map<UniqueReference, Outcome> send(
+            final Map<UniqueReference, NotificationLetterRequest> toSend,
+            final String contextId) {
+        var outcomes = new LinkedHashMap<UniqueReference, Outcome>();
+        if (toSend.isEmpty()) {
+            return outcomes;
+        }
+
+        var claimed = notificationDatabaseService.claimRequests(toSend.values(),
+                        NotificationLetterRequest.class).stream()
+                .collect(Collectors.toMap(NotificationLetterRequest::getId, Function.identity()));
+
+        var claimedRequests = new LinkedHashMap<UniqueReference, NotificationLetterRequest>();
+        var pipelines = new LinkedHashMap<UniqueReference, CompletableFuture<GovUkNotifyService.LetterResp>>();
+        toSend.forEach((key, letterRequest) -> {
+            var claimedRequest = claimed.get(letterRequest.getId());
+            if (claimedRequest == null) {
+                outcomes.put(key, Outcome.ALREADY_PROCESSING);
+                return;
+            }
+            claimedRequests.put(key, claimedRequest);
+            pipelines.put(key, CompletableFuture
+                    .supplyAsync(() -> render(letterRequest, contextId), renderExecutor)
+                    .thenApplyAsync(pdf -> upload(letterRequest, pdf, contextId), uploadExecutor));
+        });
+
+        var responses = new ArrayList<GovUkNotifyService.LetterResp>();
+        var sent = new ArrayList<NotificationLetterRequest>();
+        var failed = new ArrayList<NotificationLetterRequest>();
+        var rateLimited = new ArrayList<NotificationLetterRequest>();
+        pipelines.forEach((key, pipeline) -> {
+            var request = claimedRequests.get(key);
+            try {
+                var response = pipeline.join();
+                responses.add(response);
+                if (response.success()) {
+                    sent.add(request);
+                    outcomes.put(key, Outcome.SENT);
+                } else if (sendRetryScheduler.scheduleRetry(request,
+                        NotificationLetterRequest.class, response.httpStatus())) {
+                    outcomes.put(key, Outcome.RETRY_SCHEDULED);
+                } else {
+                    failed.add(request);
+                    outcomes.put(key, Outcome.FAILED);
+                }
+            } catch (CompletionException ce) {
+                var cause = ce.getCause();
+                if (cause instanceof NotifyRateLimitExceededException) {
+                    rateLimited.add(request);
+                    outcomes.put(key, Outcome.RATE_LIMITED);
+                    return;
+                }
+                logger.errorContext(contextId, new Exception("Failed to process letter "
+                        + key.reference() + ": " + cause.getMessage()),
+                        createLogMap(contextId, "letter_failure"));
+                failed.add(request);
+                outcomes.put(key, cause instanceof ValidationException
+                        ? Outcome.INVALID : Outcome.FAILED);
+            }
+        });
+
+        notificationDatabaseService.storeLetterResponses(responses);
+        notificationDatabaseService.updateStatuses(sent, NotificationLetterRequest.class,
+                RequestStatus.SENT);
+        notificationDatabaseService.updateStatuses(failed, NotificationLetterRequest.class,
+                RequestStatus.FAILED);
+        if (!rateLimited.isEmpty()) {
+            logger.infoContext(contextId, rateLimited.size()
+                    + " letters not sent as the Gov Notify rate limit was reached",
+                    createLogMap(contextId, "letter_rate_limited"));
+            notificationDatabaseService.updateStatuses(rateLimited,
+                    NotificationLetterRequest.class, RequestStatus.PENDING);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Renders the letter once a permit is available. The permit is held until the letter has
+     * been uploaded, or released here should the letter fail to render.
+     */
+    private InputStream render(final NotificationLetterRequest letterRequest,
+                               final String contextId) {
+        try {
+            renderedPdfPermits.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ie);
+        }
+        var request = letterRequest.getRequest();
+        var letterDetails = request.getLetterDetails();
+        try {
+            return letterDispatcher.renderLetter(
+                    toLetterReference(letterRequest),
+                    letterDetails.getTemplateId(),
+                    request.getRecipientDetails().getPhysicalAddress(),
+                    letterDetails.getPersonalisationDetails(),
+                    contextId);
+        } catch (IOException ioe) {
+            renderedPdfPermits.release();
+            throw new UncheckedIOException(ioe);
+        } catch (RuntimeException re) {
+            renderedPdfPermits.release();
+            throw re;
+        }
+    }
+
+    private GovUkNotifyService.LetterResp upload(final NotificationLetterRequest letterRequest,
+                                                 final InputStream pdf,
+                                                 final String contextId) {
+        var reference = toLetterReference(letterRequest);
+        var templateKey = new LetterTemplateKey(reference.appId(),
+                reference.letterId(),
+                letterRequest.getRequest().getLetterDetails().getTemplateId());
+        try (pdf) {
+            return letterDispatcher.sendAndArchive(
+                    Postage.forLetter(templateKey),
+                    templateKey,
+                    reference.getFullReference(),
+                    pdf,
+                    contextId);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } finally {
+            renderedPdfPermits.release();
+        }
+    }
+
+    private static LetterReference toLetterReference(final NotificationLetterRequest letterRequest) {
+        var request = letterRequest.getRequest();
+        return new LetterReference(
+                request.getSenderDetails().getAppId(),
+                request.getLetterDetails().getLetterId(),
+                request.getSenderDetails().getReference());
+    }
+
+}
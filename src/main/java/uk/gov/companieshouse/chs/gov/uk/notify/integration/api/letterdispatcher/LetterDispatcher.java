@@ -1,43 +1,70 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
 
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils.OUTCOME;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils.createLetterTags;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.SentLetterArchive;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
-import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser;
 import uk.gov.companieshouse.logging.Logger;
 
 /**
  * Responsible for the creation and sending of letter PDFs through the Gov Notify service.
+ * <p>
+ * The time taken by each stage of a letter's dispatch, and the outcome of its dispatch, are
+ * recorded as metrics tagged with the letter's template (see
+ * {@link uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils}).
+ * </p>
  */
 @Component
 public class LetterDispatcher {
 
+    static final String PERSONALISATION_METRIC = "letter.personalisation";
+    static final String UPLOAD_METRIC = "letter.notify.upload";
+    static final String MONGO_METRIC = "letter.mongo";
+    static final String DISPATCH_METRIC = "letter.dispatch";
+
+    static final String SENT = "sent";
+    static final String FAILED = "failed";
+    static final String ERROR = "error";
+    static final String RATE_LIMITED = "rate_limited";
+
     private final GovUkNotifyService govUkNotifyService;
     private final NotificationDatabaseService notificationDatabaseService;
     private final TemplatePersonaliser templatePersonaliser;
     private final HtmlPdfGenerator pdfGenerator;
-    private final PersonalisationDetailsParser parser;
+    private final SentLetterArchive sentLetterArchive;
+    private final MeterRegistry meterRegistry;
     private final Logger logger;
 
     public LetterDispatcher(GovUkNotifyService govUkNotifyService,
                             NotificationDatabaseService notificationDatabaseService,
                             TemplatePersonaliser templatePersonaliser,
                             HtmlPdfGenerator pdfGenerator,
-                            PersonalisationDetailsParser parser,
+                            SentLetterArchive sentLetterArchive,
+                            MeterRegistry meterRegistry,
                             Logger logger) {
         this.govUkNotifyService = govUkNotifyService;
         this.notificationDatabaseService = notificationDatabaseService;
         this.templatePersonaliser = templatePersonaliser;
         this.pdfGenerator = pdfGenerator;
-        this.parser = parser;
+        this.sentLetterArchive = sentLetterArchive;
+        this.meterRegistry = meterRegistry;
         this.logger = logger;
     }
 
@@ -46,63 +73,132 @@ public class LetterDispatcher {
             final LetterReference reference,
             final String templateId,
             final AddressDao address,
-            final String personalisationDetailsString,
+            final Map<String, ?> personalisationDetails,
             final String contextId) throws IOException {
-        var letter = personaliseLetter(
+        var templateKey = new LetterTemplateKey(reference.appId(), reference.letterId(), templateId);
+
+        try (var precompiledPdf = renderLetter(
                 reference,
                 templateId,
                 address,
-                personalisationDetailsString,
-                contextId);
-        String govNotifyReference = reference.getFullReference();
+                personalisationDetails,
+                contextId)) {
+
+            logger.debugContext( contextId, "Attempting to send letter", null );
+            var response = sendAndArchive(postage, templateKey, reference.getFullReference(),
+                    precompiledPdf, contextId);
+
+            logger.debugContext( contextId, "Storing letter response in database",
+                    createLogMap(contextId, "store_letter_response"));
+            timer(MONGO_METRIC, createLetterTags(templateKey).and("operation", "store_response"))
+                    .record(() -> notificationDatabaseService.storeResponse(response));
 
-        return sendLetterPdf(postage, govNotifyReference, contextId, letter);
+            return response;
+        }
     }
 
-    private String personaliseLetter(
+    /**
+     * Renders the letter PDF without sending it, so that rendering and sending may be carried
+     * out by different threads.
+     * @return the letter PDF, which the caller must close
+     * @throws IOException should there be a problem generating the PDF
+     */
+    public InputStream renderLetter(
             final LetterReference reference,
             final String templateId,
             final AddressDao address,
-            final String personalisationDetailsString,
-            final String contextId) {
-
-        var personalisationDetails =
-                parser.parsePersonalisationDetails(personalisationDetailsString, contextId);
+            final Map<String, ?> personalisationDetails,
+            final String contextId) throws IOException {
+        var templateKey = new LetterTemplateKey(reference.appId(), reference.letterId(), templateId);
+        var tags = createLetterTags(templateKey);
+        try {
+            var letter = timer(PERSONALISATION_METRIC, tags).record(() -> personaliseLetter(
+                    templateKey,
+                    reference.reference(),
+                    address,
+                    personalisationDetails));
+            logger.debugContext( contextId, "Attempting to generate PDF", null );
+            return pdfGenerator.generatePdfFromHtml(letter, reference.getFullReference(), tags);
+        } catch (IOException | RuntimeException ex) {
+            outcomeCounter(tags, ERROR).increment();
+            throw ex;
+        }
+    }
 
+    private String personaliseLetter(
+            final LetterTemplateKey templateKey,
+            final String reference,
+            final AddressDao address,
+            final Map<String, ?> personalisationDetails) {
         return templatePersonaliser.personaliseLetterTemplate(
-                new LetterTemplateKey(
-                        reference.appId(),
-                        reference.letterId(),
-                        templateId),
-                        reference.reference(),
-                        personalisationDetails,
-                        address);
+                templateKey,
+                reference,
+                personalisationDetails,
+                address);
     }
 
-    private GovUkNotifyService.LetterResp
-            sendLetterPdf(
-                        final Postage postage,
-                        final String reference,
-                        final String contextId,
-                        final String letter) throws IOException {
-
-        logger.debugContext( contextId, "Attempting to generate PDF", null );
-        try (var precompiledPdf = pdfGenerator.generatePdfFromHtml(letter, reference)) {
-
-            logger.debugContext( contextId, "Attempting to send letter", null );
-            var response =
-                    govUkNotifyService.sendLetter(
-                            postage,
-                            reference,
-                            precompiledPdf);
+    /**
+     * Sends the letter PDF through Gov Notify, archiving the PDF once sent when archiving is
+     * enabled.
+     * @param postage the postage with which the letter is sent
+     * @param templateKey the key of the letter's template, with which its metrics are tagged
+     * @param reference the reference with which the letter is sent to Gov Notify
+     * @param precompiledPdf the letter PDF, which the caller must close
+     * @param contextId the context ID used for logging
+     * @return the Gov Notify response
+     * @throws IOException should there be a problem reading the PDF
+     */
+    public GovUkNotifyService.LetterResp sendAndArchive(
+            final Postage postage,
+            final LetterTemplateKey templateKey,
+            final String reference,
+            final InputStream precompiledPdf,
+            final String contextId) throws IOException {
+        var tags = createLetterTags(templateKey);
+        if (!sentLetterArchive.isEnabled()) {
+            return upload(postage, reference, precompiledPdf, tags);
+        }
 
-            logger.debugContext( contextId, "Storing letter response in database",
-                    createLogMap(contextId, "store_letter_response"));
-            notificationDatabaseService.storeResponse(response);
+        var pdf = new SentLetterArchive.ArchivingInputStream(precompiledPdf);
+        var response = upload(postage, reference, pdf, tags);
+        if (response.success()) {
+            try {
+                sentLetterArchive.archive(reference, pdf);
+            } catch (RuntimeException re) {
+                // The letter has been sent, so failing to archive it must not fail the send.
+                logger.errorContext(contextId, re, createLogMap(contextId, "archive_letter_error"));
+            }
+        }
+        return response;
+    }
 
-            return response;
+    private GovUkNotifyService.LetterResp upload(final Postage postage,
+                                                 final String reference,
+                                                 final InputStream precompiledPdf,
+                                                 final Tags tags) {
+        var upload = Timer.start(meterRegistry);
+        GovUkNotifyService.LetterResp response;
+        try {
+            response = govUkNotifyService.sendLetter(postage, reference, precompiledPdf);
+        } catch (NotifyRateLimitExceededException nrlee) {
+            outcomeCounter(tags, RATE_LIMITED).increment();
+            throw nrlee;
         }
+        var outcome = response.success() ? SENT : FAILED;
+        upload.stop(timer(UPLOAD_METRIC, tags.and(OUTCOME, outcome)));
+        outcomeCounter(tags, outcome).increment();
+        return response;
+    }
+
+    private Timer timer(final String name, final Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
+    private Counter outcomeCounter(final Tags tags, final String outcome) {
+        return meterRegistry.counter(DISPATCH_METRIC, tags.and(OUTCOME, outcome));
     }
 
 }
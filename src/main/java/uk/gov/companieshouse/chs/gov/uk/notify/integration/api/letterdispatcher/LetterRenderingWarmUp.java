@@ -0,0 +1,158 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.Constants.DATE_FORMATTER;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.COMPANY_NAME;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.COMPANY_NUMBER;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.EXTENSION_REQUEST_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IDV_START_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IDV_VERIFICATION_DUE_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IS_LLP;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.PSC_APPOINTMENT_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.PSC_NAME;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.VERIFICATION_DUE_DATE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils.WARM_UP;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils.createLetterTags;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Renders (without sending) a synthetic letter with each letter template at start up, when
+ * enabled, so that the first real letters do not pay for the class loading, JIT compilation,
+ * font, colour profile, SVG and template parsing that the first render of each template incurs.
+ * <p>
+ * The letters are rendered outside the {@link LetterDispatcher}, so that no personalisation or
+ * dispatch metrics are recorded for them, and the PDF metrics recorded are tagged
+ * <code>warm_up=true</code>, keeping these cold renders apart from those of real letters.
+ * </p>
+ * <p>
+ * The health check reports the application as down until the warm up is complete.
+ * </p>
+ */
+@Component
+public class LetterRenderingWarmUp implements ApplicationRunner, HealthIndicator {
+
+    static final String WARM_UP_CONTEXT_ID = "letter-rendering-warm-up";
+    static final String WARM_UP_REFERENCE = "warm-up";
+
+    static final Set<LetterTemplateKey> TEMPLATES = Stream.of(
+                    LetterTemplateKey.CSIDVDEFLET_TEMPLATES,
+                    LetterTemplateKey.IDVPSCDEFAULT_TEMPLATES,
+                    LetterTemplateKey.IDVPSCEXT_TEMPLATES,
+                    LetterTemplateKey.NEW_PSC_DIRECTION_TEMPLATES,
+                    LetterTemplateKey.TRANSITIONAL_PSC_DIRECTION_TEMPLATES)
+            .flatMap(Set::stream)
+            .collect(Collectors.toSet());
+
+    private final TemplatePersonaliser templatePersonaliser;
+    private final HtmlPdfGenerator pdfGenerator;
+    private final boolean enabled;
+    private final Logger logger;
+
+    private final Map<String, Long> warmUpMillis = new ConcurrentHashMap<>();
+    private volatile boolean warm;
+
+    public LetterRenderingWarmUp(final TemplatePersonaliser templatePersonaliser,
+                                 final HtmlPdfGenerator pdfGenerator,
+                                 @Value("${letter.rendering.warm-up.enabled:false}")
+                                 final boolean enabled,
+                                 final Logger logger) {
+        this.templatePersonaliser = templatePersonaliser;
+        this.pdfGenerator = pdfGenerator;
+        this.enabled = enabled;
+        this.logger = logger;
+        this.warm = !enabled;
+    }
+
+    @Override
+    public void run(final ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        var personalisationDetails = createPersonalisationDetails();
+        var address = createAddress();
+        var started = System.nanoTime();
+        for (LetterTemplateKey template : TEMPLATES) {
+            warmUp(template, personalisationDetails, address);
+        }
+        warm = true;
+        logger.info("Letter rendering warmed up with " + TEMPLATES.size() + " templates in "
+                + Duration.ofNanos(System.nanoTime() - started).toMillis() + "ms: "
+                + warmUpMillis + ".");
+    }
+
+    @Override
+    public Health health() {
+        var health = warm ? Health.up() : Health.down();
+        return health.withDetail("templatesWarmedMillis", Map.copyOf(warmUpMillis)).build();
+    }
+
+    private void warmUp(final LetterTemplateKey template,
+                        final Map<String, String> personalisationDetails,
+                        final AddressDao address) {
+        var started = System.nanoTime();
+        var reference =
+                new LetterReference(template.appId(), template.letterId(), WARM_UP_REFERENCE);
+        try (var pdf = pdfGenerator.generatePdfFromHtml(
+                templatePersonaliser.personaliseLetterTemplate(
+                        template, WARM_UP_REFERENCE, personalisationDetails, address),
+                reference.getFullReference(),
+                createLetterTags(template).and(WARM_UP, "true"))) {
+            warmUpMillis.put(getName(template),
+                    Duration.ofNanos(System.nanoTime() - started).toMillis());
+        } catch (IOException | RuntimeException ex) {
+            // A template that cannot be warmed up must not stop the application starting.
+            logger.errorContext(WARM_UP_CONTEXT_ID, new Exception("Failed to warm up "
+                    + getName(template) + ": " + ex.getMessage(), ex),
+                    createLogMap(WARM_UP_CONTEXT_ID, "warm_up_error"));
+        }
+    }
+
+    private static String getName(final LetterTemplateKey template) {
+        return template.letterId() == null
+                ? template.templateId()
+                : template.letterId() + "/" + template.templateId();
+    }
+
+    private static Map<String, String> createPersonalisationDetails() {
+        var date = LocalDate.now().format(DATE_FORMATTER);
+        return Map.of(
+                COMPANY_NAME, "WARM UP LIMITED",
+                COMPANY_NUMBER, "00000000",
+                PSC_NAME, "Warm Up",
+                IS_LLP, "false",
+                VERIFICATION_DUE_DATE, date,
+                IDV_VERIFICATION_DUE_DATE, date,
+                IDV_START_DATE, date,
+                PSC_APPOINTMENT_DATE, date,
+                EXTENSION_REQUEST_DATE, date);
+    }
+
+    private static AddressDao createAddress() {
+        var address = new AddressDao();
+        address.setAddressLine1("Warm Up");
+        address.setAddressLine2("1 Warm Up Street");
+        address.setAddressLine3("Cardiff");
+        address.setAddressLine4("CF14 3UZ");
+        return address;
+    }
+
+}
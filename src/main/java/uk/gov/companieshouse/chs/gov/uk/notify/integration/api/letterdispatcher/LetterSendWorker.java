@@ -0,0 +1,191 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Renders and sends letters asynchronously of the requests that ask for them to be sent, when
+ * asynchronous sending is enabled.
+ * <p>
+ * Letter requests awaiting sending are held in the {@link RequestStatus#PENDING} status in the
+ * database. Each is handed to a bounded pool of worker threads, either directly as it is
+ * submitted, or by the periodic sweep of the database for pending requests, which also picks up
+ * any request that could not be queued or was left behind by an instance that shut down. A
+ * worker atomically claims a request before sending its letter so that no letter is sent twice.
+ * A letter that Gov Notify fails to accept is left to the {@link SendRetryScheduler}, when
+ * retrying is enabled, and is otherwise moved to the {@link RequestStatus#FAILED} status, so that
+ * it is not swept up and sent again.
+ * </p>
+ */
+@Component
+public class LetterSendWorker {
+
+    private static final String SWEEP_CONTEXT_ID = "letter-send-sweep";
+
+    private final LetterDispatcher letterDispatcher;
+    private final NotificationDatabaseService notificationDatabaseService;
+    private final SendRetryScheduler sendRetryScheduler;
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor workers;
+    private final Set<String> queuedLetterIds = ConcurrentHashMap.newKeySet();
+    private final Logger logger;
+
+    public LetterSendWorker(
+            final LetterDispatcher letterDispatcher,
+            final NotificationDatabaseService notificationDatabaseService,
+            final SendRetryScheduler sendRetryScheduler,
+            @Value("${letter.send.async.enabled:false}") final boolean enabled,
+            @Value("${letter.send.worker.pool-size:4}") final int poolSize,
+            @Value("${letter.send.worker.queue-capacity:100}") final int queueCapacity,
+            final Logger logger) {
+        this.letterDispatcher = letterDispatcher;
+        this.notificationDatabaseService = notificationDatabaseService;
+        this.sendRetryScheduler = sendRetryScheduler;
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.logger = logger;
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("letter-send-"));
+    }
+
+    /**
+     * Indicates whether letters are to be sent asynchronously by this worker.
+     * @return whether asynchronous sending is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the pending letter request identified for sending. Should the queue be full, the
+     * request is left pending for a later sweep to pick up.
+     * @param letterId the ID of the pending letter request
+     * @param contextId the context ID used for logging
+     */
+    public void submit(final String letterId, final String contextId) {
+        if (!queuedLetterIds.add(letterId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    process(letterId, contextId);
+                } finally {
+                    queuedLetterIds.remove(letterId);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            queuedLetterIds.remove(letterId);
+            logger.infoContext(contextId, "Letter send queue full, letter " + letterId
+                    + " left pending.", createLogMap(contextId, "letter_queue_full"));
+        }
+    }
+
+    /**
+     * Queues any pending letter requests not already queued, up to the spare capacity of the
+     * queue.
+     */
+    @Scheduled(fixedDelayString = "${letter.send.worker.sweep-interval:PT30S}")
+    public void sweepPendingLetters() {
+        if (!enabled) {
+            return;
+        }
+        var spareCapacity = queueCapacity - workers.getQueue().size();
+        if (spareCapacity <= 0) {
+            return;
+        }
+        notificationDatabaseService.getPendingLetterIds(spareCapacity)
+                .forEach(letterId -> submit(letterId, SWEEP_CONTEXT_ID));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Requests still queued remain pending in the database for another instance to send.
+        workers.shutdownNow();
+    }
+
+    private void process(final String letterId, final String contextId) {
+        var claimed = notificationDatabaseService.claimPendingLetter(letterId);
+        if (claimed.isEmpty()) {
+            logger.debugContext(contextId, "Letter " + letterId + " no longer pending.",
+                    createLogMap(contextId, "letter_not_pending"));
+            return;
+        }
+        try {
+            send(claimed.get(), contextId);
+        } catch (NotifyRateLimitExceededException nrlee) {
+            // Not sent, so left pending for a later sweep to send once the rate limit allows.
+            notificationDatabaseService.releaseClaim(claimed.get(), NotificationLetterRequest.class);
+            logger.infoContext(contextId, "Letter " + letterId + " left pending: "
+                    + nrlee.getMessage(), createLogMap(contextId, "letter_rate_limited"));
+        } catch (RuntimeException re) {
+            logger.errorContext(contextId, re, createLogMap(contextId, "letter_failure"));
+            // A letter sent through Gov Notify is left in the PROCESSING status, even should
+            // recording its SENT status fail, rather than being marked as failed.
+            if (!RequestStatus.SENT.equals(claimed.get().getStatus())) {
+                notificationDatabaseService.failClaim(claimed.get(),
+                        NotificationLetterRequest.class);
+            }
+        }
+    }
+
+    private void send(final NotificationLetterRequest letterRequest, final String contextId) {
+        var senderDetails = letterRequest.getRequest().getSenderDetails();
+        var letterDetails = letterRequest.getRequest().getLetterDetails();
+        var appId = senderDetails.getAppId();
+        var letterId = letterDetails.getLetterId();
+        var templateId = letterDetails.getTemplateId();
+
+        try {
+            var response = letterDispatcher.sendLetter(
+                    Postage.forLetter(new LetterTemplateKey(appId, letterId, templateId)),
+                    new LetterReference(appId, letterId, senderDetails.getReference()),
+                    templateId,
+                    letterRequest.getRequest().getRecipientDetails().getPhysicalAddress(),
+                    letterDetails.getPersonalisationDetails(),
+                    contextId);
+            if (response.success()) {
+                letterRequest.setStatus(RequestStatus.SENT);
+                notificationDatabaseService.saveLetter(letterRequest);
+                logger.infoContext(contextId, "Letter processed successfully",
+                        createLogMap(contextId, "letter_success"));
+            } else {
+                logger.errorContext(contextId, new Exception("Failed to process letter"),
+                        createLogMap(contextId, "letter_failure"));
+                if (!sendRetryScheduler.scheduleRetry(letterRequest,
+                        NotificationLetterRequest.class, response.httpStatus())) {
+                    notificationDatabaseService.failClaim(letterRequest,
+                            NotificationLetterRequest.class);
+                }
+            }
+        } catch (IOException ioe) {
+            logger.errorContext(contextId, new Exception(
+                    "Failed to load precompiled letter PDF. Caught IOException: "
+                            + ioe.getMessage()), createLogMap(contextId, "load_pdf_error"));
+            notificationDatabaseService.failClaim(letterRequest, NotificationLetterRequest.class);
+        }
+    }
+
+}
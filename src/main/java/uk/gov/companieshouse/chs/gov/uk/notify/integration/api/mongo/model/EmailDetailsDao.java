@@ -1,5 +1,9 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model;
 
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser.parsePersonalisationDetails;
+
+import jakarta.validation.ValidationException;
+import java.util.Map;
 import java.util.Objects;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -7,8 +11,12 @@ public class EmailDetailsDao {
     @Field("template_id")
     private String templateId;
 
+    /**
+     * The personalisation details, held as a sub-document, or as the JSON string in which they
+     * are held in documents saved before they were held as a sub-document.
+     */
     @Field("personalisation_details")
-    private String personalisationDetails;
+    private Object personalisationDetails;
 
     public String getTemplateId() {
         return templateId;
@@ -18,11 +26,22 @@ public class EmailDetailsDao {
         this.templateId = templateId;
     }
 
-    public String getPersonalisationDetails() {
-        return personalisationDetails;
+    /**
+     * Gets the personalisation details, first parsing them should they have been read from a
+     * document in which they are held as a JSON string. They are then held as a sub-document,
+     * and are saved as one the next time the document is saved.
+     * @return the personalisation details
+     * @throws ValidationException should the JSON string not hold a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getPersonalisationDetails() {
+        if (personalisationDetails instanceof String personalisationDetailsString) {
+            personalisationDetails = parsePersonalisationDetails(personalisationDetailsString);
+        }
+        return (Map<String, Object>) personalisationDetails;
     }
 
-    public void setPersonalisationDetails(String personalisationDetails) {
+    public void setPersonalisationDetails(Map<String, ?> personalisationDetails) {
         this.personalisationDetails = personalisationDetails;
     }
 
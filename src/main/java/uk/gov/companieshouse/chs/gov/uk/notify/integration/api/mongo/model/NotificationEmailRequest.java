@@ -1,8 +1,18 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model;
 
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "email_details")
+@CompoundIndexes({
+        @CompoundIndex(name = NotificationRequest.UNIQUE_REFERENCE_INDEX,
+                def = NotificationRequest.UNIQUE_REFERENCE_INDEX_DEF),
+        @CompoundIndex(name = NotificationRequest.DUE_ATTEMPT_INDEX,
+                def = NotificationRequest.DUE_ATTEMPT_INDEX_DEF),
+        @CompoundIndex(name = NotificationRequest.LEASE_EXPIRY_INDEX,
+                def = NotificationRequest.LEASE_EXPIRY_INDEX_DEF)
+})
 public class NotificationEmailRequest extends NotificationRequest<EmailRequestDao> {
 
     public NotificationEmailRequest() {
@@ -1,10 +1,32 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model;
 
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "letter_details")
+@CompoundIndexes({
+        @CompoundIndex(name = NotificationRequest.UNIQUE_REFERENCE_INDEX,
+                def = NotificationRequest.UNIQUE_REFERENCE_INDEX_DEF),
+        @CompoundIndex(name = NotificationRequest.DUE_ATTEMPT_INDEX,
+                def = NotificationRequest.DUE_ATTEMPT_INDEX_DEF),
+        @CompoundIndex(name = NotificationRequest.LEASE_EXPIRY_INDEX,
+                def = NotificationRequest.LEASE_EXPIRY_INDEX_DEF),
+        @CompoundIndex(name = NotificationLetterRequest.COMPANY_NUMBER_INDEX,
+                def = NotificationLetterRequest.COMPANY_NUMBER_INDEX_DEF,
+                sparse = true)
+})
 public class NotificationLetterRequest extends NotificationRequest<LetterRequestDao> {
 
+    /**
+     * Name of the index serving lookups of letters by the number of the company they concern,
+     * as held in their personalisation details. Letters whose personalisation details are still
+     * held as a JSON string are not indexed until they are next saved.
+     */
+    public static final String COMPANY_NUMBER_INDEX = "company_number";
+    public static final String COMPANY_NUMBER_INDEX_DEF =
+            "{ 'request.letter_details.personalisation_details.company_number' : 1 }";
+
     public NotificationLetterRequest() {
         super();
     }
@@ -9,6 +9,29 @@ import org.springframework.data.mongodb.core.mapping.Field;
 
 public abstract class NotificationRequest<T> {
 
+    /**
+     * Name of the index serving lookups by sender reference, alone or together with the app ID.
+     * The reference leads so that the index also serves queries on the reference alone.
+     */
+    public static final String UNIQUE_REFERENCE_INDEX = "sender_reference_app_id";
+    public static final String UNIQUE_REFERENCE_INDEX_DEF =
+            "{ 'request.sender_details.reference' : 1, 'request.sender_details.app_id' : 1 }";
+
+    /**
+     * Name of the index serving the search for pending requests whose next attempt to send is
+     * due. Only requests scheduled for another attempt hold a next attempt time. Leading with the
+     * status, it also serves the search for pending requests not yet attempted.
+     */
+    public static final String DUE_ATTEMPT_INDEX = "status_next_attempt_at";
+    public static final String DUE_ATTEMPT_INDEX_DEF = "{ 'status' : 1, 'next_attempt_at' : 1 }";
+
+    /**
+     * Name of the index serving the search for requests whose lease on their processing has
+     * expired. Only requests being processed hold a lease.
+     */
+    public static final String LEASE_EXPIRY_INDEX = "status_lease_expires_at";
+    public static final String LEASE_EXPIRY_INDEX_DEF = "{ 'status' : 1, 'lease_expires_at' : 1 }";
+
     @Id
     private String id;
 
@@ -24,6 +47,25 @@ public abstract class NotificationRequest<T> {
     @Field("status")
     private RequestStatus status;
 
+    @Field("next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Field("failure_count")
+    private int failureCount;
+
+    @Field("lease_owner")
+    private String leaseOwner;
+
+    @Field("lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * Identifies the claim by which a batch of requests was leased, so that the requests claimed
+     * can be told apart from those claimed by others.
+     */
+    @Field("lease_id")
+    private String leaseId;
+
     @Version
     private Integer version;
 
@@ -67,6 +109,46 @@ public abstract class NotificationRequest<T> {
         this.status = status;
     }
 
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public String getLeaseId() {
+        return leaseId;
+    }
+
+    public void setLeaseId(String leaseId) {
+        this.leaseId = leaseId;
+    }
+
     @Override
     public String toString() {
         return "{" +
@@ -74,6 +156,11 @@ public abstract class NotificationRequest<T> {
                 ", updatedAt=" + updatedAt +
                 ", request=" + request +
                 ", status=" + status +
+                ", nextAttemptAt=" + nextAttemptAt +
+                ", failureCount=" + failureCount +
+                ", leaseOwner='" + leaseOwner + '\'' +
+                ", leaseExpiresAt=" + leaseExpiresAt +
+                ", leaseId='" + leaseId + '\'' +
                 ", id='" + id + '\'' +
                 ", version=" + version +
                 '}';
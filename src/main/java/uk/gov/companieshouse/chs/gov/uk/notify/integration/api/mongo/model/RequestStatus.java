@@ -1,5 +1,5 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model;
 
 public enum RequestStatus {
-    PENDING, PROCESSING, SENT
+    PENDING, PROCESSING, SENT, FAILED
 }
@@ -1,5 +1,7 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
@@ -12,4 +14,7 @@ public interface NotificationEmailRequestRepository extends MongoRepository<Noti
     @Query("{ 'request.sender_details.app_id' : ?0, 'request.sender_details.reference' : ?1 }")
     Optional<NotificationEmailRequest> findByUniqueReference(String appId, String reference);
 
+    @Query("{ 'request.sender_details.reference' : { $in : ?0 } }")
+    List<NotificationEmailRequest> findByReferenceIn(Collection<String> references);
+
 }
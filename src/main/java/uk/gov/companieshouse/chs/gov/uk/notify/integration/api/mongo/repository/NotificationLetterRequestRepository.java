@@ -1,5 +1,6 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -17,4 +18,7 @@ public interface NotificationLetterRequestRepository extends
     @Query("{ 'request.sender_details.app_id' : ?0, 'request.sender_details.reference' : ?1 }")
     Optional<NotificationLetterRequest> findByUniqueReference(String appId, String reference);
 
+    @Query("{ 'request.sender_details.reference' : { $in : ?0 } }")
+    List<NotificationLetterRequest> findByReferenceIn(Collection<String> references);
+
 }
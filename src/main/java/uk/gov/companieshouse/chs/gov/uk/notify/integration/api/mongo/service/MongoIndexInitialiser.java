@@ -0,0 +1,92 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Creates the indexes declared on the notification request documents at start up.
+ * <p>
+ * Start up waits for the indexes to be created for no longer than the configured budget. Should
+ * index creation take longer, as it may when an index is first built over an existing large
+ * collection, start up carries on and the indexes continue to be built in the background, on a
+ * thread of their own. A failure to create them is logged whenever it happens.
+ * </p>
+ */
+@Component
+public class MongoIndexInitialiser implements InitializingBean {
+
+    static final List<Class<?>> INDEXED_DOCUMENTS =
+            List.of(NotificationEmailRequest.class, NotificationLetterRequest.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration startupBudget;
+    private final Logger logger;
+
+    public MongoIndexInitialiser(final MongoTemplate mongoTemplate,
+            @Value("${spring.data.mongodb.index.startup-budget:PT30S}") final Duration startupBudget,
+            final Logger logger) {
+        this.mongoTemplate = mongoTemplate;
+        this.startupBudget = startupBudget;
+        this.logger = logger;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws InterruptedException {
+        var threadFactory = new CustomizableThreadFactory("mongo-index-");
+        // A slow index build must not keep the JVM from shutting down.
+        threadFactory.setDaemon(true);
+        var executor = Executors.newSingleThreadExecutor(threadFactory);
+        var creation = CompletableFuture.runAsync(this::createIndexes, executor)
+                .whenComplete(this::logFailure);
+        // The thread ends once the indexes are created.
+        executor.shutdown();
+        try {
+            creation.get(startupBudget.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException te) {
+            logger.info("Index creation did not complete within " + startupBudget
+                    + ", continuing start up whilst the indexes are built.");
+        } catch (ExecutionException ee) {
+            // Already logged by logFailure.
+        }
+    }
+
+    private void logFailure(final Void ignored, final Throwable failure) {
+        if (failure != null) {
+            logger.error("Failed to create indexes.", failure instanceof Exception exception
+                    ? exception : new ExecutionException(failure));
+        }
+    }
+
+    /**
+     * Creates any of the declared indexes missing from the database. Creating an index that
+     * already exists is a no-op.
+     */
+    public void createIndexes() {
+        var indexResolver = new MongoPersistentEntityIndexResolver(
+                mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> documentType : INDEXED_DOCUMENTS) {
+            var indexOps = mongoTemplate.indexOps(documentType);
+            indexResolver.resolveIndexFor(documentType).forEach(indexOps::ensureIndex);
+        }
+        mongoTemplate.indexOps(SentLetterArchive.FILES_COLLECTION).ensureIndex(
+                new Index(SentLetterArchive.FILENAME, Sort.Direction.ASC).unique());
+        logger.info("Indexes created.");
+    }
+
+}
@@ -1,13 +1,31 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
 
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailResponse;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterResponse;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.repository.NotificationEmailRequestRepository;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.repository.NotificationEmailResponseRepository;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.repository.NotificationLetterRequestRepository;
@@ -21,17 +39,30 @@ public class NotificationDatabaseService {
     private final NotificationEmailResponseRepository notificationEmailResponseRepository;
     private final NotificationLetterRequestRepository notificationLetterRequestRepository;
     private final NotificationLetterResponseRepository notificationLetterResponseRepository;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Identifies this instance as the holder of the leases on the requests it claims for
+     * processing, and how long each lease lasts before the request may be reclaimed.
+     */
+    private final String leaseOwner;
+    private final Duration leaseDuration;
 
     public NotificationDatabaseService(
             final NotificationEmailRequestRepository notificationEmailRequestRepository,
             final NotificationEmailResponseRepository notificationEmailResponseRepository,
             final NotificationLetterRequestRepository notificationLetterRequestRepository,
-            final NotificationLetterResponseRepository notificationLetterResponseRepository
+            final NotificationLetterResponseRepository notificationLetterResponseRepository,
+            final MongoTemplate mongoTemplate,
+            @Value("${processing.lease.duration:PT15M}") final Duration leaseDuration
     ) {
         this.notificationEmailRequestRepository = notificationEmailRequestRepository;
         this.notificationLetterRequestRepository = notificationLetterRequestRepository;
         this.notificationEmailResponseRepository = notificationEmailResponseRepository;
         this.notificationLetterResponseRepository = notificationLetterResponseRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.leaseOwner = ManagementFactory.getRuntimeMXBean().getName();
+        this.leaseDuration = leaseDuration;
     }
 
     @Transactional( readOnly = true )
@@ -39,6 +70,16 @@ public class NotificationDatabaseService {
         return notificationEmailRequestRepository.findByUniqueReference(appId, reference);
     }
 
+    /**
+     * Gets the email requests with any of the references provided, using a single query.
+     * @param references the email request references
+     * @return the email requests, for all app IDs, with those references
+     */
+    @Transactional( readOnly = true )
+    public List<NotificationEmailRequest> getEmails(final Collection<String> references) {
+        return notificationEmailRequestRepository.findByReferenceIn(references);
+    }
+
     @Transactional( readOnly = true )
     public Optional<NotificationLetterRequest> getLetter(final String letterId) {
         return notificationLetterRequestRepository.findById(letterId);
@@ -49,6 +90,16 @@ public class NotificationDatabaseService {
         return notificationLetterRequestRepository.findByUniqueReference(appId, reference);
     }
 
+    /**
+     * Gets the letter requests with any of the references provided, using a single query.
+     * @param references the letter request references
+     * @return the letter requests, for all app IDs, with those references
+     */
+    @Transactional( readOnly = true )
+    public List<NotificationLetterRequest> getLetters(final Collection<String> references) {
+        return notificationLetterRequestRepository.findByReferenceIn(references);
+    }
+
     @Transactional( readOnly = true )
     public List<NotificationLetterRequest> getLetterByReference(final String reference) {
         return notificationLetterRequestRepository.findByReference(reference);
@@ -64,6 +115,32 @@ public class NotificationDatabaseService {
         return notificationLetterResponseRepository.save(new NotificationLetterResponse(null, null, letterResp.response(), null));
     }
 
+    /**
+     * Stores the email responses provided, using a single bulk write.
+     * @param emailResps the responses from Gov Notify
+     * @return the stored responses
+     */
+    @Transactional()
+    public List<NotificationEmailResponse> storeEmailResponses(
+            final Collection<GovUkNotifyService.EmailResp> emailResps) {
+        return notificationEmailResponseRepository.saveAll(emailResps.stream()
+                .map(emailResp -> new NotificationEmailResponse(null, null, emailResp.response(), null))
+                .toList());
+    }
+
+    /**
+     * Stores the letter responses provided, using a single bulk write.
+     * @param letterResps the responses from Gov Notify
+     * @return the stored responses
+     */
+    @Transactional()
+    public List<NotificationLetterResponse> storeLetterResponses(
+            final Collection<GovUkNotifyService.LetterResp> letterResps) {
+        return notificationLetterResponseRepository.saveAll(letterResps.stream()
+                .map(letterResp -> new NotificationLetterResponse(null, null, letterResp.response(), null))
+                .toList());
+    }
+
     @Transactional
     public NotificationEmailRequest saveEmail(final NotificationEmailRequest request) {
         return notificationEmailRequestRepository.save(request);
@@ -73,4 +150,335 @@ public class NotificationDatabaseService {
     public NotificationLetterRequest saveLetter(final NotificationLetterRequest request) {
         return notificationLetterRequestRepository.save(request);
     }
+
+    /**
+     * Gets the IDs of letter requests awaiting sending, other than those scheduled for another
+     * attempt to send them.
+     * @param limit the maximum number of IDs to return
+     * @return the IDs of the pending letter requests, oldest first
+     */
+    @Transactional( readOnly = true )
+    public List<String> getPendingLetterIds(final int limit) {
+        var pending = query(where("status").is(RequestStatus.PENDING)
+                        .and("next_attempt_at").exists(false))
+                .with(Sort.by("createdAt"))
+                .limit(limit);
+        pending.fields().include("_id");
+        return mongoTemplate.find(pending, NotificationLetterRequest.class).stream()
+                .map(NotificationRequest::getId)
+                .toList();
+    }
+
+    /**
+     * Atomically claims a pending letter request for sending by moving it to the
+     * {@link RequestStatus#PROCESSING} status, so that no other worker sends it too. A letter
+     * request scheduled for another attempt to send it is left for that attempt.
+     * @param letterId the ID of the letter request
+     * @return the claimed letter request, or empty if it is no longer pending
+     */
+    @Transactional
+    public Optional<NotificationLetterRequest> claimPendingLetter(final String letterId) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                query(where("_id").is(letterId).and("status").is(RequestStatus.PENDING)
+                        .and("next_attempt_at").exists(false)),
+                statusUpdate(RequestStatus.PROCESSING),
+                options().returnNew(true),
+                NotificationLetterRequest.class));
+    }
+
+    /**
+     * Atomically claims for processing those of the requests provided that have not already been
+     * sent and are not being processed, moving them to the {@link RequestStatus#PROCESSING}
+     * status, with a single update and a single query however many requests there are. The
+     * requests are claimed under a lease identifying this claim, so that those claimed by it can
+     * be found again.
+     * @param requests the email or letter requests, all of the entity type provided
+     * @param entityType the type of the requests
+     * @return the requests claimed; any others are held by another caller or already sent
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> List<T> claimRequests(
+            final Collection<T> requests,
+            final Class<T> entityType) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        var ids = requests.stream().map(NotificationRequest::getId).toList();
+        var leaseId = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+                query(where("_id").in(ids)
+                        .and("status").nin(RequestStatus.SENT, RequestStatus.PROCESSING)),
+                claimUpdate(RequestStatus.PROCESSING)
+                        .set("lease_id", leaseId)
+                        .set("failure_count", 0),
+                entityType);
+        return mongoTemplate.find(
+                query(where("_id").in(ids).and("lease_id").is(leaseId)), entityType);
+    }
+
+    /**
+     * Sets the status of each of the requests claimed provided, using a single bulk write. A
+     * request whose lease has since been taken over by another instance is left to that instance.
+     * @param requests the claimed email or letter requests, all of the entity type provided
+     * @param entityType the type of the requests
+     * @param status the new status of the requests
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> void updateStatuses(
+            final Collection<T> requests,
+            final Class<T> entityType,
+            final RequestStatus status) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        var update = statusUpdate(status);
+        var bulkOps = mongoTemplate.bulkOps(BulkMode.UNORDERED, entityType);
+        requests.forEach(request -> {
+            bulkOps.updateOne(query(leasedToThisInstance(request)), update);
+            request.setStatus(status);
+        });
+        bulkOps.execute();
+    }
+
+    /**
+     * Atomically claims the email request identified for processing, moving it to the
+     * {@link RequestStatus#PROCESSING} status with a single round trip unless it has already
+     * been sent or is being processed.
+     * @param appId the ID of the app that requested the email
+     * @param reference the email request reference
+     * @return the result of the claim
+     */
+    @Transactional
+    public RequestClaim<NotificationEmailRequest> claimEmail(final String appId,
+                                                             final String reference) {
+        return claim(appId, reference, NotificationEmailRequest.class, RequestStatus.PROCESSING);
+    }
+
+    /**
+     * Atomically claims the letter request identified for processing, moving it to the
+     * {@link RequestStatus#PROCESSING} status with a single round trip unless it has already
+     * been sent or is being processed.
+     * @param appId the ID of the app that requested the letter
+     * @param reference the letter request reference
+     * @return the result of the claim
+     */
+    @Transactional
+    public RequestClaim<NotificationLetterRequest> claimLetter(final String appId,
+                                                               final String reference) {
+        return claim(appId, reference, NotificationLetterRequest.class, RequestStatus.PROCESSING);
+    }
+
+    /**
+     * Atomically queues the letter request identified for asynchronous processing, moving it to
+     * the {@link RequestStatus#PENDING} status unless it has already been sent or is being
+     * processed.
+     * @param appId the ID of the app that requested the letter
+     * @param reference the letter request reference
+     * @return the result of the claim, {@link RequestClaim.Outcome#CLAIMED} if queued
+     */
+    @Transactional
+    public RequestClaim<NotificationLetterRequest> queueLetter(final String appId,
+                                                               final String reference) {
+        return claim(appId, reference, NotificationLetterRequest.class, RequestStatus.PENDING);
+    }
+
+    /**
+     * Releases a request claimed for processing whose processing failed, returning it to the
+     * {@link RequestStatus#PENDING} status so that it may be claimed again. A request whose lease
+     * has since been taken over by another instance is left to that instance.
+     * @param request the claimed request
+     * @param entityType the type of the request
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> void releaseClaim(final T request,
+                                                                final Class<T> entityType) {
+        mongoTemplate.updateFirst(
+                query(leasedToThisInstance(request)),
+                statusUpdate(RequestStatus.PENDING),
+                entityType);
+        request.setStatus(RequestStatus.PENDING);
+    }
+
+    /**
+     * Gives up on a request claimed for processing whose sending failed and is not to be
+     * attempted again, moving it to the {@link RequestStatus#FAILED} status, so that it is
+     * neither swept up nor claimed as due another attempt. It may still be claimed by its caller.
+     * A request whose lease has since been taken over by another instance is left to that
+     * instance.
+     * @param request the claimed request
+     * @param entityType the type of the request
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> void failClaim(final T request,
+                                                             final Class<T> entityType) {
+        mongoTemplate.updateFirst(
+                query(leasedToThisInstance(request)),
+                statusUpdate(RequestStatus.FAILED),
+                entityType);
+        request.setStatus(RequestStatus.FAILED);
+    }
+
+    /**
+     * Schedules another attempt to send a request claimed for processing whose sending failed,
+     * returning it to the {@link RequestStatus#PENDING} status together with the time from which
+     * it is due that attempt. A request whose lease has since been taken over by another instance
+     * is left to that instance.
+     * @param request the claimed request
+     * @param entityType the type of the request
+     * @param nextAttemptAt the time from which the request is due another attempt
+     * @param countFailure whether the failed attempt counts towards the attempts allowed, as it
+     *        does not should Gov Notify only have been too busy to accept it
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> void scheduleAttempt(
+            final T request,
+            final Class<T> entityType,
+            final LocalDateTime nextAttemptAt,
+            final boolean countFailure) {
+        var update = statusUpdate(RequestStatus.PENDING).set("next_attempt_at", nextAttemptAt);
+        if (countFailure) {
+            update.inc("failure_count", 1);
+            request.setFailureCount(request.getFailureCount() + 1);
+        }
+        mongoTemplate.updateFirst(query(leasedToThisInstance(request)), update, entityType);
+        request.setStatus(RequestStatus.PENDING);
+        request.setNextAttemptAt(nextAttemptAt);
+    }
+
+    /**
+     * Claims for processing the pending requests whose next attempt to send is due, earliest
+     * due first, moving each to the {@link RequestStatus#PROCESSING} status. Each is claimed
+     * atomically, so that instances claiming due requests at the same time never claim the same
+     * request.
+     * @param entityType the type of the requests
+     * @param limit the maximum number of requests to claim
+     * @return the claimed requests
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> List<T> claimDueRequests(final Class<T> entityType,
+                                                                       final int limit) {
+        var due = query(where("status").is(RequestStatus.PENDING)
+                        .and("next_attempt_at").lte(LocalDateTime.now()))
+                .with(Sort.by("nextAttemptAt"));
+        var claimed = new ArrayList<T>();
+        while (claimed.size() < limit) {
+            var request = mongoTemplate.findAndModify(due, claimUpdate(RequestStatus.PROCESSING),
+                    options().returnNew(true), entityType);
+            if (request == null) {
+                break;
+            }
+            claimed.add(request);
+        }
+        return claimed;
+    }
+
+    /**
+     * Settles the requests whose lease on their processing has expired, as when the instance
+     * processing them died (or otherwise failed to settle them), using a bulk update for each
+     * outcome. Each counts as a failed attempt to send the request. A request with attempts left
+     * is scheduled for another attempt, returning it to the {@link RequestStatus#PENDING} status;
+     * any other is moved to the {@link RequestStatus#FAILED} status, for its caller to retry,
+     * rather than being swept up and sent again.
+     * @param entityType the type of the requests
+     * @param nextAttemptAt the time from which the requests are due another attempt, or null
+     *        should no request be attempted again
+     * @param maxFailures the number of failures before which a request may be scheduled for
+     *        another attempt
+     * @return the number of requests settled
+     */
+    @Transactional
+    public <T extends NotificationRequest<?>> long releaseExpiredLeases(
+            final Class<T> entityType,
+            final LocalDateTime nextAttemptAt,
+            final int maxFailures) {
+        var now = LocalDateTime.now();
+        var released = 0L;
+        if (nextAttemptAt != null) {
+            // Negated, so that a request with no failures recorded is also matched.
+            released += mongoTemplate.updateMulti(
+                    query(expiredLease(now).and("failure_count").not().gte(maxFailures)),
+                    statusUpdate(RequestStatus.PENDING).inc("failure_count", 1)
+                            .set("next_attempt_at", nextAttemptAt),
+                    entityType).getModifiedCount();
+        }
+        released += mongoTemplate.updateMulti(
+                query(expiredLease(now)),
+                statusUpdate(RequestStatus.FAILED).inc("failure_count", 1),
+                entityType).getModifiedCount();
+        return released;
+    }
+
+    private <T extends NotificationRequest<?>> RequestClaim<T> claim(
+            final String appId,
+            final String reference,
+            final Class<T> entityType,
+            final RequestStatus claimedStatus) {
+        // Claimed afresh by its caller, so any failures recorded no longer count against it.
+        var claimed = mongoTemplate.findAndModify(
+                query(uniqueReference(appId, reference)
+                        .and("status").nin(RequestStatus.SENT, RequestStatus.PROCESSING)),
+                claimUpdate(claimedStatus).set("failure_count", 0),
+                options().returnNew(true),
+                entityType);
+        if (claimed != null) {
+            return new RequestClaim<>(RequestClaim.Outcome.CLAIMED, claimed);
+        }
+
+        // Only when the request could not be claimed do we need to find out why.
+        var existing = mongoTemplate.findOne(query(uniqueReference(appId, reference)), entityType);
+        if (existing == null) {
+            return new RequestClaim<>(RequestClaim.Outcome.NOT_FOUND, null);
+        } else if (RequestStatus.SENT.equals(existing.getStatus())) {
+            return new RequestClaim<>(RequestClaim.Outcome.ALREADY_SENT, existing);
+        } else {
+            return new RequestClaim<>(RequestClaim.Outcome.ALREADY_PROCESSING, existing);
+        }
+    }
+
+    private static Criteria uniqueReference(final String appId, final String reference) {
+        return where("request.sender_details.app_id").is(appId)
+                .and("request.sender_details.reference").is(reference);
+    }
+
+    /**
+     * Matches the request provided while it remains claimed by this instance. A request claimed
+     * before leases were held has no lease owner, and is taken to be held by this instance.
+     */
+    private Criteria leasedToThisInstance(final NotificationRequest<?> request) {
+        return where("_id").is(request.getId())
+                .and("status").is(RequestStatus.PROCESSING)
+                .and("lease_owner").in(leaseOwner, null);
+    }
+
+    private static Criteria expiredLease(final LocalDateTime now) {
+        return where("status").is(RequestStatus.PROCESSING).and("lease_expires_at").lt(now);
+    }
+
+    /**
+     * Sets the status of a request. A request moved to the {@link RequestStatus#PROCESSING}
+     * status is leased to this instance for the lease duration; any other status clears the
+     * lease.
+     */
+    private Update statusUpdate(final RequestStatus status) {
+        var now = LocalDateTime.now();
+        var update = new Update()
+                .set("status", status)
+                .set("updated_at", now)
+                .inc("version", 1);
+        if (RequestStatus.PROCESSING.equals(status)) {
+            update.set("lease_owner", leaseOwner)
+                    .set("lease_expires_at", now.plus(leaseDuration));
+        } else {
+            update.unset("lease_owner").unset("lease_expires_at").unset("lease_id");
+        }
+        return update;
+    }
+
+    /**
+     * Claims a request, clearing any time at which it was due another attempt to send it, as it
+     * is now being sent (or queued to be sent).
+     */
+    private Update claimUpdate(final RequestStatus status) {
+        return statusUpdate(status).unset("next_attempt_at");
+    }
 }
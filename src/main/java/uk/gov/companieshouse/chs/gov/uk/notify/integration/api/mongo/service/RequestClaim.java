@@ -0,0 +1,26 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
+
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationRequest;
+
+/**
+ * The result of an attempt to claim a notification request for processing.
+ * @param outcome the outcome of the attempt
+ * @param request the claimed request if {@link Outcome#CLAIMED}, the request as found if
+ *                {@link Outcome#ALREADY_SENT} or {@link Outcome#ALREADY_PROCESSING}, otherwise
+ *                <code>null</code>
+ * @param <T> the type of the notification request
+ */
+public record RequestClaim<T extends NotificationRequest<?>>(Outcome outcome, T request) {
+
+    public enum Outcome {
+        /** The request is now held by the caller. */
+        CLAIMED,
+        /** The request has already been sent, and so was not claimed. */
+        ALREADY_SENT,
+        /** The request is being processed by another caller, and so was not claimed. */
+        ALREADY_PROCESSING,
+        /** No such request exists. */
+        NOT_FOUND
+    }
+
+}
@@ -0,0 +1,185 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.data.mongodb.gridfs.GridFsUpload;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archives the exact letter PDFs sent to Gov Notify in GridFS, when archiving is enabled, so
+ * that a sent letter can be viewed without it being regenerated.
+ * <p>
+ * Each PDF is stored gzip compressed under the Gov Notify reference with which it was sent,
+ * which is the filename of its GridFS file. Filenames are indexed as unique, so that should the
+ * same reference be archived twice, as when a letter is archived concurrently by two instances,
+ * only the PDF archived first is kept.
+ * </p>
+ */
+@Component
+public class SentLetterArchive {
+
+    static final String FILES_COLLECTION = "fs.files";
+    static final String CHUNKS_COLLECTION = "fs.chunks";
+    static final String FILENAME = "filename";
+
+    private final GridFsTemplate gridFsTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    public SentLetterArchive(final GridFsTemplate gridFsTemplate,
+                             final MongoTemplate mongoTemplate,
+                             @Value("${letter.archive.enabled:false}") final boolean enabled) {
+        this.gridFsTemplate = gridFsTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Indicates whether the letter PDFs sent are to be archived.
+     * @return whether archiving is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Archives the PDF sent as the letter with the Gov Notify reference provided, unless a PDF
+     * has already been archived under that reference.
+     * @param reference the reference with which the letter was sent to Gov Notify
+     * @param pdf the stream from which the letter PDF was sent, any of which left unread is read
+     *        before the PDF is archived
+     */
+    public void archive(final String reference, final ArchivingInputStream pdf) {
+        var id = new ObjectId();
+        var metadata = new Document("contentType", "application/pdf")
+                .append("contentEncoding", "gzip")
+                .append("length", pdf.length);
+        try {
+            gridFsTemplate.store(GridFsUpload.fromStream(pdf.compressed())
+                    .id(id)
+                    .filename(reference)
+                    .metadata(metadata)
+                    .build());
+        } catch (MongoException me) {
+            if (ErrorCategory.fromErrorCode(me.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                throw me;
+            }
+            // The chunks are written before the file, so those of the duplicate are removed.
+            mongoTemplate.remove(query(where("files_id").is(id)), CHUNKS_COLLECTION);
+        }
+    }
+
+    /**
+     * Fetches the archived PDF sent as the letter with the Gov Notify reference provided.
+     * @param reference the reference with which the letter was sent to Gov Notify
+     * @return the {@link InputStream} for the letter PDF, if the letter was archived
+     * @throws IOException should the archived PDF not be readable
+     */
+    public Optional<InputStream> fetch(final String reference) throws IOException {
+        var file = gridFsTemplate.find(query(where(FILENAME).is(reference))).first();
+        if (file == null) {
+            return Optional.empty();
+        }
+        return Optional.of(
+                new GZIPInputStream(gridFsTemplate.getResource(file).getInputStream()));
+    }
+
+    /**
+     * Wraps the stream of a letter PDF being sent, compressing the bytes read from it as they
+     * are read, so that the PDF can be archived once sent without first being copied in full.
+     */
+    public static class ArchivingInputStream extends FilterInputStream {
+
+        private final CompressedPdf buffer = new CompressedPdf();
+        private final GZIPOutputStream gzip;
+        private long length;
+
+        public ArchivingInputStream(final InputStream pdf) throws IOException {
+            super(pdf);
+            gzip = new GZIPOutputStream(buffer);
+        }
+
+        @Override
+        public int read() throws IOException {
+            var read = super.read();
+            if (read >= 0) {
+                gzip.write(read);
+                length++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+            var read = super.read(bytes, offset, count);
+            if (read > 0) {
+                gzip.write(bytes, offset, read);
+                length += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            // Skipped bytes are read all the same, so that none are missing from the archive.
+            var skipped = 0L;
+            var scratch = new byte[8192];
+            while (skipped < count) {
+                var read = read(scratch, 0, (int) Math.min(scratch.length, count - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private InputStream compressed() {
+            try {
+                transferTo(OutputStream.nullOutputStream());
+                gzip.finish();
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            return buffer.toInputStream();
+        }
+    }
+
+    /**
+     * Holds a compressed PDF, reading it from the buffer written rather than from a copy of it.
+     */
+    private static class CompressedPdf extends ByteArrayOutputStream {
+
+        CompressedPdf() {
+            super(8192);
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+}
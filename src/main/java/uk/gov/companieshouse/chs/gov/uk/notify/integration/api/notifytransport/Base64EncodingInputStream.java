@@ -0,0 +1,82 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Reads the base64 encoding of the bytes read from another stream, encoding a chunk at a time, so
+ * that neither the input nor its encoding need be held in memory in full.
+ * <p>
+ * The stream read from is not closed; it belongs to whoever provided it.
+ */
+class Base64EncodingInputStream extends InputStream {
+
+    /** A multiple of 3, so that only the encoding of the last chunk read is padded. */
+    static final int CHUNK_SIZE = 3 * 4096;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder();
+
+    private final InputStream source;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final byte[] encoded = new byte[CHUNK_SIZE / 3 * 4];
+    private int position;
+    private int limit;
+    private boolean sourceEnded;
+
+    Base64EncodingInputStream(final InputStream source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return fill() ? encoded[position++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        var read = Math.min(length, limit - position);
+        System.arraycopy(encoded, position, bytes, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    /**
+     * Encodes the next chunk of the source should all of the last have been read.
+     *
+     * @return whether there is any encoding left to read
+     * @throws IOException should the source not be read
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        if (sourceEnded) {
+            return false;
+        }
+        var read = source.readNBytes(chunk, 0, CHUNK_SIZE);
+        if (read < CHUNK_SIZE) {
+            sourceEnded = true;
+            if (read == 0) {
+                return false;
+            }
+        }
+        limit = ENCODER.encode(read == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, read), encoded);
+        position = 0;
+        return true;
+    }
+}
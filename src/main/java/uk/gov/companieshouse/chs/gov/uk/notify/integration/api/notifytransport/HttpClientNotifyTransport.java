@@ -0,0 +1,199 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import uk.gov.service.notify.LetterResponse;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+/**
+ * Calls Gov Notify through a single {@link HttpClient} shared by every call, so that the
+ * connection (and its TLS session) is kept alive and reused rather than set up for each call.
+ * HTTP/2 is preferred, so that concurrent calls are multiplexed over that connection.
+ * <p>
+ * A letter PDF is base64 encoded as it is streamed into the request body, rather than encoded
+ * into a string embedded in a JSON body, so that the PDF is the only copy of the letter in memory.
+ * <p>
+ * A call blocks the calling thread until Gov Notify responds; when requests are handled on
+ * virtual threads, that costs no platform thread.
+ */
+public class HttpClientNotifyTransport implements NotifyTransport, AutoCloseable {
+
+    private static final String EMAIL_PATH = "/v2/notifications/email";
+    private static final String LETTER_PATH = "/v2/notifications/letter";
+
+    private final HttpClient httpClient;
+    private final NotifyTokenSigner tokenSigner;
+    private final ObjectMapper objectMapper;
+    private final URI emailUri;
+    private final URI letterUri;
+    private final Duration requestTimeout;
+
+    /**
+     * Creates a transport with its own HTTP client.
+     *
+     * @param apiKey the Gov Notify API key
+     * @param baseUrl the base URL of the Gov Notify API
+     * @param connectTimeout how long to wait for a connection to be made
+     * @param requestTimeout how long to wait for Gov Notify to respond to a call
+     * @param objectMapper writes the JSON bodies of the calls
+     */
+    public HttpClientNotifyTransport(final String apiKey,
+                                     final String baseUrl,
+                                     final Duration connectTimeout,
+                                     final Duration requestTimeout,
+                                     final ObjectMapper objectMapper) {
+        this(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(connectTimeout)
+                        .build(),
+                new NotifyTokenSigner(apiKey),
+                baseUrl,
+                requestTimeout,
+                objectMapper);
+    }
+
+    HttpClientNotifyTransport(final HttpClient httpClient,
+                              final NotifyTokenSigner tokenSigner,
+                              final String baseUrl,
+                              final Duration requestTimeout,
+                              final ObjectMapper objectMapper) {
+        this.httpClient = httpClient;
+        this.tokenSigner = tokenSigner;
+        this.objectMapper = objectMapper;
+        this.emailUri = URI.create(baseUrl + EMAIL_PATH);
+        this.letterUri = URI.create(baseUrl + LETTER_PATH);
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public String getServiceId() {
+        return tokenSigner.getServiceId();
+    }
+
+    @Override
+    public SendEmailResponse sendEmail(final String templateId,
+                                       final String emailAddress,
+                                       final Map<String, ?> personalisation,
+                                       final String reference)
+            throws NotificationClientException {
+        var body = new LinkedHashMap<String, Object>();
+        body.put("template_id", templateId);
+        body.put("email_address", emailAddress);
+        putIfNotNull(body, "personalisation", personalisation);
+        putIfNotNull(body, "reference", reference);
+        return new SendEmailResponse(post(emailUri,
+                HttpRequest.BodyPublishers.ofString(toJson(body), UTF_8)));
+    }
+
+    @Override
+    public LetterResponse sendPrecompiledLetterWithInputStream(final String reference,
+                                                               final InputStream precompiledPdf,
+                                                               final String postage)
+            throws NotificationClientException {
+        var envelope = new LinkedHashMap<String, Object>();
+        putIfNotNull(envelope, "reference", reference);
+        putIfNotNull(envelope, "postage", postage);
+        var fields = toJson(envelope);
+        // The content is written first, followed by the other fields (their JSON object less its
+        // opening brace).
+        var head = "{\"content\":\"".getBytes(UTF_8);
+        var tail = ("\"" + (envelope.isEmpty() ? "}" : "," + fields.substring(1))).getBytes(UTF_8);
+        var body = HttpRequest.BodyPublishers.ofInputStream(readOnce(() -> new SequenceInputStream(
+                Collections.enumeration(List.of(
+                        new ByteArrayInputStream(head),
+                        new Base64EncodingInputStream(precompiledPdf),
+                        new ByteArrayInputStream(tail))))));
+        return new LetterResponse(post(letterUri, body));
+    }
+
+    /**
+     * Guards the supplier of a body that can be read only once, as that of a letter is, its PDF
+     * stream not being readable again. Should the body be asked for again, as when the request
+     * is resent, the call fails rather than sending a body missing the PDF read the first time.
+     *
+     * @param body supplies the body
+     * @return a supplier of the body that throws {@link IllegalStateException} if called again
+     */
+    static Supplier<InputStream> readOnce(final Supplier<InputStream> body) {
+        var supplied = new AtomicBoolean();
+        return () -> {
+            if (supplied.getAndSet(true)) {
+                throw new IllegalStateException("Letter body cannot be read again to resend it.");
+            }
+            return body.get();
+        };
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    /**
+     * Posts the body to Gov Notify.
+     *
+     * @param uri the endpoint to post to
+     * @param body publishes the JSON body
+     * @return the body of the response
+     * @throws NotificationClientException should the call fail, or Gov Notify respond with an
+     *         error
+     */
+    private String post(final URI uri, final HttpRequest.BodyPublisher body)
+            throws NotificationClientException {
+        var request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Authorization", "Bearer " + tokenSigner.getToken())
+                .header("Content-Type", "application/json")
+                .POST(body)
+                .build();
+
+        final HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException ioe) {
+            throw new NotificationClientException(ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new NotificationClientException(ie);
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            throw new NotifyHttpException(response.statusCode(), response.body());
+        }
+        return response.body();
+    }
+
+    private String toJson(final Map<String, Object> body) throws NotificationClientException {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException jpe) {
+            throw new NotificationClientException(jpe);
+        }
+    }
+
+    private static void putIfNotNull(final Map<String, Object> body,
+                                     final String name,
+                                     final Object value) {
+        if (value != null) {
+            body.put(name, value);
+        }
+    }
+}
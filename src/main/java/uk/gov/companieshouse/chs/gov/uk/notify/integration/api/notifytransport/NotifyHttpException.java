@@ -0,0 +1,22 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import uk.gov.service.notify.NotificationClientException;
+
+/**
+ * Exception thrown to report the error status Gov Notify responded to a call with. The
+ * NotificationClientException constructor that records the status is package accessible only.
+ */
+public class NotifyHttpException extends NotificationClientException {
+
+    private final int httpResult;
+
+    public NotifyHttpException(int httpResult, String responseBody) {
+        super("Status code: " + httpResult + " " + responseBody);
+        this.httpResult = httpResult;
+    }
+
+    @Override
+    public int getHttpResult() {
+        return httpResult;
+    }
+}
@@ -0,0 +1,90 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs the JSON web tokens that authenticate calls to Gov Notify.
+ * <p>
+ * A Gov Notify API key ends with the ID of the service (the token issuer) followed by the secret
+ * the token is signed with, each a 36 character UUID. Gov Notify rejects a token issued more than
+ * 30 seconds before it is received, so each token is reused for a few seconds only, saving a
+ * signature per call when calls are frequent.
+ */
+public class NotifyTokenSigner {
+
+    static final long TOKEN_REUSE_SECONDS = 10;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int UUID_LENGTH = 36;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final String HEADER =
+            ENCODER.encodeToString("{\"typ\":\"JWT\",\"alg\":\"HS256\"}".getBytes(UTF_8));
+
+    private record Token(long issuedAt, String value) {
+    }
+
+    private final String serviceId;
+    private final byte[] secret;
+    private final LongSupplier epochSecondClock;
+    private final AtomicReference<Token> current = new AtomicReference<>();
+
+    public NotifyTokenSigner(final String apiKey) {
+        this(apiKey, () -> Instant.now().getEpochSecond());
+    }
+
+    NotifyTokenSigner(final String apiKey, final LongSupplier epochSecondClock) {
+        // As the Gov Notify client does, tolerate a key too short to hold both parts, as used
+        // where Gov Notify is never actually called.
+        var length = apiKey.length();
+        this.serviceId = apiKey.substring(Math.max(0, length - 2 * UUID_LENGTH - 1),
+                Math.max(0, length - UUID_LENGTH - 1));
+        this.secret = apiKey.substring(Math.max(0, length - UUID_LENGTH)).getBytes(UTF_8);
+        this.epochSecondClock = epochSecondClock;
+    }
+
+    /**
+     * @return the ID of the Gov Notify service the API key belongs to
+     */
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * Gets a token to authenticate a call with, signing a new one should the last be too old.
+     *
+     * @return the signed token
+     */
+    public String getToken() {
+        var now = epochSecondClock.getAsLong();
+        var token = current.get();
+        if (token != null && now - token.issuedAt() < TOKEN_REUSE_SECONDS) {
+            return token.value();
+        }
+        // Threads racing to replace an old token may each sign one; any of them is valid.
+        token = new Token(now, sign(now));
+        current.set(token);
+        return token.value();
+    }
+
+    private String sign(final long issuedAt) {
+        var payload = ENCODER.encodeToString(
+                ("{\"iss\":\"" + serviceId + "\",\"iat\":" + issuedAt + "}").getBytes(UTF_8));
+        var signingInput = HEADER + "." + payload;
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            var signature = mac.doFinal(signingInput.getBytes(UTF_8));
+            return signingInput + "." + ENCODER.encodeToString(signature);
+        } catch (GeneralSecurityException gse) {
+            throw new IllegalStateException("Unable to sign Gov Notify token", gse);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import java.io.InputStream;
+import java.util.Map;
+import uk.gov.service.notify.LetterResponse;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+/**
+ * Makes the calls to the Gov Notify API. The methods mirror those of the Gov Notify
+ * {@link uk.gov.service.notify.NotificationClient}, so that it may be used as one implementation.
+ */
+public interface NotifyTransport {
+
+    /**
+     * @return the ID of the Gov Notify service the API key belongs to
+     */
+    String getServiceId();
+
+    /**
+     * Sends an email.
+     *
+     * @param templateId the ID of the Gov Notify template
+     * @param emailAddress the address to send the email to
+     * @param personalisation the values filling the placeholders in the template
+     * @param reference the reference identifying the email
+     * @return the response from Gov Notify
+     * @throws NotificationClientException should the email not be sent
+     */
+    SendEmailResponse sendEmail(String templateId,
+                                String emailAddress,
+                                Map<String, ?> personalisation,
+                                String reference) throws NotificationClientException;
+
+    /**
+     * Sends a precompiled letter.
+     *
+     * @param reference the reference identifying the letter
+     * @param precompiledPdf the letter PDF
+     * @param postage the postage to send the letter with
+     * @return the response from Gov Notify
+     * @throws NotificationClientException should the letter not be sent
+     */
+    LetterResponse sendPrecompiledLetterWithInputStream(String reference,
+                                                        InputStream precompiledPdf,
+                                                        String postage)
+            throws NotificationClientException;
+}
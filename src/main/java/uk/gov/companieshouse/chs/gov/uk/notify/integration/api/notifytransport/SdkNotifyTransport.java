@@ -0,0 +1,13 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import uk.gov.service.notify.NotificationClient;
+
+/**
+ * Calls Gov Notify through the Gov Notify Java client, which opens a new connection for each call.
+ */
+public class SdkNotifyTransport extends NotificationClient implements NotifyTransport {
+
+    public SdkNotifyTransport(String apiKey) {
+        super(apiKey);
+    }
+}
@@ -1,35 +1,49 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
 
-import com.lowagie.text.pdf.BaseFont;
-import com.lowagie.text.pdf.PdfWriter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.xhtmlrenderer.pdf.ITextRenderer;
 import org.xhtmlrenderer.pdf.util.XHtmlMetaToPdfInfoAdapter;
 import uk.gov.companieshouse.logging.Logger;
 
 @Component
 public class HtmlPdfGenerator {
 
-    private static final String COMMON_ASSETS_DIRECTORY = "assets/templates/letters/common/";
-    private final SvgReplacedElementFactory svgReplacedElementFactory;
+    static final int INITIAL_PDF_BUFFER_SIZE = 64 * 1024;
+    static final int PDF_BUFFER_HEADROOM = 8 * 1024;
+
+    static final String PDF_LAYOUT_METRIC = "letter.pdf.layout";
+    static final String PDF_WRITE_METRIC = "letter.pdf.write";
+    static final String PDF_SIZE_METRIC = "letter.pdf.size";
+
+    private final PdfRendererPool rendererPool;
+    private final SvgArtworkCache artworkCache;
     private final boolean saveLetter;
+    private final MeterRegistry meterRegistry;
     private final Logger logger;
+    private final AtomicInteger pdfBufferSize = new AtomicInteger(INITIAL_PDF_BUFFER_SIZE);
 
-    public HtmlPdfGenerator(final SvgReplacedElementFactory svgReplacedElementFactory,
+    public HtmlPdfGenerator(final PdfRendererPool rendererPool,
+                            final SvgArtworkCache artworkCache,
                             @Value("${save.letter:false}") final boolean saveLetter,
+                            final MeterRegistry meterRegistry,
                             final Logger logger) {
-        this.svgReplacedElementFactory = svgReplacedElementFactory;
+        this.rendererPool = rendererPool;
+        this.artworkCache = artworkCache;
         this.saveLetter = saveLetter;
+        this.meterRegistry = meterRegistry;
         this.logger = logger;
     }
 
@@ -41,71 +55,75 @@ public class HtmlPdfGenerator {
      * @param html the final HTML representation of the document to be generated as a PDF
      * @param reference the reference used to identify the document and name the file containing
      *                  its PDF rendering
+     * @param tags the tags identifying the letter template in the metrics recorded
      * @return the {@link InputStream} for the PDF as written out to the file
      * @throws IOException should something go wrong whilst creating or saving the PDF
      */
     public InputStream generatePdfFromHtml(String html,
-                                           String reference) throws IOException {
+                                           String reference,
+                                           Tags tags) throws IOException {
         if (saveLetter) {
-            return getPdfFileInputStream(html, reference);
+            return getPdfFileInputStream(html, reference, tags);
         } else {
-            return getPdfInMemoryInputStream(html);
+            return getPdfInMemoryInputStream(html, tags);
         }
     }
 
-    public void generatePdfFromHtml(String html, OutputStream outputStream) throws IOException {
-
-        var renderer = new ITextRenderer();
-
-        // Configure "Accessible" PDF/A conformance level PDF/A-1a.
-        // Even if this may seem pointless given that Gov Notify manipulate the
-        // PDF before printing and sending the letter, setting this also has the
-        // positive side effect of alerting us indirectly to the fact when stylesheets
-        // cannot be found.
-        renderer.setPDFVersion(PdfWriter.VERSION_1_4);
-        renderer.setPDFXConformance(PdfWriter.PDFA1A);
-        renderer.setColourSpaceProfile(
-                "/" + COMMON_ASSETS_DIRECTORY + "sRGB Color Space Profile.icm");
-
-        // Register Arial fonts to be able to use them in the PDF.
-        // Otherwise, we get Helvetica despite having styled Arial in the CSS!
-        addFont(renderer, "Arial.ttf");
-        addFont(renderer, "Arial Bold.ttf");
-
-        // Try to handle SVG image as per https://stackoverflow.com/questions/37056791/svg-integration-in-pdf-using-flying-saucer.
-        var chainingReplacedElementFactory = new ChainingReplacedElementFactory();
-        chainingReplacedElementFactory.addReplacedElementFactory(
-                renderer.getSharedContext().getReplacedElementFactory());
-        chainingReplacedElementFactory.addReplacedElementFactory(svgReplacedElementFactory);
-        renderer.getSharedContext().setReplacedElementFactory(chainingReplacedElementFactory);
-
-        var resolvingUserAgent = new ClasspathResolvingUserAgent(renderer.getOutputDevice());
-        resolvingUserAgent.setSharedContext(renderer.getSharedContext());
-        renderer.getSharedContext().setUserAgentCallback(resolvingUserAgent);
-        renderer.setDocumentFromString(html);
-        renderer.layout();
-
-        // This gets the "creator" metadata into the PDF info as "Author".
-        var metaToPdfInfoAdapter = new XHtmlMetaToPdfInfoAdapter(renderer.getDocument());
-        renderer.setListener(metaToPdfInfoAdapter);
-
-        renderer.createPDF(outputStream);
+    /**
+     * Generates a PDF from the HTML provided, writing it to the output stream provided. The
+     * rendering is carried out by a renderer borrowed from the {@link PdfRendererPool}.
+     *
+     * @param html the final HTML representation of the document to be generated as a PDF
+     * @param outputStream the stream the PDF is written to
+     * @param tags the tags identifying the letter template in the metrics recorded
+     * @throws IOException should something go wrong whilst creating or writing the PDF
+     */
+    public void generatePdfFromHtml(String html, OutputStream outputStream, Tags tags)
+            throws IOException {
+
+        var renderer = rendererPool.borrow();
+        var rendered = false;
+        try {
+            var layout = Timer.start(meterRegistry);
+            renderer.setDocumentFromString(html);
+            renderer.layout();
+            layout.stop(timer(PDF_LAYOUT_METRIC, tags));
+
+            // This gets the "creator" metadata into the PDF info as "Author".
+            var metaToPdfInfoAdapter = new XHtmlMetaToPdfInfoAdapter(renderer.getDocument());
+            renderer.setListener(metaToPdfInfoAdapter);
+
+            var write = Timer.start(meterRegistry);
+            renderer.createPDF(outputStream);
+            write.stop(timer(PDF_WRITE_METRIC, tags));
+            rendered = true;
+        } finally {
+            artworkCache.releaseTemplates();
+            if (rendered) {
+                rendererPool.release(renderer);
+            } else {
+                rendererPool.discard(renderer);
+            }
+        }
     }
 
     /**
-     * Generates a PDF from the HTML provided, holding it in memory.
+     * Generates a PDF from the HTML provided, holding it in memory. The PDF is read back from the
+     * very buffer it was rendered into, which is sized from the PDF last rendered so that it
+     * seldom needs to grow.
      *
      * @param html the final HTML representation of the document to be generated as a PDF
+     * @param tags the tags identifying the letter template in the metrics recorded
      * @return the {@link InputStream} for the PDF as written out to the file
      * @throws IOException should something go wrong whilst creating or writing the PDF
      */
-    private InputStream getPdfInMemoryInputStream(String html) throws IOException {
-        InputStream in;
-        try (var outputStream = new ByteArrayOutputStream()) {
-            generatePdfFromHtml(html, outputStream);
-            in = new ByteArrayInputStream(outputStream.toByteArray());
-        }
-        return in;
+    private InputStream getPdfInMemoryInputStream(String html, Tags tags) throws IOException {
+        var outputStream = new PdfOutputStream(pdfBufferSize.get());
+        generatePdfFromHtml(html, outputStream, tags);
+        recordPdfSize(outputStream.size(), tags);
+        pdfBufferSize.set(
+                Math.max(INITIAL_PDF_BUFFER_SIZE, outputStream.size() + PDF_BUFFER_HEADROOM));
+        return outputStream.toInputStream();
     }
 
     /**
@@ -115,29 +133,42 @@ public class HtmlPdfGenerator {
      * @param html the final HTML representation of the document to be generated as a PDF
      * @param reference the reference used to identify the document and name the file containing
      *                  its PDF rendering
+     * @param tags the tags identifying the letter template in the metrics recorded
      * @return the {@link InputStream} for the PDF as written out to the file
      * @throws IOException should something go wrong whilst creating or saving the PDF
      */
     @SuppressWarnings("java:S6300") // This is not a mobile application.
     private InputStream getPdfFileInputStream(String html,
-                                              String reference) throws IOException {
+                                              String reference,
+                                              Tags tags) throws IOException {
         var pdfFilepath = getPdfFilepath(reference);
         logger.info("Saving PDF of letter to " + pdfFilepath + ".");
         try (var outputStream = new BufferedOutputStream(new FileOutputStream(pdfFilepath))) {
-            generatePdfFromHtml(html, outputStream);
+            generatePdfFromHtml(html, outputStream, tags);
         }
+        recordPdfSize(new File(pdfFilepath).length(), tags);
         return new FileInputStream(pdfFilepath);
     }
 
+    private Timer timer(final String name, final Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void recordPdfSize(final long size, final Tags tags) {
+        DistributionSummary.builder(PDF_SIZE_METRIC)
+                .baseUnit(BaseUnits.BYTES)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(size);
+    }
+
     public static String getPdfFilepath(String reference) {
         return System.getProperty("user.home") + File.separator
                 + "letter_" + reference.replace(File.separator, "_") + ".pdf";
     }
 
-    private void addFont(final ITextRenderer renderer, final String fontFilename)
-        throws IOException {
-        renderer.getFontResolver().addFont(COMMON_ASSETS_DIRECTORY + fontFilename,
-                BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-    }
-
 }
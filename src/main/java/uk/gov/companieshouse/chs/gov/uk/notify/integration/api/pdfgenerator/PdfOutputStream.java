@@ -0,0 +1,27 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/**
+ * An in-memory output stream for a rendered PDF that can be read back without first copying its
+ * contents, so that no more than one copy of the PDF need be held on the heap.
+ */
+class PdfOutputStream extends ByteArrayOutputStream {
+
+    PdfOutputStream(final int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Returns a stream reading the bytes written so far directly from this stream's buffer.
+     * Nothing further is to be written once this is called.
+     *
+     * @return the {@link InputStream} for the PDF written
+     */
+    synchronized InputStream toInputStream() {
+        return new ByteArrayInputStream(buf, 0, count);
+    }
+
+}
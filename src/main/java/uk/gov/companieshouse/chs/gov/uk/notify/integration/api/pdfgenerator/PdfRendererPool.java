@@ -0,0 +1,166 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Holds a bounded pool of fully configured {@link ITextRenderer} instances so that the
+ * expensive per-renderer set up (font registration, PDF/A configuration, replaced element
+ * factory and user agent wiring) is carried out once at start up rather than once per letter.
+ * <p>
+ * Flying Saucer resets a renderer's document specific state each time a new document is set on
+ * it, retaining the fonts registered with its font resolver. A renderer whose use ended in an
+ * exception is not trusted to be in a consistent state and is replaced with a new one. Should the
+ * replacement fail to be created, the pool creates it the next time a renderer is borrowed.
+ * </p>
+ */
+@Component
+public class PdfRendererPool {
+
+    static final String COMMON_ASSETS_DIRECTORY = "assets/templates/letters/common/";
+
+    /**
+     * How often a borrower waiting for a renderer checks whether it could create one the pool is
+     * missing instead.
+     */
+    private static final long MISSING_RENDERER_CHECK_MILLIS = 1000;
+
+    private final Supplier<ITextRenderer> rendererFactory;
+    private final BlockingQueue<ITextRenderer> renderers;
+    private final AtomicInteger missingRenderers = new AtomicInteger();
+    private final Logger logger;
+
+    public PdfRendererPool(final SvgReplacedElementFactory svgReplacedElementFactory,
+                           @Value("${pdf.renderer.pool-size:4}") final int poolSize,
+                           final Logger logger) {
+        this(() -> createRenderer(svgReplacedElementFactory), poolSize, logger);
+    }
+
+    PdfRendererPool(final Supplier<ITextRenderer> rendererFactory,
+                    final int poolSize,
+                    final Logger logger) {
+        this.rendererFactory = rendererFactory;
+        this.logger = logger;
+        this.renderers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            renderers.add(rendererFactory.get());
+        }
+        logger.info("Created pool of " + poolSize + " PDF renderers.");
+    }
+
+    /**
+     * Borrows a renderer from the pool, waiting for one to become available if necessary.
+     * Every renderer borrowed must be handed back through {@link #release(ITextRenderer)} or
+     * {@link #discard(ITextRenderer)}.
+     *
+     * @return a configured renderer for the sole use of the caller
+     * @throws IOException should the calling thread be interrupted whilst waiting, or a renderer
+     *                     missing from the pool fail to be created
+     */
+    public ITextRenderer borrow() throws IOException {
+        try {
+            while (true) {
+                if (missingRenderers.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                    return createMissingRenderer();
+                }
+                var renderer = renderers.poll(MISSING_RENDERER_CHECK_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (renderer != null) {
+                    return renderer;
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst waiting for a PDF renderer.", ie);
+        }
+    }
+
+    private ITextRenderer createMissingRenderer() throws IOException {
+        try {
+            return rendererFactory.get();
+        } catch (RuntimeException re) {
+            missingRenderers.incrementAndGet();
+            throw new IOException("Unable to create a PDF renderer.", re);
+        }
+    }
+
+    /**
+     * Returns a renderer that completed its work normally to the pool for reuse.
+     *
+     * @param renderer the renderer previously borrowed
+     */
+    public void release(final ITextRenderer renderer) {
+        renderer.setListener(null);
+        renderers.add(renderer);
+    }
+
+    /**
+     * Replaces a renderer whose use ended abnormally with a freshly configured one.
+     *
+     * @param renderer the renderer previously borrowed, which is then abandoned
+     */
+    public void discard(final ITextRenderer renderer) {
+        logger.debug("Replacing PDF renderer after failed render.");
+        try {
+            renderers.add(rendererFactory.get());
+        } catch (RuntimeException re) {
+            // Leave the replacement to the next borrower rather than shrink the pool for good.
+            missingRenderers.incrementAndGet();
+            logger.error("Failed to replace PDF renderer, will retry on next borrow.", re);
+        }
+    }
+
+    private static ITextRenderer createRenderer(
+            final SvgReplacedElementFactory svgReplacedElementFactory) {
+        var renderer = new ITextRenderer();
+
+        // Configure "Accessible" PDF/A conformance level PDF/A-1a.
+        // Even if this may seem pointless given that Gov Notify manipulate the
+        // PDF before printing and sending the letter, setting this also has the
+        // positive side effect of alerting us indirectly to the fact when stylesheets
+        // cannot be found.
+        renderer.setPDFVersion(PdfWriter.VERSION_1_4);
+        renderer.setPDFXConformance(PdfWriter.PDFA1A);
+        renderer.setColourSpaceProfile(
+                "/" + COMMON_ASSETS_DIRECTORY + "sRGB Color Space Profile.icm");
+
+        // Register Arial fonts to be able to use them in the PDF.
+        // Otherwise, we get Helvetica despite having styled Arial in the CSS!
+        addFont(renderer, "Arial.ttf");
+        addFont(renderer, "Arial Bold.ttf");
+
+        // Try to handle SVG image as per https://stackoverflow.com/questions/37056791/svg-integration-in-pdf-using-flying-saucer.
+        var chainingReplacedElementFactory = new ChainingReplacedElementFactory();
+        chainingReplacedElementFactory.addReplacedElementFactory(
+                renderer.getSharedContext().getReplacedElementFactory());
+        chainingReplacedElementFactory.addReplacedElementFactory(svgReplacedElementFactory);
+        renderer.getSharedContext().setReplacedElementFactory(chainingReplacedElementFactory);
+
+        var resolvingUserAgent = new ClasspathResolvingUserAgent(renderer.getOutputDevice());
+        resolvingUserAgent.setSharedContext(renderer.getSharedContext());
+        renderer.getSharedContext().setUserAgentCallback(resolvingUserAgent);
+
+        return renderer;
+    }
+
+    private static void addFont(final ITextRenderer renderer, final String fontFilename) {
+        try {
+            renderer.getFontResolver().addFont(COMMON_ASSETS_DIRECTORY + fontFilename,
+                    BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to register font " + fontFilename, ioe);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfTemplate;
+import com.lowagie.text.pdf.PdfWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Paper;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.batik.dom.util.DOMUtilities;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.print.PrintTranscoder;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+
+/**
+ * Caches SVG artwork converted to vector form for drawing into letter PDFs.
+ * <p>
+ * Across letters, each distinct image at a given size is transcoded by Batik only once, the
+ * resulting transcoder retaining the graphics tree it built so that later letters merely replay
+ * its drawing operations. The SVG documents drawn are shared by every render, so only when an
+ * image is transcoded is its document copied, Batik attaching rendering state to the document
+ * it transcodes. Within a letter, each image is drawn once into a PDF form XObject
+ * (a {@link PdfTemplate}) that is then referenced from every page on which the image appears,
+ * rather than being written out again for each page. As each template refers back to the PDF
+ * being written, the templates are held only for the render underway on the current thread, and
+ * must be released through {@link #releaseTemplates()} once it is complete.
+ * </p>
+ * <p>
+ * The time taken to transcode each image, and to draw it into each letter, is recorded by
+ * image.
+ * </p>
+ */
+@Component
+public class SvgArtworkCache {
+
+    static final String SVG_TRANSCODE_METRIC = "letter.svg.transcode";
+    static final String SVG_DRAW_METRIC = "letter.svg.draw";
+
+    private record ArtworkKey(String uri, float width, float height) { }
+
+    private record RenderTemplates(PdfWriter writer, Map<ArtworkKey, PdfTemplate> templates) { }
+
+    private final Map<ArtworkKey, PrintTranscoder> transcoders = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The templates written to the PDF being rendered on each thread.
+     */
+    private final ThreadLocal<RenderTemplates> renderTemplates = new ThreadLocal<>();
+
+    public SvgArtworkCache(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Gets the template holding the SVG image drawn at the size provided, drawing it into the
+     * PDF only if it has not already been drawn there.
+     *
+     * @param svg the SVG image
+     * @param contentByte the direct content of the PDF being rendered
+     * @param width the width of the image in points
+     * @param height the height of the image in points
+     * @return the template to be added to the page content
+     */
+    public PdfTemplate getTemplate(final Document svg,
+                                   final PdfContentByte contentByte,
+                                   final float width,
+                                   final float height) {
+        var key = new ArtworkKey(svg.getDocumentURI(), width, height);
+        var render = renderTemplates.get();
+        if (render == null || render.writer() != contentByte.getPdfWriter()) {
+            render = new RenderTemplates(contentByte.getPdfWriter(), new HashMap<>());
+            renderTemplates.set(render);
+        }
+        return render.templates().computeIfAbsent(key, k -> draw(svg, contentByte, k));
+    }
+
+    /**
+     * Releases the templates drawn into the PDF rendered on the current thread, along with the
+     * PDF itself, once its render is complete.
+     */
+    public void releaseTemplates() {
+        renderTemplates.remove();
+    }
+
+    /**
+     * Clears the cache of transcoded SVG images.
+     */
+    public void clear() {
+        transcoders.clear();
+    }
+
+    private PdfTemplate draw(final Document svg,
+                             final PdfContentByte contentByte,
+                             final ArtworkKey key) {
+        var pg = pageFormat(key);
+        var transcoder = transcoders.computeIfAbsent(key, k -> timer(SVG_TRANSCODE_METRIC, k)
+                .record(() -> transcode(svg, pg)));
+
+        var template = contentByte.createTemplate(key.width(), key.height());
+        var g2d = template.createGraphics(key.width(), key.height());
+        var draw = Timer.start(meterRegistry);
+        // A transcoder is not safe for concurrent use.
+        synchronized (transcoder) {
+            transcoder.print(g2d, pg, 0);
+        }
+        g2d.dispose();
+        draw.stop(timer(SVG_DRAW_METRIC, key));
+        return template;
+    }
+
+    /**
+     * Transcodes the SVG image, building the graphics tree that later prints replay. Batik builds
+     * the tree on the first print rather than on transcoding, so a first print is made here, to
+     * a throwaway image, so that the cost of building the tree is counted as transcoding rather
+     * than as drawing the image into the first letter.
+     */
+    private static PrintTranscoder transcode(final Document svg, final PageFormat pg) {
+        var transcoder = new PrintTranscoder();
+        transcoder.transcode(new TranscoderInput(copyOf(svg)), null);
+        var g2d = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            transcoder.print(g2d, pg, 0);
+        } finally {
+            g2d.dispose();
+        }
+        return transcoder;
+    }
+
+    /**
+     * Creates a private deep copy of the shared SVG document provided. Copying is serialised per
+     * document because the Batik DOM initialises some of its structures lazily, even on read.
+     *
+     * @param svg the shared SVG document
+     * @return a copy of the document, retaining the URI of the original
+     */
+    private static Document copyOf(final Document svg) {
+        synchronized (svg) {
+            var copy = DOMUtilities.deepCloneDocument(svg, svg.getImplementation());
+            copy.setDocumentURI(svg.getDocumentURI());
+            return copy;
+        }
+    }
+
+    private static PageFormat pageFormat(final ArtworkKey key) {
+        var pg = new PageFormat();
+        var pp = new Paper();
+        pp.setSize(key.width(), key.height());
+        pp.setImageableArea(0, 0, key.width(), key.height());
+        pg.setPaper(pp);
+        return pg;
+    }
+
+    private Timer timer(final String name, final ArtworkKey key) {
+        var uri = String.valueOf(key.uri());
+        return Timer.builder(name)
+                .tag("image", uri.substring(uri.lastIndexOf('/') + 1))
+                .register(meterRegistry);
+    }
+
+}
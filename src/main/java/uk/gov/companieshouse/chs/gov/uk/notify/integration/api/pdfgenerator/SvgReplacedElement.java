@@ -3,10 +3,6 @@ package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
 import static org.xhtmlrenderer.css.style.CalculatedStyle.BOTTOM;
 import static org.xhtmlrenderer.css.style.CalculatedStyle.LEFT;
 
-import java.awt.print.PageFormat;
-import java.awt.print.Paper;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.print.PrintTranscoder;
 import org.w3c.dom.Document;
 import org.xhtmlrenderer.pdf.EmptyReplacedElement;
 import org.xhtmlrenderer.pdf.ITextOutputDevice;
@@ -17,16 +13,20 @@ import org.xhtmlrenderer.render.RenderingContext;
 public class SvgReplacedElement extends EmptyReplacedElement {
 
     private final Document svg;
+    private final SvgArtworkCache artworkCache;
 
     /**
      * Constructor.
      * @param svg the SVG image
      * @param cssWidth the width of the image
      * @param cssHeight the height of the image
+     * @param artworkCache the cache of SVG images already drawn
      */
-    public SvgReplacedElement(Document svg, int cssWidth, int cssHeight) {
+    public SvgReplacedElement(Document svg, int cssWidth, int cssHeight,
+                              SvgArtworkCache artworkCache) {
         super(cssWidth, cssHeight);
         this.svg = svg;
+        this.artworkCache = artworkCache;
     }
 
     // x and y are from a universal naming convention
@@ -38,19 +38,8 @@ public class SvgReplacedElement extends EmptyReplacedElement {
         float width = getIntrinsicWidth() / outputDevice.getDotsPerPoint();
         float height = getIntrinsicHeight() / outputDevice.getDotsPerPoint();
 
-        var prm = new PrintTranscoder();
-        var ti = new TranscoderInput(svg);
-        prm.transcode(ti, null);
-        var pg = new PageFormat();
-        var pp = new Paper();
-        pp.setSize(width, height);
-        pp.setImageableArea(0, 0, width, height);
-        pg.setPaper(pp);
         var cb = outputDevice.getWriter().getDirectContent();
-        var template = cb.createTemplate(width, height);
-        var g2d = template.createGraphics(width, height);
-        prm.print(g2d, pg, 0);
-        g2d.dispose();
+        var template = artworkCache.getTemplate(svg, cb, width, height);
 
         var x = calculateSvgImageXCoordinate(renderingContext, outputDevice, blockBox);
         var y = calculateSvgImageYCoordinate(renderingContext, outputDevice, blockBox);
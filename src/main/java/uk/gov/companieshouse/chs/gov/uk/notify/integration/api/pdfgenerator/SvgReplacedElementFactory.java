@@ -1,7 +1,11 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
 import org.apache.batik.dom.svg.SVGDocumentFactory;
 import org.apache.batik.util.XMLResourceDescriptor;
@@ -18,10 +22,20 @@ import uk.gov.companieshouse.logging.Logger;
 @Component
 public class SvgReplacedElementFactory extends NoReplacedElementFactory {
 
+    private static final String SVG_CACHE_METRIC = "letter.svg.cache";
+
+    private final Map<String, SVGDocument> parsedSvgDocuments = new ConcurrentHashMap<>();
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final SvgArtworkCache artworkCache;
     private final Logger logger;
 
-    public SvgReplacedElementFactory(Logger logger) {
+    public SvgReplacedElementFactory(Logger logger, MeterRegistry meterRegistry,
+                                     SvgArtworkCache artworkCache) {
         this.logger = logger;
+        this.artworkCache = artworkCache;
+        this.cacheHits = meterRegistry.counter(SVG_CACHE_METRIC, "result", "hit");
+        this.cacheMisses = meterRegistry.counter(SVG_CACHE_METRIC, "result", "miss");
     }
 
     @Override
@@ -33,32 +47,57 @@ public class SvgReplacedElementFactory extends NoReplacedElementFactory {
         var element = box.getElement();
         var imageFilepath = element.getAttribute("src");
         if ("img".equals(element.getNodeName()) && imageFilepath.endsWith(".svg")) {
-            var factory = getDocumentFactory();
-
-            SVGDocument svgImage;
             var url = getResourceUrl(imageFilepath);
             if (url == null) {
                 var error = "SVG image not found: " + imageFilepath;
                 logger.error(error);
                 throw new SvgImageException("SVG image not found: " + imageFilepath);
             }
-            try {
-                svgImage = factory.createSVGDocument(url.toString());
-            } catch (IOException ioException) {
-                var error = "Caught IOException while creating SVG image " + imageFilepath
-                        + ": " + ioException.getMessage();
-                logger.error(error, ioException);
-                throw new SvgImageException(error);
-            }
-            var svgElement = svgImage.getDocumentElement();
-            var htmlDoc = element.getOwnerDocument();
-            var importedNode = htmlDoc.importNode(svgElement, true);
-            element.appendChild(importedNode);
-            return new SvgReplacedElement(svgImage, cssWidth, cssHeight);
+            // The shared document is drawn from as is, the artwork cache transcoding a copy of it.
+            var svgImage = getParsedSvgDocument(imageFilepath, url);
+            return new SvgReplacedElement(svgImage, cssWidth, cssHeight, artworkCache);
         }
         return null;
     }
 
+    /**
+     * Clears the caches of parsed and transcoded SVG documents, so that each is parsed afresh on
+     * next use.
+     */
+    public void clearCache() {
+        parsedSvgDocuments.clear();
+        artworkCache.clear();
+    }
+
+    /**
+     * Gets the parsed SVG document for the resource at the URL provided, parsing the resource
+     * only if it has not already been parsed. The document returned is shared, and so must not
+     * be modified; Batik transcodes a copy of it (see {@link SvgArtworkCache}).
+     *
+     * @param imageFilepath the path of the SVG image as it appears in the letter HTML
+     * @param url the URL of the SVG image classpath resource
+     * @return the shared, parsed SVG document
+     */
+    private SVGDocument getParsedSvgDocument(final String imageFilepath, final URL url) {
+        var key = url.toString();
+        var svgImage = parsedSvgDocuments.get(key);
+        if (svgImage != null) {
+            cacheHits.increment();
+            return svgImage;
+        }
+        cacheMisses.increment();
+        try {
+            svgImage = getDocumentFactory().createSVGDocument(key);
+        } catch (IOException ioException) {
+            var error = "Caught IOException while creating SVG image " + imageFilepath
+                    + ": " + ioException.getMessage();
+            logger.error(error, ioException);
+            throw new SvgImageException(error);
+        }
+        var existing = parsedSvgDocuments.putIfAbsent(key, svgImage);
+        return existing != null ? existing : svgImage;
+    }
+
     public URL getResourceUrl(String resourceFilepath) {
         return getClass().getClassLoader().getResource(resourceFilepath);
     }
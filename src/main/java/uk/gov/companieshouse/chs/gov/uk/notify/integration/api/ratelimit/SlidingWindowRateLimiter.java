@@ -0,0 +1,179 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ratelimit;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of requests made for each key (e.g. each Notify API key) within a sliding
+ * window of time, without locking.
+ * <p>
+ * The window of each key is a ring of buckets, each counting the requests made within one
+ * slice of the window. A bucket and the slice of time it counts are packed into a single long,
+ * so that a bucket is claimed for a new slice and counted into with a single compare and set.
+ * A request stops counting against the limit between one window and one window plus one slice
+ * after it was made, so the limit is never exceeded within any period the length of the window.
+ * <p>
+ * The limit is checked after counting a request into its bucket, and the request is uncounted
+ * again if it is rejected. Requests made concurrently when the limit is all but reached may
+ * therefore be rejected even though some of them would have been permitted, but more requests
+ * than the limit are never permitted.
+ */
+public class SlidingWindowRateLimiter {
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    /** The maximum limit, which is the most requests that can be counted in one bucket. */
+    public static final int MAX_LIMIT = (int) COUNT_MASK;
+
+    private final long sliceMillis;
+    private final int buckets;
+    private final LongSupplier clock;
+    private final Map<String, AtomicLongArray> windows = new ConcurrentHashMap<>();
+
+    private volatile int limit;
+
+    /**
+     * Creates a rate limiter timed by the system clock.
+     *
+     * @param limit the number of requests permitted for each key within the window
+     * @param window the length of the sliding window
+     * @param slices the number of slices into which the window is divided
+     */
+    public SlidingWindowRateLimiter(final int limit, final Duration window, final int slices) {
+        this(limit, window, slices, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param limit the number of requests permitted for each key within the window
+     * @param window the length of the sliding window
+     * @param slices the number of slices into which the window is divided
+     * @param clock supplies the current time in milliseconds
+     */
+    public SlidingWindowRateLimiter(final int limit,
+                                    final Duration window,
+                                    final int slices,
+                                    final LongSupplier clock) {
+        if (slices < 1 || window.toMillis() % slices != 0) {
+            throw new IllegalArgumentException(
+                    "Window of " + window + " cannot be divided into " + slices + " slices");
+        }
+        setLimit(limit);
+        this.sliceMillis = window.toMillis() / slices;
+        // One more bucket than slices, so that the slice the window starts part way through
+        // is still counted.
+        this.buckets = slices + 1;
+        this.clock = clock;
+    }
+
+    /**
+     * Counts a request made for the key, unless the limit of requests for the key has already
+     * been reached within the window.
+     *
+     * @param key the key the request is limited by
+     * @return whether the request is permitted
+     */
+    public boolean tryAcquire(final String key) {
+        var window = getWindow(key);
+        var slice = currentSlice();
+        var bucket = bucketOf(slice);
+
+        long counted;
+        long current;
+        do {
+            current = window.get(bucket);
+            // A bucket already on a later slice has been claimed by a request that read the
+            // clock after this one, so this request is counted in with it.
+            counted = sliceOf(current) >= slice ? current + 1 : pack(slice, 1);
+        } while (!window.compareAndSet(bucket, current, counted));
+
+        if (count(window, slice) <= limit) {
+            return true;
+        }
+
+        uncount(window, bucket, sliceOf(counted));
+        return false;
+    }
+
+    /**
+     * Gets the number of requests counted for the key within the current window.
+     *
+     * @param key the key the requests are limited by
+     * @return the number of requests
+     */
+    public int getCount(final String key) {
+        var window = windows.get(key);
+        return window == null ? 0 : count(window, currentSlice());
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(final int limit) {
+        if (limit < 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException(
+                    "Limit of " + limit + " is not between 0 and " + MAX_LIMIT);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Forgets all the requests counted.
+     */
+    public void reset() {
+        windows.clear();
+    }
+
+    private AtomicLongArray getWindow(final String key) {
+        var window = windows.get(key);
+        return window != null ? window : windows.computeIfAbsent(key,
+                k -> new AtomicLongArray(buckets));
+    }
+
+    private long currentSlice() {
+        return Math.floorDiv(clock.getAsLong(), sliceMillis);
+    }
+
+    private int bucketOf(final long slice) {
+        return (int) Math.floorMod(slice, buckets);
+    }
+
+    private int count(final AtomicLongArray window, final long slice) {
+        var total = 0;
+        for (var bucket = 0; bucket < buckets; bucket++) {
+            var value = window.get(bucket);
+            // Buckets on a later slice, claimed by requests that read the clock after this
+            // one, are counted too.
+            if (slice - sliceOf(value) < buckets) {
+                total += (int) (value & COUNT_MASK);
+            }
+        }
+        return total;
+    }
+
+    private void uncount(final AtomicLongArray window, final int bucket, final long slice) {
+        long current;
+        do {
+            current = window.get(bucket);
+            if (sliceOf(current) != slice || (current & COUNT_MASK) == 0) {
+                // The bucket has since moved on to a later slice, taking the count with it.
+                return;
+            }
+        } while (!window.compareAndSet(bucket, current, current - 1));
+    }
+
+    private static long pack(final long slice, final long count) {
+        return slice << COUNT_BITS | count;
+    }
+
+    private static long sliceOf(final long value) {
+        return value >>> COUNT_BITS;
+    }
+
+}
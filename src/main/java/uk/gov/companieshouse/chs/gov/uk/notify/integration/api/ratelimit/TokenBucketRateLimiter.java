@@ -0,0 +1,101 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ratelimit;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of requests made for each key (e.g. each Notify API key) with a token bucket,
+ * without locking.
+ * <p>
+ * Each key has a bucket holding up to <code>burst</code> tokens, refilled at a steady
+ * <code>rate</code> per period, and each request permitted takes one token. The bucket is held
+ * as the single time at which it will next be full (the generic cell rate algorithm), so that
+ * taking a token is a single compare and set. No more than <code>burst</code> plus
+ * <code>rate</code> requests are therefore permitted within any one period.
+ */
+public class TokenBucketRateLimiter {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a rate limiter timed by {@link System#nanoTime()}.
+     *
+     * @param rate the number of tokens added to each bucket per period
+     * @param period the period over which the rate applies
+     * @param burst the number of tokens each bucket holds when full
+     */
+    public TokenBucketRateLimiter(final int rate, final Duration period, final int burst) {
+        this(rate, period, burst, System::nanoTime);
+    }
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param rate the number of tokens added to each bucket per period
+     * @param period the period over which the rate applies
+     * @param burst the number of tokens each bucket holds when full
+     * @param nanoClock supplies the current time in nanoseconds
+     */
+    public TokenBucketRateLimiter(final int rate,
+                                  final Duration period,
+                                  final int burst,
+                                  final LongSupplier nanoClock) {
+        if (rate < 1 || burst < 1) {
+            throw new IllegalArgumentException(
+                    "Rate of " + rate + " and burst of " + burst + " must both be at least 1");
+        }
+        this.nanosPerToken = period.toNanos() / rate;
+        this.burstNanos = nanosPerToken * burst;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a token from the bucket for the key, if one is available.
+     *
+     * @param key the key the request is limited by
+     * @return {@link Duration#ZERO} if a token was taken, otherwise how long it will be until
+     *         one is available
+     */
+    public Duration tryAcquire(final String key) {
+        var bucket = getBucket(key);
+        while (true) {
+            var now = nanoClock.getAsLong();
+            var full = bucket.get();
+            // A bucket full at a time already passed holds no more than burst tokens.
+            var nextFull = Math.max(full, now) + nanosPerToken;
+            var wait = nextFull - burstNanos - now;
+            if (wait > 0) {
+                return Duration.ofNanos(wait);
+            }
+            if (bucket.compareAndSet(full, nextFull)) {
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tokens left in the bucket for the key.
+     *
+     * @param key the key the requests are limited by
+     * @return the number of whole tokens left
+     */
+    public int getAvailableTokens(final String key) {
+        var bucket = buckets.get(key);
+        var now = nanoClock.getAsLong();
+        var emptyNanos = bucket == null ? 0 : Math.max(bucket.get() - now, 0);
+        return (int) ((burstNanos - emptyNanos) / nanosPerToken);
+    }
+
+    private AtomicLong getBucket(final String key) {
+        var bucket = buckets.get(key);
+        return bucket != null ? bucket : buckets.computeIfAbsent(key,
+                k -> new AtomicLong(nanoClock.getAsLong()));
+    }
+
+}
@@ -0,0 +1,106 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.restapi;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import uk.gov.companieshouse.api.chs.notification.integration.model.EmailRequest;
+import uk.gov.companieshouse.api.chs.notification.integration.model.LetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.emaildispatcher.BulkEmailDispatcher;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.BulkLetterDispatcher;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Sends many previously requested notifications per HTTP call.
+ */
+@RestController
+@Validated
+public class BulkSenderRestApi {
+
+    private static final String X_REQUEST_ID = "X-Request-ID";
+
+    private final BulkEmailDispatcher bulkEmailDispatcher;
+    private final BulkLetterDispatcher bulkLetterDispatcher;
+    private final int maxBatchSize;
+    private final Logger logger;
+
+    public BulkSenderRestApi(
+            final BulkEmailDispatcher bulkEmailDispatcher,
+            final BulkLetterDispatcher bulkLetterDispatcher,
+            @Value("${bulk.send.max-batch-size:1000}") final int maxBatchSize,
+            final Logger logger
+    ) {
+        this.bulkEmailDispatcher = bulkEmailDispatcher;
+        this.bulkLetterDispatcher = bulkLetterDispatcher;
+        this.maxBatchSize = maxBatchSize;
+        this.logger = logger;
+    }
+
+    /**
+     * Sends the emails identified.
+     * @param requests the (app ID, reference) pairs identifying the email requests to be sent
+     * @param contextId the context ID used for logging
+     * @return the outcome for each email requested, in the order requested
+     */
+    @PostMapping("/gov-uk-notify-integration/emails")
+    public ResponseEntity<List<BulkSendResult>> sendEmails(
+            @RequestBody @NotEmpty final List<@Valid EmailRequest> requests,
+            @RequestHeader(X_REQUEST_ID) @Pattern(regexp = "[0-9A-Za-z-_]{8,32}")
+            final String contextId
+    ) {
+        var logMap = createLogMap(contextId, "bulk_email_send");
+        logMap.put("count", requests.size());
+        logger.infoContext(contextId, "Starting sendEmails process", logMap);
+
+        if (isTooLarge(requests, contextId)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return ResponseEntity.ok(bulkEmailDispatcher.sendEmails(requests, contextId));
+    }
+
+    /**
+     * Renders and sends the letters identified.
+     * @param requests the (app ID, reference) pairs identifying the letter requests to be sent
+     * @param contextId the context ID used for logging
+     * @return the outcome for each letter requested, in the order requested
+     */
+    @PostMapping("/gov-uk-notify-integration/letters")
+    public ResponseEntity<List<BulkSendResult>> sendLetters(
+            @RequestBody @NotEmpty final List<@Valid LetterRequest> requests,
+            @RequestHeader(X_REQUEST_ID) @Pattern(regexp = "[0-9A-Za-z-_]{8,32}")
+            final String contextId
+    ) {
+        var logMap = createLogMap(contextId, "bulk_letter_send");
+        logMap.put("count", requests.size());
+        logger.infoContext(contextId, "Starting sendLetters process", logMap);
+
+        if (isTooLarge(requests, contextId)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return ResponseEntity.ok(bulkLetterDispatcher.sendLetters(requests, contextId));
+    }
+
+    private boolean isTooLarge(final List<?> requests, final String contextId) {
+        if (requests.size() > maxBatchSize) {
+            logger.errorContext(contextId, new IllegalArgumentException("Batch of "
+                    + requests.size() + " requests exceeds maximum of " + maxBatchSize),
+                    createLogMap(contextId, "bulk_send"));
+            return true;
+        }
+        return false;
+    }
+
+}
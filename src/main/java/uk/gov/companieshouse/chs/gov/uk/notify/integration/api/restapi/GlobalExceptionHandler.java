@@ -19,6 +19,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 import org.thymeleaf.exceptions.TemplateInputException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.LetterNotFoundException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.SvgImageException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.TooManyLettersFoundException;
 import uk.gov.companieshouse.logging.Logger;
@@ -146,6 +147,27 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
                 .body(message);
     }
 
+    /**
+     * Returns HTTP Status 429 Too Many Requests when a notification has not been sent because
+     * the Gov Notify rate limit has been reached, with a Retry-After header giving the number of
+     * seconds until it may be sent.
+     *
+     * @param nrlee exception thrown when the Gov Notify rate limit has been reached
+     * @return response with payload reporting underlying cause
+     */
+    @ExceptionHandler(NotifyRateLimitExceededException.class)
+    public ResponseEntity<Object> handleNotifyRateLimitExceededException(
+            NotifyRateLimitExceededException nrlee) {
+        var message = ERROR_CONTEXT + buildMessage(nrlee.getMessage());
+        // Expected under load, and so not logged as an error.
+        myLogger.info(WILL_HANDLE + message + "` by responding with 429 Too Many Requests.",
+                getLogMap(message));
+        var retryAfterSeconds = Math.max(1, (nrlee.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(message);
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(
             @NonNull MethodArgumentNotValidException manve,
@@ -4,8 +4,10 @@ import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ChsGovUkNo
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.VIEW_LETTER_PDF;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import org.apache.commons.io.IOUtils;
+import java.io.InputStream;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -40,10 +42,13 @@ public class ReaderRestApi implements NotifyIntegrationRetrieverControllerInterf
         LOGGER.info("Starting viewLetterPdfByReference process", logMap);
 
         try {
+            var letterPdf = fetcher.fetchLetter(reference, contextId);
+            var headers = suggestFilename(reference);
+            setContentLengthIfKnown(headers, letterPdf);
             return ResponseEntity
                     .ok()
-                    .headers(suggestFilename(reference))
-                    .body(IOUtils.toByteArray(fetcher.fetchLetter(reference, contextId)));
+                    .headers(headers)
+                    .body(new InputStreamResource(letterPdf));
         } catch (IOException ioe) {
             LOGGER.error(LETTER_PDF_IO_ERROR_MESSAGE + ioe.getMessage(),
                     createLogMap(contextId, "load_pdf_error"));
@@ -64,4 +69,16 @@ public class ReaderRestApi implements NotifyIntegrationRetrieverControllerInterf
         return headers;
     }
 
+    /**
+     * Sets the Content-Length of the response up front where the PDF is held in memory, and so
+     * its length is known without reading it. Otherwise, the PDF is streamed chunked.
+     * @param headers headers to be set in the response
+     * @param letterPdf the PDF to be streamed in the response body
+     */
+    private void setContentLengthIfKnown(final HttpHeaders headers, final InputStream letterPdf) {
+        if (letterPdf instanceof ByteArrayInputStream) {
+            headers.setContentLength(letterPdf.available());
+        }
+    }
+
 }
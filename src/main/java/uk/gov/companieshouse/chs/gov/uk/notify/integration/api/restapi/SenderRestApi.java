@@ -2,25 +2,27 @@ package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.restapi;
 
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
 import jakarta.validation.constraints.Pattern;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import uk.gov.companieshouse.api.chs.notification.integration.api.NotifyIntegrationSenderControllerInterface;
 import uk.gov.companieshouse.api.chs.notification.integration.model.EmailRequest;
 import uk.gov.companieshouse.api.chs.notification.integration.model.LetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterDispatcher;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterReference;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterSendWorker;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
@@ -30,32 +32,26 @@ import uk.gov.companieshouse.logging.Logger;
 @Controller
 public class SenderRestApi implements NotifyIntegrationSenderControllerInterface {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-
-    /**
-     * Set of letters that should be sent using second class postage
-     */
-    private static final Set<LetterTemplateKey> SECOND_CLASS_LETTERS = new HashSet<>();
-    static {
-        SECOND_CLASS_LETTERS.addAll(LetterTemplateKey.NEW_PSC_DIRECTION_TEMPLATES);
-        SECOND_CLASS_LETTERS.addAll(LetterTemplateKey.TRANSITIONAL_PSC_DIRECTION_TEMPLATES);
-        SECOND_CLASS_LETTERS.addAll(LetterTemplateKey.IDVPSCEXT_TEMPLATES);
-    }
-
     private final GovUkNotifyService govUkNotifyService;
     private final NotificationDatabaseService notificationDatabaseService;
     private final LetterDispatcher letterDispatcher;
+    private final LetterSendWorker letterSendWorker;
+    private final SendRetryScheduler sendRetryScheduler;
     private final Logger logger;
 
     public SenderRestApi(
             final GovUkNotifyService govUkNotifyService,
             final NotificationDatabaseService notificationDatabaseService,
             final LetterDispatcher letterDispatcher,
+            final LetterSendWorker letterSendWorker,
+            final SendRetryScheduler sendRetryScheduler,
             final Logger logger
     ) {
         this.govUkNotifyService = govUkNotifyService;
         this.notificationDatabaseService = notificationDatabaseService;
         this.letterDispatcher = letterDispatcher;
+        this.letterSendWorker = letterSendWorker;
+        this.sendRetryScheduler = sendRetryScheduler;
         this.logger = logger;
     }
 
@@ -73,31 +69,37 @@ public class SenderRestApi implements NotifyIntegrationSenderControllerInterface
 
         logger.infoContext(xHeaderId, "Starting sendEmail process", logMap);
 
-        var savedRequest = notificationDatabaseService.getEmail(appId, reference);
-        if (savedRequest.isEmpty()) {
-            logger.errorContext(xHeaderId, new IllegalStateException(
-                    "Email request not found in database"), createLogMap(xHeaderId, "read_request"));
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-
-        var emailRequest = savedRequest.get();
-        if (RequestStatus.SENT.equals(emailRequest.getStatus())) {
-            logger.infoContext(xHeaderId, "Email request ignored as already sent",
-                    createLogMap(xHeaderId, "duplicate_email"));
-            return new ResponseEntity<>(HttpStatus.CREATED);
+        var claim = notificationDatabaseService.claimEmail(appId, reference);
+        switch (claim.outcome()) {
+            case NOT_FOUND -> {
+                logger.errorContext(xHeaderId, new IllegalStateException(
+                        "Email request not found in database"), createLogMap(xHeaderId, "read_request"));
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            case ALREADY_SENT -> {
+                logger.infoContext(xHeaderId, "Email request ignored as already sent",
+                        createLogMap(xHeaderId, "duplicate_email"));
+                return new ResponseEntity<>(HttpStatus.CREATED);
+            }
+            case ALREADY_PROCESSING -> {
+                logger.infoContext(xHeaderId, "Email request ignored as already being processed",
+                        createLogMap(xHeaderId, "duplicate_email"));
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            }
+            default -> {
+                // Claimed for processing by this request.
+            }
         }
-        emailRequest.setStatus(RequestStatus.PROCESSING);
-        emailRequest = notificationDatabaseService.saveEmail(emailRequest);
+        var emailRequest = claim.request();
 
         Map<String, Object> personalisationDetails;
         try {
-            logger.debugContext( xHeaderId,"Parsing personalisation details", createLogMap(xHeaderId, "parse_details"));
-            personalisationDetails = OBJECT_MAPPER.readValue(
-                    emailRequest.getRequest().getEmailDetails().getPersonalisationDetails(),
-                    new TypeReference<>() { }
-            );
-        } catch (JsonProcessingException e) {
-            logger.errorContext(xHeaderId, new Exception( "Failed to parse personalisation details: " + e.getMessage() ), createLogMap(xHeaderId, "parse_error"));
+            // Copied, so that the Welsh dates published into it are not saved with the request.
+            personalisationDetails = new HashMap<>(
+                    emailRequest.getRequest().getEmailDetails().getPersonalisationDetails());
+        } catch (ValidationException ve) {
+            logger.errorContext(xHeaderId, new Exception(ve.getMessage()), createLogMap(xHeaderId, "parse_error"));
+            notificationDatabaseService.failClaim(emailRequest, NotificationEmailRequest.class);
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
@@ -106,18 +108,32 @@ public class SenderRestApi implements NotifyIntegrationSenderControllerInterface
         } catch (Exception e) {
             logger.errorContext(xHeaderId, new Exception("Failed to publish Welsh dates: " + e.getMessage()),
                     createLogMap(xHeaderId, "welsh_dates_error"));
+            notificationDatabaseService.failClaim(emailRequest, NotificationEmailRequest.class);
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
         logger.infoContext(xHeaderId, "Sending email to " + emailRequest.getRequest().getRecipientDetails().getEmailAddress(),
                 createLogMap(xHeaderId, "send_email"));
 
-        var emailResp = govUkNotifyService.sendEmail(
-                emailRequest.getRequest().getRecipientDetails().getEmailAddress(),
-                emailRequest.getRequest().getEmailDetails().getTemplateId(),
-                emailRequest.getRequest().getSenderDetails().getReference(),
-                personalisationDetails
-        );
+        GovUkNotifyService.EmailResp emailResp;
+        try {
+            emailResp = govUkNotifyService.sendEmail(
+                    emailRequest.getRequest().getRecipientDetails().getEmailAddress(),
+                    emailRequest.getRequest().getEmailDetails().getTemplateId(),
+                    emailRequest.getRequest().getSenderDetails().getReference(),
+                    personalisationDetails
+            );
+        } catch (NotifyRateLimitExceededException nrlee) {
+            // Not sent, so retried once the rate limit allows, by us if retrying is enabled.
+            if (sendRetryScheduler.scheduleRateLimitedRetry(emailRequest,
+                    NotificationEmailRequest.class, nrlee.getRetryAfter())) {
+                logger.infoContext(xHeaderId, "Email rate limited, another attempt scheduled",
+                        createLogMap(xHeaderId, "email_rate_limited"));
+                return new ResponseEntity<>(HttpStatus.ACCEPTED);
+            }
+            notificationDatabaseService.releaseClaim(emailRequest, NotificationEmailRequest.class);
+            throw nrlee;
+        }
 
         logger.debugContext(xHeaderId, "Storing email response in database", createLogMap(xHeaderId, "store_response"));
         notificationDatabaseService.storeResponse(emailResp);
@@ -130,6 +146,13 @@ public class SenderRestApi implements NotifyIntegrationSenderControllerInterface
             return new ResponseEntity<>(HttpStatus.CREATED);
         } else {
             logger.errorContext(xHeaderId, new Exception( "Failed to send email" ), createLogMap(xHeaderId, "email_failure"));
+            if (sendRetryScheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class,
+                    emailResp.httpStatus())) {
+                logger.infoContext(xHeaderId, "Another attempt to send email scheduled for "
+                        + emailRequest.getNextAttemptAt(), createLogMap(xHeaderId, "email_retry"));
+                return new ResponseEntity<>(HttpStatus.ACCEPTED);
+            }
+            notificationDatabaseService.failClaim(emailRequest, NotificationEmailRequest.class);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -148,22 +171,39 @@ public class SenderRestApi implements NotifyIntegrationSenderControllerInterface
 
         logger.infoContext(contextId, "Starting sendLetter process", logMap );
 
-        var savedRequest = notificationDatabaseService.getLetter(appId, reference);
-        if (savedRequest.isEmpty()) {
-            logger.errorContext(contextId,
-                    new IllegalStateException("Letter request not found in database"),
-                    createLogMap(contextId, "read_request"));
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        var async = letterSendWorker.isEnabled();
+        var claim = async
+                ? notificationDatabaseService.queueLetter(appId, reference)
+                : notificationDatabaseService.claimLetter(appId, reference);
+        switch (claim.outcome()) {
+            case NOT_FOUND -> {
+                logger.errorContext(contextId,
+                        new IllegalStateException("Letter request not found in database"),
+                        createLogMap(contextId, "read_request"));
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            case ALREADY_SENT -> {
+                logger.infoContext(contextId, "Letter request ignored as already sent",
+                        createLogMap(contextId, "letter_success"));
+                return new ResponseEntity<>(HttpStatus.CREATED);
+            }
+            case ALREADY_PROCESSING -> {
+                logger.infoContext(contextId, "Letter request ignored as already being processed",
+                        createLogMap(contextId, "duplicate_letter"));
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            }
+            default -> {
+                // Claimed for processing (or queued) by this request.
+            }
         }
+        var letterRequest = claim.request();
 
-        var letterRequest = savedRequest.get();
-        if (RequestStatus.SENT.equals(letterRequest.getStatus())) {
-            logger.infoContext(contextId, "Letter request ignored as already sent",
-                    createLogMap(contextId, "letter_success"));
-            return new ResponseEntity<>(HttpStatus.CREATED);
+        if (async) {
+            letterSendWorker.submit(letterRequest.getId(), contextId);
+            logger.infoContext(contextId, "Letter queued for sending",
+                    createLogMap(contextId, "letter_queued"));
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
         }
-        letterRequest.setStatus(RequestStatus.PROCESSING);
-        letterRequest = notificationDatabaseService.saveLetter(letterRequest);
 
         logger.infoContext( contextId, "Processing letter for "
                         + letterRequest.getRequest().getRecipientDetails().getName(),
@@ -173,20 +213,23 @@ public class SenderRestApi implements NotifyIntegrationSenderControllerInterface
         var letterId = letterDetails.getLetterId();
         var fullReference = new LetterReference(appId, letterId, reference);
         var templateId = letterDetails.getTemplateId();
-        var postage = determinePostage(appId, letterId, templateId);
+        var postage = Postage.forLetter(new LetterTemplateKey(appId, letterId, templateId));
         var address = letterRequest.getRequest().getRecipientDetails().getPhysicalAddress();
-        var personalisationDetails = letterDetails.getPersonalisationDetails();
 
+        // Settled once sent, scheduled for another attempt, or released as rate limited; otherwise
+        // moved to the FAILED status on the way out.
+        var settled = false;
         try {
             var response = letterDispatcher.sendLetter(
                     postage,
                     fullReference,
                     templateId,
                     address,
-                    personalisationDetails,
+                    letterDetails.getPersonalisationDetails(),
                     contextId
                     );
             if (response.success()) {
+                settled = true;
                 letterRequest.setStatus(RequestStatus.SENT);
                 notificationDatabaseService.saveLetter(letterRequest);
                 logger.infoContext(contextId, "Letter processed successfully",
@@ -194,22 +237,40 @@ public class SenderRestApi implements NotifyIntegrationSenderControllerInterface
                 return new ResponseEntity<>(HttpStatus.CREATED);
             } else {
                 logger.errorContext( contextId, new Exception("Failed to process letter"), createLogMap(contextId, "letter_failure"));
+                if (sendRetryScheduler.scheduleRetry(letterRequest, NotificationLetterRequest.class,
+                        response.httpStatus())) {
+                    settled = true;
+                    logger.infoContext(contextId, "Another attempt to send letter scheduled for "
+                                    + letterRequest.getNextAttemptAt(),
+                            createLogMap(contextId, "letter_retry"));
+                    return new ResponseEntity<>(HttpStatus.ACCEPTED);
+                }
                 return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
             }
+        } catch (NotifyRateLimitExceededException nrlee) {
+            // Not sent, so retried once the rate limit allows, by us if retrying is enabled.
+            if (sendRetryScheduler.scheduleRateLimitedRetry(letterRequest,
+                    NotificationLetterRequest.class, nrlee.getRetryAfter())) {
+                settled = true;
+                logger.infoContext(contextId, "Letter rate limited, another attempt scheduled",
+                        createLogMap(contextId, "letter_rate_limited"));
+                return new ResponseEntity<>(HttpStatus.ACCEPTED);
+            }
+            // Not sent, so released for the caller to retry once the rate limit allows.
+            settled = true;
+            notificationDatabaseService.releaseClaim(letterRequest, NotificationLetterRequest.class);
+            throw nrlee;
         } catch (IOException ioe) {
             logger.errorContext( contextId, new Exception( "Failed to load precompiled letter PDF. Caught IOException: "
                     + ioe.getMessage()), createLogMap(contextId, "load_pdf_error"));
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-    }
-
-    private Postage determinePostage(final String appId, final String letterId, final String templateId) {
-        var letterTemplateKey = new LetterTemplateKey(appId, letterId, templateId);
-        if (SECOND_CLASS_LETTERS.contains(letterTemplateKey)) {
-            return Postage.SECOND_CLASS;
-        } else {
-            // Default to economy mail
-            return Postage.ECONOMY;
+        } finally {
+            if (!settled) {
+                // Not to be retried by us, so failed for the caller to retry, rather than left
+                // pending to be swept up and sent again. A letter sent through Gov Notify is never
+                // failed, even should recording its SENT status fail, to avoid sending it twice.
+                notificationDatabaseService.failClaim(letterRequest, NotificationLetterRequest.class);
+            }
         }
     }
 }
@@ -0,0 +1,58 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry;
+
+import java.time.LocalDateTime;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Periodically settles the requests left in the {@link RequestStatus#PROCESSING} status once
+ * their lease has expired, as when the instance processing them dies part way through, so that
+ * they do not stay there for good.
+ * <p>
+ * Each request claimed for processing is leased to the instance claiming it for a fixed
+ * duration, which must be long enough for any request to be sent. A request whose lease has
+ * expired is scheduled for another attempt at once, when retrying is enabled and the request's
+ * attempts are not used up, for the {@link SendRetryPoller} to send. Otherwise it is moved to the
+ * {@link RequestStatus#FAILED} status, for its caller to retry.
+ * </p>
+ */
+@Component
+public class ExpiredLeaseReaper {
+
+    private final NotificationDatabaseService notificationDatabaseService;
+    private final SendRetryScheduler sendRetryScheduler;
+    private final Logger logger;
+
+    public ExpiredLeaseReaper(final NotificationDatabaseService notificationDatabaseService,
+                              final SendRetryScheduler sendRetryScheduler,
+                              final Logger logger) {
+        this.notificationDatabaseService = notificationDatabaseService;
+        this.sendRetryScheduler = sendRetryScheduler;
+        this.logger = logger;
+    }
+
+    /**
+     * Settles the email and letter requests whose lease has expired.
+     */
+    @Scheduled(fixedDelayString = "${processing.lease.reaper-interval:PT1M}")
+    public void releaseExpiredLeases() {
+        release(NotificationEmailRequest.class);
+        release(NotificationLetterRequest.class);
+    }
+
+    private <T extends NotificationRequest<?>> void release(final Class<T> entityType) {
+        var nextAttemptAt = sendRetryScheduler.isEnabled() ? LocalDateTime.now() : null;
+        var settled = notificationDatabaseService.releaseExpiredLeases(entityType,
+                nextAttemptAt, sendRetryScheduler.getMaxAttempts() - 1);
+        if (settled > 0) {
+            logger.info("Settled " + settled + " " + entityType.getSimpleName()
+                    + " requests whose processing lease expired.");
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry;
+
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterDispatcher;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterReference;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.WelshDatesPublisher;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Periodically claims the email and letter requests due another attempt to send them, as
+ * scheduled by the {@link SendRetryScheduler}, and sends them, when retrying is enabled.
+ * <p>
+ * No more than a batch of emails and a batch of letters is claimed and sent by each poll, so
+ * that a backlog of requests that failed during an outage is drained steadily once Gov Notify
+ * recovers. A request that fails again is scheduled for a further attempt, or, once its attempts
+ * are used up (or should it fail in a way not worth retrying), moved to the
+ * {@link RequestStatus#FAILED} status for its caller to retry.
+ * </p>
+ * <p>
+ * The requests claimed are sent by a bounded pool of threads of the poller's own, rather than
+ * one after another by the scheduling thread, so that a poll claiming many letters to render and
+ * upload finishes well within their lease. Each poll waits for the requests it claimed to be
+ * sent before the next is made.
+ * </p>
+ */
+@Component
+public class SendRetryPoller {
+
+    private static final String CONTEXT_ID = "send-retry";
+
+    private final SendRetryScheduler sendRetryScheduler;
+    private final NotificationDatabaseService notificationDatabaseService;
+    private final GovUkNotifyService govUkNotifyService;
+    private final LetterDispatcher letterDispatcher;
+    private final int batchSize;
+    private final ExecutorService senders;
+    private final Logger logger;
+
+    public SendRetryPoller(
+            final SendRetryScheduler sendRetryScheduler,
+            final NotificationDatabaseService notificationDatabaseService,
+            final GovUkNotifyService govUkNotifyService,
+            final LetterDispatcher letterDispatcher,
+            @Value("${send.retry.batch-size:50}") final int batchSize,
+            @Value("${send.retry.pool-size:4}") final int poolSize,
+            final Logger logger) {
+        this.sendRetryScheduler = sendRetryScheduler;
+        this.notificationDatabaseService = notificationDatabaseService;
+        this.govUkNotifyService = govUkNotifyService;
+        this.letterDispatcher = letterDispatcher;
+        this.batchSize = batchSize;
+        this.senders = Executors.newFixedThreadPool(poolSize,
+                new CustomizableThreadFactory("send-retry-"));
+        this.logger = logger;
+    }
+
+    /**
+     * Claims and sends a batch of the email requests, and a batch of the letter requests, due
+     * another attempt to send them.
+     */
+    @Scheduled(fixedDelayString = "${send.retry.poll-interval:PT15S}")
+    public void sendDueRequests() {
+        if (!sendRetryScheduler.isEnabled()) {
+            return;
+        }
+        List<Callable<Void>> sends = new ArrayList<>();
+        notificationDatabaseService.claimDueRequests(NotificationEmailRequest.class, batchSize)
+                .forEach(emailRequest -> sends.add(() -> {
+                    resendEmail(emailRequest);
+                    return null;
+                }));
+        notificationDatabaseService.claimDueRequests(NotificationLetterRequest.class, batchSize)
+                .forEach(letterRequest -> sends.add(() -> {
+                    resendLetter(letterRequest);
+                    return null;
+                }));
+        try {
+            senders.invokeAll(sends);
+        } catch (InterruptedException ie) {
+            // Requests not yet sent stay claimed until their lease expires.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private void resendEmail(final NotificationEmailRequest emailRequest) {
+        var request = emailRequest.getRequest();
+        var sent = false;
+        try {
+            // Copied, so that the Welsh dates published into it are not saved with the request.
+            Map<String, Object> personalisationDetails =
+                    new HashMap<>(request.getEmailDetails().getPersonalisationDetails());
+            WelshDatesPublisher.publishWelshDates(personalisationDetails);
+
+            var emailResp = govUkNotifyService.sendEmail(
+                    request.getRecipientDetails().getEmailAddress(),
+                    request.getEmailDetails().getTemplateId(),
+                    request.getSenderDetails().getReference(),
+                    personalisationDetails);
+            sent = emailResp.success();
+            notificationDatabaseService.storeResponse(emailResp);
+
+            if (sent) {
+                emailRequest.setStatus(RequestStatus.SENT);
+                notificationDatabaseService.saveEmail(emailRequest);
+                logger.infoContext(CONTEXT_ID, "Email " + emailRequest.getId()
+                        + " sent on retry", createLogMap(CONTEXT_ID, "email_success"));
+            } else {
+                retry(emailRequest, NotificationEmailRequest.class, emailResp.httpStatus());
+            }
+        } catch (NotifyRateLimitExceededException nrlee) {
+            sendRetryScheduler.scheduleRateLimitedRetry(emailRequest,
+                    NotificationEmailRequest.class, nrlee.getRetryAfter());
+        } catch (RuntimeException re) {
+            logger.errorContext(CONTEXT_ID, re, createLogMap(CONTEXT_ID, "email_failure"));
+            if (!sent) {
+                notificationDatabaseService.failClaim(emailRequest,
+                        NotificationEmailRequest.class);
+            }
+        }
+    }
+
+    private void resendLetter(final NotificationLetterRequest letterRequest) {
+        var senderDetails = letterRequest.getRequest().getSenderDetails();
+        var letterDetails = letterRequest.getRequest().getLetterDetails();
+        var appId = senderDetails.getAppId();
+        var letterId = letterDetails.getLetterId();
+        var templateId = letterDetails.getTemplateId();
+        var sent = false;
+        try {
+            var response = letterDispatcher.sendLetter(
+                    Postage.forLetter(new LetterTemplateKey(appId, letterId, templateId)),
+                    new LetterReference(appId, letterId, senderDetails.getReference()),
+                    templateId,
+                    letterRequest.getRequest().getRecipientDetails().getPhysicalAddress(),
+                    letterDetails.getPersonalisationDetails(),
+                    CONTEXT_ID);
+            sent = response.success();
+
+            if (sent) {
+                letterRequest.setStatus(RequestStatus.SENT);
+                notificationDatabaseService.saveLetter(letterRequest);
+                logger.infoContext(CONTEXT_ID, "Letter " + letterRequest.getId()
+                        + " sent on retry", createLogMap(CONTEXT_ID, "letter_success"));
+            } else {
+                retry(letterRequest, NotificationLetterRequest.class, response.httpStatus());
+            }
+        } catch (NotifyRateLimitExceededException nrlee) {
+            sendRetryScheduler.scheduleRateLimitedRetry(letterRequest,
+                    NotificationLetterRequest.class, nrlee.getRetryAfter());
+        } catch (IOException | RuntimeException ex) {
+            logger.errorContext(CONTEXT_ID, ex, createLogMap(CONTEXT_ID, "letter_failure"));
+            // A letter sent through Gov Notify is never marked as failed, even should recording
+            // its SENT status fail, so that its caller does not send it twice.
+            if (!sent) {
+                notificationDatabaseService.failClaim(letterRequest,
+                        NotificationLetterRequest.class);
+            }
+        }
+    }
+
+    private <T extends NotificationRequest<?>> void retry(final T request,
+                                                          final Class<T> entityType,
+                                                          final int httpStatus) {
+        if (sendRetryScheduler.scheduleRetry(request, entityType, httpStatus)) {
+            logger.infoContext(CONTEXT_ID, "Request " + request.getId()
+                    + " failed again, another attempt scheduled for "
+                    + request.getNextAttemptAt(), createLogMap(CONTEXT_ID, "send_retry"));
+        } else {
+            logger.errorContext(CONTEXT_ID, new Exception("Request " + request.getId()
+                    + " failed again, with no further attempt to be made"),
+                    createLogMap(CONTEXT_ID, "send_retry_exhausted"));
+            notificationDatabaseService.failClaim(request, entityType);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+
+/**
+ * Schedules another attempt to send an email or letter that Gov Notify failed to accept, when
+ * retrying is enabled, so that callers need not retry by hand.
+ * <p>
+ * A request scheduled for another attempt is held in the {@link RequestStatus#PENDING} status
+ * with the time from which it is due, for the {@link SendRetryPoller} to claim and send. After a
+ * failure (Gov Notify not responding, or responding with a server error) the delay doubles with
+ * each failure counted against the request, up to a maximum, until the attempts allowed are used
+ * up. After a rate limit is reached (ours, or that of Gov Notify) the attempt is not counted, and
+ * is made once the rate limit allows. Either way, each delay is jittered, so that the requests
+ * failing together during an outage are spread out when retried, rather than retried together.
+ * </p>
+ */
+@Component
+public class SendRetryScheduler {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final NotificationDatabaseService notificationDatabaseService;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Duration rateLimitSpread;
+    private final Supplier<LocalDateTime> clock;
+    private final DoubleSupplier random;
+
+    public SendRetryScheduler(
+            final NotificationDatabaseService notificationDatabaseService,
+            @Value("${send.retry.enabled:false}") final boolean enabled,
+            @Value("${send.retry.max-attempts:8}") final int maxAttempts,
+            @Value("${send.retry.base-delay:PT30S}") final Duration baseDelay,
+            @Value("${send.retry.max-delay:PT30M}") final Duration maxDelay,
+            @Value("${send.retry.rate-limit-spread:PT1M}") final Duration rateLimitSpread) {
+        this(notificationDatabaseService, enabled, maxAttempts, baseDelay, maxDelay,
+                rateLimitSpread, LocalDateTime::now,
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    SendRetryScheduler(final NotificationDatabaseService notificationDatabaseService,
+                       final boolean enabled,
+                       final int maxAttempts,
+                       final Duration baseDelay,
+                       final Duration maxDelay,
+                       final Duration rateLimitSpread,
+                       final Supplier<LocalDateTime> clock,
+                       final DoubleSupplier random) {
+        this.notificationDatabaseService = notificationDatabaseService;
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.rateLimitSpread = rateLimitSpread;
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /**
+     * Indicates whether failed sends are retried.
+     * @return whether retrying is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the number of attempts allowed to send a request that fails, including the first.
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Schedules another attempt to send the request claimed, whose sending Gov Notify failed to
+     * accept, should the failure be one worth retrying and attempts remain.
+     * @param request the claimed request
+     * @param entityType the type of the request
+     * @param httpStatus the HTTP status with which Gov Notify rejected the request, or 0 should
+     *        Gov Notify not have responded
+     * @return whether another attempt has been scheduled; if not, the request remains claimed
+     */
+    public <T extends NotificationRequest<?>> boolean scheduleRetry(final T request,
+                                                                    final Class<T> entityType,
+                                                                    final int httpStatus) {
+        if (!enabled) {
+            return false;
+        }
+        if (httpStatus == TOO_MANY_REQUESTS) {
+            return scheduleRateLimitedRetry(request, entityType, Duration.ZERO);
+        }
+        var failures = request.getFailureCount() + 1;
+        if (!isRetryable(httpStatus) || failures >= maxAttempts) {
+            return false;
+        }
+        notificationDatabaseService.scheduleAttempt(request, entityType,
+                clock.get().plus(jitter(backoff(failures))), true);
+        return true;
+    }
+
+    /**
+     * Schedules another attempt to send the request claimed, which was not sent as a rate limit
+     * had been reached. The attempt does not count towards the attempts allowed.
+     * @param request the claimed request
+     * @param entityType the type of the request
+     * @param retryAfter how long it will be until the rate limit allows another request
+     * @return whether another attempt has been scheduled; if not, the request remains claimed
+     */
+    public <T extends NotificationRequest<?>> boolean scheduleRateLimitedRetry(
+            final T request,
+            final Class<T> entityType,
+            final Duration retryAfter) {
+        if (!enabled) {
+            return false;
+        }
+        var spread = Duration.ofMillis((long) (random.getAsDouble() * rateLimitSpread.toMillis()));
+        notificationDatabaseService.scheduleAttempt(request, entityType,
+                clock.get().plus(retryAfter).plus(spread), false);
+        return true;
+    }
+
+    /**
+     * @return the delay before the next attempt after the number of failures provided, doubling
+     *         with each failure up to the maximum delay
+     */
+    Duration backoff(final int failures) {
+        var backoff = baseDelay.multipliedBy(1L << Math.min(failures - 1, 30));
+        return backoff.compareTo(maxDelay) > 0 ? maxDelay : backoff;
+    }
+
+    /**
+     * @return a random delay between half of the delay provided and all of it, so that attempts
+     *         are spread out but never made much sooner than the backoff intends
+     */
+    private Duration jitter(final Duration delay) {
+        var half = delay.dividedBy(2);
+        return half.plusMillis((long) (random.getAsDouble() * half.toMillis()));
+    }
+
+    private static boolean isRetryable(final int httpStatus) {
+        return httpStatus == 0 || httpStatus >= 500;
+    }
+}
@@ -0,0 +1,339 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.sentletterfetcher;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Caches the PDFs rendered for sent letters, which never change once sent, so that viewing the
+ * same letter again does not render it again.
+ * <p>
+ * PDFs are keyed by a hash of everything that determines their content, including the version
+ * of the letter templates deployed (see {@link #keyOf(Object...)}). The most recently viewed PDFs
+ * are held in memory up to a maximum total size. Where a cache directory is configured, every PDF
+ * rendered is also written to disk, from where it is read back once evicted from memory. As the
+ * PDFs hold personal data, those on disk are deleted once unused for longer than the time to
+ * live, and the least recently used are deleted whilst their total size is over the maximum.
+ * Concurrent requests for a PDF not yet cached wait for the one rendering of it, rather than
+ * each rendering it.
+ * </p>
+ */
+@Component
+public class RenderedLetterCache {
+
+    /**
+     * Renders a letter PDF missing from the cache.
+     */
+    @FunctionalInterface
+    public interface LetterRenderer {
+        byte[] render() throws IOException;
+    }
+
+    private static final String TEMPLATE_ASSETS = "classpath*:assets/**";
+
+    private final long maxBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Duration diskTimeToLive;
+    private final String templatesVersion;
+    private final Logger logger;
+
+    private final Map<String, byte[]> letters = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final Map<String, CompletableFuture<byte[]>> renderings = new ConcurrentHashMap<>();
+
+    public RenderedLetterCache(
+            @Value("${letter.view.cache.max-bytes:67108864}") final long maxBytes,
+            @Value("${letter.view.cache.directory:}") final String directory,
+            @Value("${letter.view.cache.directory.max-bytes:1073741824}") final long maxDiskBytes,
+            @Value("${letter.view.cache.directory.time-to-live:P7D}") final Duration diskTimeToLive,
+            final Logger logger) {
+        this(maxBytes, directory, maxDiskBytes, diskTimeToLive, hashTemplateAssets(), logger);
+    }
+
+    RenderedLetterCache(final long maxBytes,
+                        final String directory,
+                        final long maxDiskBytes,
+                        final Duration diskTimeToLive,
+                        final String templatesVersion,
+                        final Logger logger) {
+        this.maxBytes = maxBytes;
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.maxDiskBytes = maxDiskBytes;
+        this.diskTimeToLive = diskTimeToLive;
+        this.templatesVersion = templatesVersion;
+        this.logger = logger;
+        if (this.directory != null) {
+            try {
+                Files.createDirectories(this.directory);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(
+                        "Unable to create letter PDF cache directory " + directory, ioe);
+            }
+        }
+    }
+
+    /**
+     * Derives the cache key of a letter PDF from the values that determine its content, and the
+     * version of the letter templates deployed, so that no PDF rendered from templates since
+     * changed is served.
+     *
+     * @param parts the values from which the letter PDF is rendered
+     * @return the hex encoded SHA-256 hash of the templates version and the values
+     */
+    public String keyOf(final Object... parts) {
+        var digest = sha256();
+        digest.update(templatesVersion.getBytes(UTF_8));
+        for (Object part : parts) {
+            // Separator so that no two different sets of values hash the same bytes.
+            digest.update((byte) 0);
+            digest.update(String.valueOf(part).getBytes(UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Gets the letter PDF cached under the key provided, rendering and caching it if need be.
+     *
+     * @param key the cache key of the letter PDF
+     * @param renderer renders the letter PDF should it not be cached
+     * @return the {@link InputStream} for the letter PDF
+     * @throws IOException should rendering the letter PDF fail
+     */
+    public InputStream get(final String key, final LetterRenderer renderer) throws IOException {
+        var pdf = getFromMemory(key);
+        if (pdf == null) {
+            pdf = load(key, renderer);
+        }
+        return new ByteArrayInputStream(pdf);
+    }
+
+    /**
+     * Empties the in-memory cache. PDFs cached on disk are retained.
+     */
+    public synchronized void clear() {
+        letters.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Deletes the letter PDFs cached on disk that have gone unused for longer than the time to
+     * live, then the least recently used whilst their total size is over the maximum.
+     */
+    @Scheduled(fixedDelayString = "${letter.view.cache.directory.sweep-interval:PT10M}")
+    public void evictFromDisk() {
+        if (directory == null) {
+            return;
+        }
+        List<CachedFile> files;
+        try (var paths = Files.list(directory)) {
+            files = paths.map(this::cachedFile)
+                    .filter(file -> file != null)
+                    .sorted(Comparator.comparing(CachedFile::lastUsed).reversed())
+                    .toList();
+        } catch (IOException ioe) {
+            logger.error("Failed to list letter PDF cache directory " + directory + ".", ioe);
+            return;
+        }
+        var expiry = FileTime.from(Instant.now().minus(diskTimeToLive));
+        var retainedBytes = 0L;
+        for (CachedFile file : files) {
+            var expired = file.lastUsed().compareTo(expiry) < 0;
+            if (expired || retainedBytes + file.size() > maxDiskBytes) {
+                delete(file.path());
+            } else {
+                retainedBytes += file.size();
+            }
+        }
+    }
+
+    private byte[] load(final String key, final LetterRenderer renderer) throws IOException {
+        var rendering = new CompletableFuture<byte[]>();
+        var existing = renderings.putIfAbsent(key, rendering);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            // Another request may have finished loading the PDF since it was looked for.
+            var pdf = getFromMemory(key);
+            if (pdf == null) {
+                pdf = readFromDisk(key);
+            }
+            if (pdf == null) {
+                pdf = renderer.render();
+                writeToDisk(key, pdf);
+            }
+            putInMemory(key, pdf);
+            rendering.complete(pdf);
+            return pdf;
+        } catch (Throwable t) {
+            rendering.completeExceptionally(t);
+            throw t;
+        } finally {
+            renderings.remove(key, rendering);
+        }
+    }
+
+    private static byte[] await(final CompletableFuture<byte[]> rendering) throws IOException {
+        try {
+            return rendering.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst waiting for letter PDF to be rendered.", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException ioe) {
+                throw ioe;
+            } else if (ee.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Failed to render letter PDF.", ee.getCause());
+        }
+    }
+
+    private synchronized byte[] getFromMemory(final String key) {
+        return letters.get(key);
+    }
+
+    private synchronized void putInMemory(final String key, final byte[] pdf) {
+        if (pdf.length > maxBytes) {
+            return;
+        }
+        var previous = letters.put(key, pdf);
+        totalBytes += pdf.length - (previous != null ? previous.length : 0);
+        var eldest = letters.entrySet().iterator();
+        while (totalBytes > maxBytes) {
+            totalBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    private byte[] readFromDisk(final String key) {
+        if (directory == null) {
+            return null;
+        }
+        var file = directory.resolve(key + ".pdf");
+        byte[] pdf;
+        try {
+            pdf = Files.readAllBytes(file);
+        } catch (NoSuchFileException nsfe) {
+            return null;
+        } catch (IOException ioe) {
+            logger.error("Failed to read cached letter PDF " + file + ".", ioe);
+            return null;
+        }
+        try {
+            // Marks the PDF as used, so that it is not evicted before those unused for longer.
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException ioe) {
+            logger.error("Failed to mark cached letter PDF " + file + " as used.", ioe);
+        }
+        return pdf;
+    }
+
+    private void writeToDisk(final String key, final byte[] pdf) {
+        if (directory == null) {
+            return;
+        }
+        var file = directory.resolve(key + ".pdf");
+        try {
+            // Write to a temporary file first so that no partly written PDF is ever read back.
+            var temporaryFile = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporaryFile, pdf);
+            Files.move(temporaryFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            logger.error("Failed to cache letter PDF " + file + ".", ioe);
+        }
+    }
+
+    private CachedFile cachedFile(final Path path) {
+        if (!path.getFileName().toString().endsWith(".pdf")) {
+            return null;
+        }
+        try {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new CachedFile(path, attributes.lastModifiedTime(), attributes.size());
+        } catch (IOException ioe) {
+            // Deleted since the directory was listed.
+            return null;
+        }
+    }
+
+    private void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ioe) {
+            logger.error("Failed to evict cached letter PDF " + file + ".", ioe);
+        }
+    }
+
+    /**
+     * @return the hex encoded SHA-256 hash of the names and content of the letter template
+     *         assets deployed, which changes whenever any template changes
+     */
+    static String hashTemplateAssets() {
+        try {
+            var resources = new PathMatchingResourcePatternResolver().getResources(TEMPLATE_ASSETS);
+            var fileHashes = new ArrayList<String>();
+            for (Resource resource : resources) {
+                if (!resource.isReadable()) {
+                    continue;
+                }
+                var digest = sha256();
+                digest.update(String.valueOf(resource.getFilename()).getBytes(UTF_8));
+                digest.update((byte) 0);
+                try (var content = resource.getInputStream()) {
+                    digest.update(content.readAllBytes());
+                }
+                fileHashes.add(HexFormat.of().formatHex(digest.digest()));
+            }
+            // Sorted, as the order in which resources are found is not defined.
+            fileHashes.sort(null);
+            var digest = sha256();
+            fileHashes.forEach(fileHash -> digest.update(fileHash.getBytes(UTF_8)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read letter template assets.", ioe);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private record CachedFile(Path path, FileTime lastUsed, long size) {
+    }
+
+}
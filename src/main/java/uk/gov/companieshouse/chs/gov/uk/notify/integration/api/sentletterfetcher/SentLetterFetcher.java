@@ -4,18 +4,22 @@ import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.ORIGINAL_SENDING_DATE;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.VIEW_LETTER_PDF;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils.createLetterTags;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Optional;
 import org.springframework.stereotype.Component;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.LetterNotFoundException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.TooManyLettersFoundException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.LetterRequestDao;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterReference;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.SentLetterArchive;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
-import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser;
 import uk.gov.companieshouse.logging.Logger;
 
 /**
@@ -29,25 +33,29 @@ public class SentLetterFetcher {
     private final NotificationDatabaseService notificationDatabaseService;
     private final TemplatePersonaliser templatePersonaliser;
     private final HtmlPdfGenerator pdfGenerator;
-    private final PersonalisationDetailsParser parser;
+    private final RenderedLetterCache renderedLetterCache;
+    private final SentLetterArchive sentLetterArchive;
     private final Logger logger;
 
     public SentLetterFetcher(final NotificationDatabaseService notificationDatabaseService,
                              final TemplatePersonaliser templatePersonaliser,
                              final HtmlPdfGenerator pdfGenerator,
-                             final PersonalisationDetailsParser parser,
+                             final RenderedLetterCache renderedLetterCache,
+                             final SentLetterArchive sentLetterArchive,
                              final Logger logger) {
         this.notificationDatabaseService = notificationDatabaseService;
         this.templatePersonaliser = templatePersonaliser;
         this.pdfGenerator = pdfGenerator;
-        this.parser = parser;
+        this.renderedLetterCache = renderedLetterCache;
+        this.sentLetterArchive = sentLetterArchive;
         this.logger = logger;
     }
 
     /**
      * "Fetches" letter PDF for sent letter assumed to be uniquely identified by the reference.
      *  It does so by retrieving the data stored when the letter was sent and using it to regenerate
-     *  the PDF.
+     *  the PDF, unless the PDF regenerated from the same data is already cached. Where the PDF
+     *  sent was archived, the archived PDF is returned instead.
      *
      * @param reference the reference assumed to uniquely identify the letter to be viewed
      * @param contextId unique identifier for tracking the request
@@ -66,25 +74,73 @@ public class SentLetterFetcher {
         }
 
         var letter = letters.getFirst().getRequest();
-        var html = getHtml(letter, reference, contextId);
-
-        try (var precompiledPdf = pdfGenerator.generatePdfFromHtml(html, reference)) {
+        var archivedPdf = fetchArchivedLetter(letter);
+        if (archivedPdf.isPresent()) {
             logger.debug(
-                    "Responding with regenerated letter PDF to view for letter with reference "
+                    "Responding with archived letter PDF to view for letter with reference "
                             + reference, createLogMap(contextId, VIEW_LETTER_PDF));
-            return precompiledPdf;
+            return archivedPdf.get();
         }
+
+        var letterPdf = renderedLetterCache.get(getCacheKey(letter, reference),
+                () -> renderLetter(letter, reference));
+        logger.debug(
+                "Responding with regenerated letter PDF to view for letter with reference "
+                        + reference, createLogMap(contextId, VIEW_LETTER_PDF));
+        return letterPdf;
+    }
+
+    private Optional<InputStream> fetchArchivedLetter(final LetterRequestDao letter)
+            throws IOException {
+        if (!sentLetterArchive.isEnabled()) {
+            return Optional.empty();
+        }
+        var reference = new LetterReference(
+                letter.getSenderDetails().getAppId(),
+                letter.getLetterDetails().getLetterId(),
+                letter.getSenderDetails().getReference());
+        return sentLetterArchive.fetch(reference.getFullReference());
+    }
+
+    private byte[] renderLetter(final LetterRequestDao letter,
+                                final String reference) throws IOException {
+        var html = getHtml(letter, reference);
+        var tags = createLetterTags(new LetterTemplateKey(
+                letter.getSenderDetails().getAppId(),
+                letter.getLetterDetails().getLetterId(),
+                letter.getLetterDetails().getTemplateId()));
+        try (var precompiledPdf = pdfGenerator.generatePdfFromHtml(html, reference, tags)) {
+            return precompiledPdf.readAllBytes();
+        }
+    }
+
+    private String getCacheKey(final LetterRequestDao letter, final String reference) {
+        var letterDetails = letter.getLetterDetails();
+        var address = letter.getRecipientDetails().getPhysicalAddress();
+        return renderedLetterCache.keyOf(
+                reference,
+                letter.getSenderDetails().getAppId(),
+                letterDetails.getLetterId(),
+                letterDetails.getTemplateId(),
+                letterDetails.getPersonalisationDetails(),
+                address.getAddressLine1(),
+                address.getAddressLine2(),
+                address.getAddressLine3(),
+                address.getAddressLine4(),
+                address.getAddressLine5(),
+                address.getAddressLine6(),
+                address.getAddressLine7(),
+                letter.getCreatedAt());
     }
 
     private String getHtml(final LetterRequestDao letter,
-                           final String reference,
-                           final String contextId) {
+                           final String reference) {
         var appId = letter.getSenderDetails().getAppId();
         var letterId = letter.getLetterDetails().getLetterId();
         var templateId = letter.getLetterDetails().getTemplateId();
-        var personalisationDetailsString = letter.getLetterDetails().getPersonalisationDetails();
+        // Copied, so that the original sending date is not added to the letter request itself.
         var personalisationDetails =
-                parser.parsePersonalisationDetails(personalisationDetailsString, contextId);
+                new HashMap<>(letter.getLetterDetails().getPersonalisationDetails());
         var address = letter.getRecipientDetails().getPhysicalAddress();
         var originalSendingDate = letter.getCreatedAt();
 
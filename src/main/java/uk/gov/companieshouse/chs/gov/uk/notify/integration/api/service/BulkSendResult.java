@@ -0,0 +1,30 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service;
+
+/**
+ * The outcome of the attempt to send one of the notifications requested in a bulk send request.
+ * @param appId the ID of the client app that requested the notification
+ * @param reference the notification request reference
+ * @param outcome the outcome of the attempt to send the notification
+ */
+public record BulkSendResult(String appId, String reference, Outcome outcome) {
+
+    public enum Outcome {
+        /** Sent through Gov Notify by this request. */
+        SENT,
+        /** Previously sent, and so ignored. */
+        ALREADY_SENT,
+        /** Being sent by another caller, and so ignored. */
+        ALREADY_PROCESSING,
+        /** No such notification request found in the database. */
+        NOT_FOUND,
+        /** The notification request details could not be used to produce a notification. */
+        INVALID,
+        /** Sending through Gov Notify failed, and will not be retried. */
+        FAILED,
+        /** Sending through Gov Notify failed, and another attempt has been scheduled. */
+        RETRY_SCHEDULED,
+        /** Not sent as the Gov Notify rate limit was reached; may be requested again later. */
+        RATE_LIMITED
+    }
+
+}
@@ -7,15 +7,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ratelimit.TokenBucketRateLimiter;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 import uk.gov.service.notify.LetterResponse;
-import uk.gov.service.notify.NotificationClient;
 import uk.gov.service.notify.NotificationClientException;
 import uk.gov.service.notify.SendEmailResponse;
 
@@ -28,16 +35,59 @@ public class GovUkNotifyService {
     public static final String ERROR_MESSAGE_KEY = "error";
     public static final UUID NIL_UUID = new UUID(0L, 0L);
 
-    private final NotificationClient client;
+    private final NotifyTransport client;
     private final ObjectMapper objectMapper;
 
-    public GovUkNotifyService(NotificationClient client, ObjectMapper objectMapper) {
+    /**
+     * Limit the number of calls in flight to each Gov Notify endpoint. When requests are handled
+     * on virtual threads, the number of concurrent requests is no longer bounded by the size of
+     * the Tomcat thread pool, and so these permits are what stop us flooding Gov Notify.
+     */
+    private final Semaphore emailPermits;
+    private final Semaphore letterPermits;
+
+    /**
+     * Limit the rate of calls to Gov Notify, emails and letters alike, to keep within the rate
+     * limit Gov Notify applies to each API key. A call that would exceed it is rejected at once,
+     * rather than being made only for Gov Notify to reject it. As each instance of this service
+     * limits only its own calls, each is allowed an equal share of the rate for the API key.
+     */
+    private final TokenBucketRateLimiter rateLimiter;
+    private final String rateLimitKey;
+
+    public GovUkNotifyService(NotifyTransport client,
+                              ObjectMapper objectMapper,
+                              @Value("${gov.uk.notify.email.max-concurrent-requests:20}")
+                              int maxConcurrentEmailRequests,
+                              @Value("${gov.uk.notify.letter.max-concurrent-requests:5}")
+                              int maxConcurrentLetterRequests,
+                              @Value("${gov.uk.notify.rate-limit.requests-per-minute:2900}")
+                              int requestsPerMinute,
+                              @Value("${gov.uk.notify.rate-limit.burst:100}")
+                              int rateLimitBurst,
+                              @Value("${gov.uk.notify.rate-limit.instances:1}")
+                              int instances) {
         this.client = client;
         this.objectMapper = objectMapper;
+        this.emailPermits = new Semaphore(maxConcurrentEmailRequests, true);
+        this.letterPermits = new Semaphore(maxConcurrentLetterRequests, true);
+        this.rateLimiter = new TokenBucketRateLimiter(Math.max(1, requestsPerMinute / instances),
+                Duration.ofMinutes(1), Math.max(1, rateLimitBurst / instances));
+        // Gov Notify applies its rate limit to each API key, which identifies the service.
+        this.rateLimitKey = Objects.toString(client.getServiceId(), "");
     }
 
-    public record EmailResp(boolean success, SendEmailResponse response) {
-        // Empty: using only auto-generated methods
+    /**
+     * @param success whether Gov Notify accepted the email
+     * @param response the response from Gov Notify
+     * @param httpStatus the HTTP status with which Gov Notify rejected the email, or 0 should
+     *        Gov Notify not have responded
+     */
+    public record EmailResp(boolean success, SendEmailResponse response, int httpStatus) {
+
+        public EmailResp(boolean success, SendEmailResponse response) {
+            this(success, response, 0);
+        }
     }
 
     public EmailResp sendEmail(
@@ -46,18 +96,32 @@ public class GovUkNotifyService {
             @NotBlank String reference,
             Map<String, ?> personalisation) {
         try {
-            SendEmailResponse response = client.sendEmail(templateId, recipient, personalisation, reference);
+            SendEmailResponse response = callWithPermit(emailPermits,
+                    () -> client.sendEmail(templateId, recipient, personalisation, reference));
             return new EmailResp(response != null && response.getNotificationId() != null, response);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted awaiting permit to send email", ie, createLogData(reference));
+            return new EmailResp(false, null);
         } catch (NotificationClientException e) {
             Map<String, Object> logData = createLogData(reference);
             logData.putAll(Map.of("recipient", recipient, "templateId", templateId));
             LOGGER.error("Failed to send email", e, logData);
-            return new EmailResp(false, null);
+            return new EmailResp(false, null, httpStatusOf(e));
         }
     }
 
-    public record LetterResp(boolean success, LetterResponse response) {
-        // Empty: using only auto-generated methods
+    /**
+     * @param success whether Gov Notify accepted the letter
+     * @param response the response from Gov Notify, or one recording the error
+     * @param httpStatus the HTTP status with which Gov Notify rejected the letter, or 0 should
+     *        Gov Notify not have responded
+     */
+    public record LetterResp(boolean success, LetterResponse response, int httpStatus) {
+
+        public LetterResp(boolean success, LetterResponse response) {
+            this(success, response, 0);
+        }
     }
 
     public LetterResp sendLetter(
@@ -65,19 +129,25 @@ public class GovUkNotifyService {
             @NotBlank String reference,
             @NotNull InputStream precompiledPdf) {
         try {
-            var response = client.sendPrecompiledLetterWithInputStream(reference, precompiledPdf, postage.toString());
+            var response = callWithPermit(letterPermits,
+                    () -> client.sendPrecompiledLetterWithInputStream(
+                            reference, precompiledPdf, postage.toString()));
             return new LetterResp(response != null && response.getNotificationId() != null,
                     response);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted awaiting permit to send letter", ie, createLogData(reference));
+            return new LetterResp(false, null);
         } catch (NotificationClientException nce) {
             Map<String, Object> logData = createLogData(reference);
             LOGGER.error("Failed to send letter", nce, logData);
             try {
                 var response = buildLetterResponseForError(nce, reference);
-                return new LetterResp(false, response);
+                return new LetterResp(false, response, httpStatusOf(nce));
             } catch (JsonProcessingException jpe) {
                 LOGGER.error("Failed to build error response", jpe, logData);
             }
-            return new LetterResp(false, null);
+            return new LetterResp(false, null, httpStatusOf(nce));
         }
     }
 
@@ -108,6 +178,46 @@ public class GovUkNotifyService {
         return response;
     }
 
+    /**
+     * Gets the HTTP status with which Gov Notify rejected a call.
+     *
+     * @param nce the exception caught
+     * @return the HTTP status, or 0 should the call have failed before Gov Notify responded
+     */
+    private static int httpStatusOf(NotificationClientException nce) {
+        return nce.getCause() instanceof IOException ? 0 : nce.getHttpResult();
+    }
+
+    @FunctionalInterface
+    private interface NotifyCall<T> {
+        T call() throws NotificationClientException;
+    }
+
+    /**
+     * Makes the call to Gov Notify once a permit for the endpoint called is available.
+     *
+     * @param permits the permits limiting the concurrent calls to the endpoint
+     * @param notifyCall the call to make
+     * @return the response from Gov Notify
+     * @throws InterruptedException should the thread be interrupted awaiting a permit
+     * @throws NotificationClientException should Gov Notify report an error
+     * @throws NotifyRateLimitExceededException should the rate limit have been reached
+     */
+    private <T> T callWithPermit(Semaphore permits, NotifyCall<T> notifyCall)
+            throws InterruptedException, NotificationClientException {
+        var retryAfter = rateLimiter.tryAcquire(rateLimitKey);
+        if (!retryAfter.isZero()) {
+            throw new NotifyRateLimitExceededException(
+                    "Gov Notify rate limit reached, retry after " + retryAfter, retryAfter);
+        }
+        permits.acquire();
+        try {
+            return notifyCall.call();
+        } finally {
+            permits.release();
+        }
+    }
+
     private Map<String, Object> createLogData(String reference) {
         var logDate = new HashMap<String, Object>();
         logDate.put("reference", reference);
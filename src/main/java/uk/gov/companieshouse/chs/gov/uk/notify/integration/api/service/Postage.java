@@ -1,15 +1,43 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service;
 
+import java.util.HashSet;
+import java.util.Set;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+
 public enum Postage {
 
     FIRST_CLASS("first"), SECOND_CLASS("second"), ECONOMY("economy");
 
+    /**
+     * Set of letters that should be sent using second class postage
+     */
+    private static final Set<LetterTemplateKey> SECOND_CLASS_LETTERS = new HashSet<>();
+    static {
+        SECOND_CLASS_LETTERS.addAll(LetterTemplateKey.NEW_PSC_DIRECTION_TEMPLATES);
+        SECOND_CLASS_LETTERS.addAll(LetterTemplateKey.TRANSITIONAL_PSC_DIRECTION_TEMPLATES);
+        SECOND_CLASS_LETTERS.addAll(LetterTemplateKey.IDVPSCEXT_TEMPLATES);
+    }
+
     private Postage(String type) {
         this.type = type;
     }
 
     private String type;
 
+    /**
+     * Determines the postage with which the letter identified is to be sent.
+     * @param letterTemplateKey the key identifying the letter template
+     * @return the postage for the letter
+     */
+    public static Postage forLetter(final LetterTemplateKey letterTemplateKey) {
+        if (SECOND_CLASS_LETTERS.contains(letterTemplateKey)) {
+            return SECOND_CLASS;
+        } else {
+            // Default to economy mail
+            return ECONOMY;
+        }
+    }
+
     @Override
     public String toString() {
         return type;
@@ -0,0 +1,50 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+/**
+ * Provides the Thymeleaf template engines used to produce letter content, one per letter template
+ * assets directory (template family).
+ * <p>
+ * Each engine's resolver has its prefix fixed at creation, so that it is never changed on a
+ * per-request basis, and letters for different templates may safely be produced concurrently.
+ * Because the Thymeleaf template cache key uses the template name but not the prefix, giving
+ * each assets directory its own engine (and so its own cache) also means that caching can be
+ * enabled without a template cached from one directory being returned for another.
+ * </p>
+ */
+@Component
+public class LetterTemplateEngines {
+
+    private final Map<String, ITemplateEngine> templateEngines = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the template engine that locates letter templates and their constituent files in the
+     * assets directory identified by the prefix provided, creating it on first use.
+     *
+     * @param prefix the template resolver prefix identifying the assets directory
+     * @return the letter template engine for the assets directory
+     */
+    public ITemplateEngine getTemplateEngine(final String prefix) {
+        return templateEngines.computeIfAbsent(prefix, LetterTemplateEngines::createTemplateEngine);
+    }
+
+    private static ITemplateEngine createTemplateEngine(final String prefix) {
+        var templateResolver = new ClassLoaderTemplateResolver();
+        templateResolver.setPrefix(prefix);
+        templateResolver.setSuffix(".html");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setCacheable(true);
+
+        var templateEngine = new TemplateEngine();
+        templateEngine.addTemplateResolver(templateResolver);
+        return templateEngine;
+    }
+
+}
@@ -19,13 +19,12 @@ import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.
 
 import java.time.LocalDate;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.springframework.stereotype.Component;
-import org.thymeleaf.ITemplateEngine;
 import org.thymeleaf.context.Context;
-import org.thymeleaf.templateresolver.AbstractConfigurableTemplateResolver;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.LetterValidationException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
@@ -39,20 +38,17 @@ public class TemplatePersonaliser {
                     LetterTemplateKey.IDVPSCDEFAULT_TEMPLATES.stream())
             .collect(Collectors.toSet());
     
-    private final ITemplateEngine templateEngine;
+    private final LetterTemplateEngines templateEngines;
     private final TemplateLookup templateLookup;
-    private final AbstractConfigurableTemplateResolver templateResolver;
     private final TemplateContextValidator validator;
     private final PathsPublisher pathsPublisher;
 
-    public TemplatePersonaliser(ITemplateEngine templateEngine,
+    public TemplatePersonaliser(LetterTemplateEngines templateEngines,
                                 TemplateLookup templateLookup,
-                                AbstractConfigurableTemplateResolver templateResolver,
                                 TemplateContextValidator validator,
                                 PathsPublisher pathsPublisher) {
-        this.templateEngine = templateEngine;
+        this.templateEngines = templateEngines;
         this.templateLookup = templateLookup;
-        this.templateResolver = templateResolver;
         this.validator = validator;
         this.pathsPublisher = pathsPublisher;
     }
@@ -69,7 +65,7 @@ public class TemplatePersonaliser {
      */
     public String personaliseLetterTemplate(LetterTemplateKey templateLookupKey,
                                             String reference,
-                                            Map<String, String> personalisationDetails,
+                                            Map<String, ?> personalisationDetails,
                                             AddressDao address) {
 
         validatePersonalisationDetails(personalisationDetails);
@@ -87,15 +83,15 @@ public class TemplatePersonaliser {
         WelshDatesPublisher.publishWelshDates(context);
 
         var templateSpec = templateLookup.lookupTemplate(templateLookupKey);
-        templateResolver.setPrefix(templateSpec.prefix());
-        return templateEngine.process(templateSpec.filename(), context);
+        return templateEngines.getTemplateEngine(templateSpec.prefix())
+                .process(templateSpec.filename(), context);
     }
 
-    private void validatePersonalisationDetails(Map<String, String> personalisationDetails) {
+    private void validatePersonalisationDetails(Map<String, ?> personalisationDetails) {
         // To avoid confusion and the possibility of personalisation details
         // overwriting values provided in other details, we prevent certain fields from
         // appearing in the personalisation details.
-        if (!isBlank(personalisationDetails.get(REFERENCE))) {
+        if (!isBlank(Objects.toString(personalisationDetails.get(REFERENCE), null))) {
             throw new LetterValidationException(
                     "The key field reference must not appear in the personalisation details.");
         }
@@ -124,7 +120,7 @@ public class TemplatePersonaliser {
     }
 
     private void personaliseLetter(Context context,
-                                   Map<String, String> personalisationDetails) {
+                                   Map<String, ?> personalisationDetails) {
         personalisationDetails.forEach(context::setVariable);
     }
 
@@ -141,13 +137,13 @@ public class TemplatePersonaliser {
      * @param templateLookupKey the key used to determine which letter type we are dealing with
      */
     private void populateLetterWithDynamicDates(Context context,
-                                              Map<String, String> personalisationDetails,
+                                              Map<String, ?> personalisationDetails,
                                               LetterTemplateKey templateLookupKey) {
         if (validator.requiresTodaysDate(templateLookupKey)) {
             String date;
             if (personalisationDetails.containsKey(ORIGINAL_SENDING_DATE)) {
                 // Then we are regenerating a previously sent letter. Use its sending date.
-                date = personalisationDetails.get(ORIGINAL_SENDING_DATE);
+                date = Objects.toString(personalisationDetails.get(ORIGINAL_SENDING_DATE), null);
             } else {
                 // Else we are sending the letter now. Use today's date.
                 date = LocalDate.now().format(DATE_FORMATTER);
@@ -175,7 +171,7 @@ public class TemplatePersonaliser {
      * @param templateLookupKey the key used to determine which letter type we are dealing with
      */
     private void populateLetterWithTriggeringEventDate(Context context,
-                                                       Map<String, String> personalisationDetails,
+                                                       Map<String, ?> personalisationDetails,
                                                        LetterTemplateKey templateLookupKey) {
         if (LetterTemplateKey.NEW_PSC_DIRECTION_TEMPLATES.contains(templateLookupKey)) {
             context.setVariable(TRIGGERING_EVENT_DATE, personalisationDetails.get(IDV_START_DATE));
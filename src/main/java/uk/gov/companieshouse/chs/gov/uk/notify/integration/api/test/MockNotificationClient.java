@@ -3,30 +3,36 @@ package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.test;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ChsGovUkNotifyIntegrationService.APPLICATION_NAMESPACE;
 
 import java.io.InputStream;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.config.ApplicationConfig;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ratelimit.SlidingWindowRateLimiter;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 import uk.gov.service.notify.LetterResponse;
-import uk.gov.service.notify.NotificationClient;
 import uk.gov.service.notify.NotificationClientException;
 import uk.gov.service.notify.SendEmailResponse;
 
+/**
+ * The Gov Notify transport used in non-production environments, which simulates Gov Notify's
+ * responses for references marked for the mock, and hands other calls to the configured Gov
+ * Notify transport, so that these environments send through the same transport as production.
+ */
 @Component
 @Primary
 @Profile({"local", "dev", "test"}) // Only active in non-production environments
-public class MockNotificationClient extends NotificationClient {
+public class MockNotificationClient implements NotifyTransport {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAMESPACE);
 
@@ -35,15 +41,13 @@ public class MockNotificationClient extends NotificationClient {
     private static final String RATE_LIMIT_EXCEEDED = "Rate limit exceeded";
     private static final String SIMULATED_SERVER_ERROR = "Simulated server error";
     private static final String DEFAULT_KEY = "default";
+    private static final int MINUTE_LIMIT_SLICES = 60;
 
-    private final Map<String, List<Long>> minuteRequests = new ConcurrentHashMap<>();
-    private final Map<String, AtomicInteger> dailyRateLimits = new ConcurrentHashMap<>();
-    private LocalDate lastDayReset = LocalDate.now();
+    private final NotifyTransport govNotifyTransport;
+    private final SlidingWindowRateLimiter minuteRateLimiter;
+    private final AtomicReference<DailyCount> dailyCount = new AtomicReference<>();
     private Supplier<Double> randomSupplier = Math::random;
 
-    @Value("${notify.mock.minute-limit:3000}")
-    private int minuteLimit;
-
     @Value("${notify.mock.daily-limit:250000}")
     private int dailyLimit;
 
@@ -70,20 +74,33 @@ public class MockNotificationClient extends NotificationClient {
         }
     }
 
-    public MockNotificationClient(@Value("${gov.uk.notify.api.key}") String apiKey) {
-        super(apiKey);
+    private record DailyCount(LocalDate date, int count) {
+    }
+
+    public MockNotificationClient(
+            @Qualifier(ApplicationConfig.GOV_NOTIFY_TRANSPORT) NotifyTransport govNotifyTransport,
+            @Value("${notify.mock.minute-limit:3000}") int minuteLimit) {
+        this.govNotifyTransport = govNotifyTransport;
+        minuteRateLimiter = new SlidingWindowRateLimiter(minuteLimit, Duration.ofMinutes(1),
+                MINUTE_LIMIT_SLICES, this::getCurrentTimeMillis);
         LOGGER.info("Using mock notification client, must be test environment.");
     }
 
+    @Override
+    public String getServiceId() {
+        return govNotifyTransport.getServiceId();
+    }
+
     private boolean useRealGovNotify(String reference) {
-        return reference != null && !reference.startsWith(MOCK_REFERENCE_PREFIX);
+        // Letter references are prefixed with the app and letter IDs (see LetterReference).
+        return reference != null && !reference.contains(MOCK_REFERENCE_PREFIX);
     }
 
     @Override
     public SendEmailResponse sendEmail(String templateId, String emailAddress, Map<String, ?> personalisation,
                                        String reference) throws NotificationClientException {
         if (useRealGovNotify(reference)) {
-            return super.sendEmail(templateId, emailAddress, personalisation, reference);
+            return govNotifyTransport.sendEmail(templateId, emailAddress, personalisation, reference);
         }
 
         if (isRateLimitExceeded()) {
@@ -104,10 +121,12 @@ public class MockNotificationClient extends NotificationClient {
 
     @Override
     public LetterResponse sendPrecompiledLetterWithInputStream(String reference,
-                                                               InputStream precompiledPdf)
+                                                               InputStream precompiledPdf,
+                                                               String postage)
             throws NotificationClientException {
         if (useRealGovNotify(reference)) {
-            return super.sendPrecompiledLetterWithInputStream(reference, precompiledPdf);
+            return govNotifyTransport.sendPrecompiledLetterWithInputStream(reference,
+                    precompiledPdf, postage);
         }
 
         if (isRateLimitExceeded()) {
@@ -123,31 +142,16 @@ public class MockNotificationClient extends NotificationClient {
     }
 
     public boolean isRateLimitExceeded() {
-        long currentTime = getCurrentTimeMillis();
-
-        long cutoffTime = currentTime - 60000;
-        minuteRequests.computeIfPresent(DEFAULT_KEY, (k, timestamps) -> {
-            timestamps.removeIf(timestamp -> timestamp < cutoffTime);
-            return timestamps;
-        });
-
-        minuteRequests.putIfAbsent(DEFAULT_KEY, new CopyOnWriteArrayList<>());
-        List<Long> timestamps = minuteRequests.get(DEFAULT_KEY);
-        timestamps.add(currentTime);
-
-        if (timestamps.size() > minuteLimit) {
+        if (!minuteRateLimiter.tryAcquire(DEFAULT_KEY)) {
             return true;
         }
 
         LocalDate today = getCurrentDate();
-        if (!today.equals(lastDayReset)) {
-            dailyRateLimits.clear();
-            lastDayReset = today;
-        }
-
-        dailyRateLimits.putIfAbsent(DEFAULT_KEY, new AtomicInteger(0));
-        int dailyCount = dailyRateLimits.get(DEFAULT_KEY).incrementAndGet();
-        return dailyCount > dailyLimit;
+        int count = dailyCount.updateAndGet(daily ->
+                daily != null && daily.date().equals(today)
+                        ? new DailyCount(today, daily.count() + 1)
+                        : new DailyCount(today, 1)).count();
+        return count > dailyLimit;
     }
 
     public String createMockEmailResponse(String templateId, String reference) {
@@ -196,16 +200,16 @@ public class MockNotificationClient extends NotificationClient {
     }
 
     public void resetRateLimits() {
-        minuteRequests.clear();
-        dailyRateLimits.clear();
+        minuteRateLimiter.reset();
+        dailyCount.set(null);
     }
 
     public int getMinuteLimit() {
-        return minuteLimit;
+        return minuteRateLimiter.getLimit();
     }
 
     public void setMinuteLimit(int minuteLimit) {
-        this.minuteLimit = minuteLimit;
+        minuteRateLimiter.setLimit(minuteLimit);
     }
 
     public int getDailyLimit() {
@@ -241,17 +245,12 @@ public class MockNotificationClient extends NotificationClient {
     }
 
     public int getCurrentMinuteRequestCount() {
-        if (!minuteRequests.containsKey(DEFAULT_KEY)) {
-            return 0;
-        }
-        return minuteRequests.get(DEFAULT_KEY).size();
+        return minuteRateLimiter.getCount(DEFAULT_KEY);
     }
 
     public int getCurrentDailyRequestCount() {
-        if (!dailyRateLimits.containsKey(DEFAULT_KEY)) {
-            return 0;
-        }
-        return dailyRateLimits.get(DEFAULT_KEY).get();
+        DailyCount daily = dailyCount.get();
+        return daily != null && daily.date().equals(getCurrentDate()) ? daily.count() : 0;
     }
 
     public void setRandomSupplier(Supplier<Double> randomSupplier) {
@@ -0,0 +1,32 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils;
+
+import io.micrometer.core.instrument.Tags;
+import java.util.Objects;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+
+public class MetricsUtils {
+
+    public static final String OUTCOME = "outcome";
+    public static final String WARM_UP = "warm_up";
+
+    private static final String NONE = "none";
+
+    private MetricsUtils() {
+    }
+
+    /**
+     * Creates the tags identifying the letter template in the metrics recorded for a letter.
+     * Old letters, which have no letter ID, are tagged with a letter ID of <code>none</code>.
+     * Letters are tagged as not rendered to warm up, so that the start up warm up may tag its own
+     * renders as such and be told apart.
+     * @param templateKey the key of the letter template
+     * @return the app ID, letter ID, template ID and warm up tags
+     */
+    public static Tags createLetterTags(final LetterTemplateKey templateKey) {
+        return Tags.of(
+                "app_id", Objects.toString(templateKey.appId(), NONE),
+                "letter_id", Objects.toString(templateKey.letterId(), NONE),
+                "template_id", Objects.toString(templateKey.templateId(), NONE),
+                WARM_UP, "false");
+    }
+}
@@ -1,45 +1,36 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils;
 
-import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.LoggingUtils.createLogMap;
-
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ValidationException;
 import java.util.Map;
-import org.springframework.stereotype.Component;
-import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.LetterValidationException;
-import uk.gov.companieshouse.logging.Logger;
-
 
-@Component
+/**
+ * Parses personalisation details held as a JSON string, as they were stored before they were
+ * stored as a sub-document.
+ */
 public class PersonalisationDetailsParser {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    private final Logger logger;
 
-    public PersonalisationDetailsParser(Logger logger) {
-        this.logger = logger;
+    private PersonalisationDetailsParser() {
     }
 
-    public Map<String, String> parsePersonalisationDetails(
-            final String personalisationDetailsString,
-            final String contextId) {
-
-        Map<java.lang.String, java.lang.String> personalisationDetails;
+    /**
+     * Parses personalisation details held as a JSON string.
+     * @param personalisationDetailsString the JSON object holding the personalisation details
+     * @return the personalisation details
+     * @throws ValidationException should the string not hold a JSON object
+     */
+    public static Map<String, Object> parsePersonalisationDetails(
+            final String personalisationDetailsString) {
         try {
-            logger.debug("Parsing personalisation details",
-                    createLogMap(contextId, "parse_details"));
-            personalisationDetails = OBJECT_MAPPER.readValue(
-                    personalisationDetailsString,
-                    new TypeReference<>() {}
-            );
-        } catch (
-                JsonProcessingException jpe) {
-            var message = "Failed to parse personalisation details: " + jpe.getMessage();
-            logger.error(message, createLogMap(contextId, "parse_error"));
-            throw new LetterValidationException(message);
+            return OBJECT_MAPPER.readValue(personalisationDetailsString, new TypeReference<>() {});
+        } catch (JsonProcessingException jpe) {
+            throw new ValidationException(
+                    "Failed to parse personalisation details: " + jpe.getMessage());
         }
-        return personalisationDetails;
     }
 
 }
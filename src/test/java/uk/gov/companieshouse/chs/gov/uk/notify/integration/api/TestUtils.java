@@ -7,14 +7,17 @@ import static uk.gov.companieshouse.api.util.security.EricConstants.ERIC_AUTHORI
 import static uk.gov.companieshouse.api.util.security.EricConstants.ERIC_IDENTITY_TYPE;
 import static uk.gov.companieshouse.api.util.security.SecurityConstants.API_KEY_IDENTITY_TYPE;
 import static uk.gov.companieshouse.api.util.security.SecurityConstants.INTERNAL_USER_ROLE;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser.parsePersonalisationDetails;
 
 import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.util.Map;
 import java.util.UUID;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.json.JSONObject;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
@@ -35,7 +38,7 @@ public class TestUtils {
     private static final String X_REQUEST_ID = "X-Request-ID";
     private static final String ERIC_IDENTITY = "ERIC-Identity";
     private static final String ERIC_IDENTITY_VALUE = "65e73495c8e2";
-    private static final String PERSONALISATION_DETAILS =
+    public static final String PERSONALISATION_DETAILS =
             "{ \"idv_start_date\": \"30 June 2025\", "
                     + "\"psc_appointment_date\": \"24 June 2025\", "
                     + "\"idv_verification_due_date\": \"14 July 2025\", "
@@ -73,7 +76,8 @@ public class TestUtils {
         LetterDetailsDao letterDetails = new LetterDetailsDao();
         letterDetails.setLetterId("IDVPSCDIRNEW");
         letterDetails.setTemplateId("v1.0");
-        letterDetails.setPersonalisationDetails(PERSONALISATION_DETAILS);
+        letterDetails.setPersonalisationDetails(
+                parsePersonalisationDetails(PERSONALISATION_DETAILS));
 
         LetterRequestDao letterRequest = new LetterRequestDao();
         letterRequest.setSenderDetails(senderDetails);
@@ -83,6 +87,17 @@ public class TestUtils {
         return letterRequest;
     }
 
+    /**
+     * Sets personalisation details held as a JSON string, as they are held in documents saved
+     * before they were held as a sub-document.
+     * @param details the letter or email details
+     * @param personalisationDetails the JSON string
+     */
+    public static void setLegacyPersonalisationDetails(final Object details,
+                                                       final String personalisationDetails) {
+        ReflectionTestUtils.setField(details, "personalisationDetails", personalisationDetails);
+    }
+
     public static EmailRequestDao createEmailRequest(String email) {
         EmailRequestDao emailRequest = createEmailRequest();
         emailRequest.getRecipientDetails().setEmailAddress(email);
@@ -98,7 +113,7 @@ public class TestUtils {
         recipientDetails.setEmailAddress("test@example");
         EmailDetailsDao emailDetails = new EmailDetailsDao();
         emailDetails.setTemplateId("template-123");
-        emailDetails.setPersonalisationDetails("Hello {{name}}");
+        emailDetails.setPersonalisationDetails(Map.of("name", "Test User"));
 
         EmailRequestDao emailRequest = new EmailRequestDao();
         emailRequest.setSenderDetails(senderDetails);
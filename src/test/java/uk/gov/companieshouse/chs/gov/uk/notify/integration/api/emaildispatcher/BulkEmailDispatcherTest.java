@@ -0,0 +1,178 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.emaildispatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.api.chs.notification.integration.model.EmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult.Outcome;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class BulkEmailDispatcherTest {
+
+    private static final String APP_ID = "chips";
+    private static final String CONTEXT_ID = "context";
+    private static final Map<String, Object> PERSONALISATION = Map.of("name", "Test User");
+
+    @Mock
+    private GovUkNotifyService govUkNotifyService;
+    @Mock
+    private NotificationDatabaseService notificationDatabaseService;
+    @Mock
+    private SendRetryScheduler sendRetryScheduler;
+    @Mock
+    private Logger logger;
+
+    @InjectMocks
+    private BulkEmailDispatcher bulkEmailDispatcher;
+
+    @Test
+    void sendsEmailsLoadedWithSingleQuery() {
+        var sent = createSavedEmail("sent", RequestStatus.SENT, PERSONALISATION);
+        var pending = createSavedEmail("pending", RequestStatus.PENDING, PERSONALISATION);
+        var failing = createSavedEmail("failing", RequestStatus.PENDING, PERSONALISATION);
+        var invalid = createSavedEmail("invalid", RequestStatus.PENDING, PERSONALISATION);
+        TestUtils.setLegacyPersonalisationDetails(invalid.getRequest().getEmailDetails(), "not json");
+        when(notificationDatabaseService.getEmails(
+                Set.of("sent", "pending", "failing", "invalid", "missing")))
+                .thenReturn(List.of(sent, pending, failing, invalid));
+        claimAll();
+        when(govUkNotifyService.sendEmail(anyString(), anyString(), eq("pending"), anyMap()))
+                .thenReturn(new GovUkNotifyService.EmailResp(true, null));
+        when(govUkNotifyService.sendEmail(anyString(), anyString(), eq("failing"), anyMap()))
+                .thenReturn(new GovUkNotifyService.EmailResp(false, null));
+
+        var results = bulkEmailDispatcher.sendEmails(List.of(
+                new EmailRequest(APP_ID, "sent"),
+                new EmailRequest(APP_ID, "pending"),
+                new EmailRequest(APP_ID, "failing"),
+                new EmailRequest(APP_ID, "invalid"),
+                new EmailRequest(APP_ID, "missing")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "sent", Outcome.ALREADY_SENT),
+                new BulkSendResult(APP_ID, "pending", Outcome.SENT),
+                new BulkSendResult(APP_ID, "failing", Outcome.FAILED),
+                new BulkSendResult(APP_ID, "invalid", Outcome.INVALID),
+                new BulkSendResult(APP_ID, "missing", Outcome.NOT_FOUND));
+        verify(notificationDatabaseService).claimRequests(List.of(pending, failing),
+                NotificationEmailRequest.class);
+        verify(notificationDatabaseService).updateStatuses(List.of(pending),
+                NotificationEmailRequest.class, RequestStatus.SENT);
+        verify(notificationDatabaseService).updateStatuses(List.of(failing),
+                NotificationEmailRequest.class, RequestStatus.FAILED);
+        verify(notificationDatabaseService).storeEmailResponses(anyCollection());
+    }
+
+    @Test
+    void schedulesRetryOfEmailGovNotifyFailedToAccept() {
+        var failing = createSavedEmail("failing", RequestStatus.PENDING, PERSONALISATION);
+        when(notificationDatabaseService.getEmails(Set.of("failing"))).thenReturn(List.of(failing));
+        claimAll();
+        when(govUkNotifyService.sendEmail(anyString(), anyString(), eq("failing"), anyMap()))
+                .thenReturn(new GovUkNotifyService.EmailResp(false, null, 503));
+        when(sendRetryScheduler.scheduleRetry(failing, NotificationEmailRequest.class, 503))
+                .thenReturn(true);
+
+        var results = bulkEmailDispatcher.sendEmails(
+                List.of(new EmailRequest(APP_ID, "failing")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "failing", Outcome.RETRY_SCHEDULED));
+        verify(notificationDatabaseService).updateStatuses(List.of(),
+                NotificationEmailRequest.class, RequestStatus.FAILED);
+    }
+
+    @Test
+    void doesNotSendEmailClaimedElsewhere() {
+        var processing = createSavedEmail("processing", RequestStatus.PENDING, PERSONALISATION);
+        when(notificationDatabaseService.getEmails(Set.of("processing")))
+                .thenReturn(List.of(processing));
+        when(notificationDatabaseService.claimRequests(List.of(processing),
+                NotificationEmailRequest.class)).thenReturn(List.of());
+
+        var results = bulkEmailDispatcher.sendEmails(
+                List.of(new EmailRequest(APP_ID, "processing")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "processing", Outcome.ALREADY_PROCESSING));
+        verify(govUkNotifyService, never()).sendEmail(anyString(), anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    void doesNotMatchEmailForOtherApp() {
+        var otherApp = createSavedEmail("reference", RequestStatus.PENDING, PERSONALISATION);
+        otherApp.getRequest().getSenderDetails().setAppId("other-app");
+        when(notificationDatabaseService.getEmails(Set.of("reference")))
+                .thenReturn(List.of(otherApp));
+
+        var results = bulkEmailDispatcher.sendEmails(
+                List.of(new EmailRequest(APP_ID, "reference")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "reference", Outcome.NOT_FOUND));
+        verify(govUkNotifyService, never()).sendEmail(anyString(), anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    void sendsDuplicateRequestOnce() {
+        var pending = createSavedEmail("pending", RequestStatus.PENDING, PERSONALISATION);
+        when(notificationDatabaseService.getEmails(Set.of("pending"))).thenReturn(List.of(pending));
+        claimAll();
+        when(govUkNotifyService.sendEmail(anyString(), anyString(), eq("pending"), anyMap()))
+                .thenReturn(new GovUkNotifyService.EmailResp(true, null));
+
+        var results = bulkEmailDispatcher.sendEmails(List.of(
+                new EmailRequest(APP_ID, "pending"),
+                new EmailRequest(APP_ID, "pending")), CONTEXT_ID);
+
+        assertThat(results).extracting(BulkSendResult::outcome)
+                .containsExactly(Outcome.SENT, Outcome.SENT);
+        verify(govUkNotifyService, times(1)).sendEmail(anyString(), anyString(), eq("pending"), anyMap());
+    }
+
+    private void claimAll() {
+        when(notificationDatabaseService.claimRequests(anyCollection(),
+                eq(NotificationEmailRequest.class)))
+                .thenAnswer(invocation -> List.copyOf(invocation.getArgument(0)));
+    }
+
+    private static NotificationEmailRequest createSavedEmail(
+            final String reference,
+            final RequestStatus status,
+            final Map<String, Object> personalisation) {
+        var emailRequest = TestUtils.createEmailRequest();
+        emailRequest.getSenderDetails().setAppId(APP_ID);
+        emailRequest.getSenderDetails().setReference(reference);
+        emailRequest.getEmailDetails().setPersonalisationDetails(personalisation);
+        var notificationRequest = new NotificationEmailRequest(emailRequest);
+        notificationRequest.setId(reference + "-id");
+        notificationRequest.setStatus(status);
+        return notificationRequest;
+    }
+
+}
@@ -0,0 +1,203 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.api.chs.notification.integration.model.LetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.LetterValidationException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.BulkSendResult.Outcome;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class BulkLetterDispatcherTest {
+
+    private static final String APP_ID = "chips";
+    private static final String CONTEXT_ID = "context";
+    private static final int RENDER_THREADS = 2;
+    private static final int MAX_CONCURRENT_UPLOADS = 1;
+
+    @Mock
+    private LetterDispatcher letterDispatcher;
+    @Mock
+    private NotificationDatabaseService notificationDatabaseService;
+    @Mock
+    private SendRetryScheduler sendRetryScheduler;
+    @Mock
+    private Logger logger;
+
+    private BulkLetterDispatcher bulkLetterDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        bulkLetterDispatcher = new BulkLetterDispatcher(letterDispatcher,
+                notificationDatabaseService, sendRetryScheduler, RENDER_THREADS,
+                MAX_CONCURRENT_UPLOADS, logger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkLetterDispatcher.shutdown();
+    }
+
+    @Test
+    void rendersAndSendsLettersLoadedWithSingleQuery() throws IOException {
+        var sent = createSavedLetter("sent", RequestStatus.SENT);
+        var pending = createSavedLetter("pending", RequestStatus.PENDING);
+        var failing = createSavedLetter("failing", RequestStatus.PENDING);
+        var invalid = createSavedLetter("invalid", RequestStatus.PENDING);
+        when(notificationDatabaseService.getLetters(
+                Set.of("sent", "pending", "failing", "invalid", "missing")))
+                .thenReturn(List.of(sent, pending, failing, invalid));
+        when(notificationDatabaseService.claimRequests(anyCollection(),
+                eq(NotificationLetterRequest.class)))
+                .thenAnswer(invocation -> List.copyOf(invocation.getArgument(0)));
+        when(letterDispatcher.renderLetter(any(), any(), any(), any(), eq(CONTEXT_ID)))
+                .thenAnswer(invocation -> {
+                    var reference = invocation.getArgument(0, LetterReference.class);
+                    if ("invalid".equals(reference.reference())) {
+                        throw new LetterValidationException("Invalid letter.");
+                    }
+                    return new ByteArrayInputStream(new byte[0]);
+                });
+        when(letterDispatcher.sendAndArchive(any(Postage.class), any(LetterTemplateKey.class),
+                eq("pending"), any(), eq(CONTEXT_ID))).thenReturn(new GovUkNotifyService.LetterResp(true, null));
+        when(letterDispatcher.sendAndArchive(any(Postage.class), any(LetterTemplateKey.class),
+                eq("failing"), any(), eq(CONTEXT_ID))).thenReturn(new GovUkNotifyService.LetterResp(false, null));
+
+        var results = bulkLetterDispatcher.sendLetters(List.of(
+                new LetterRequest(APP_ID, "sent"),
+                new LetterRequest(APP_ID, "pending"),
+                new LetterRequest(APP_ID, "failing"),
+                new LetterRequest(APP_ID, "invalid"),
+                new LetterRequest(APP_ID, "missing")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "sent", Outcome.ALREADY_SENT),
+                new BulkSendResult(APP_ID, "pending", Outcome.SENT),
+                new BulkSendResult(APP_ID, "failing", Outcome.FAILED),
+                new BulkSendResult(APP_ID, "invalid", Outcome.INVALID),
+                new BulkSendResult(APP_ID, "missing", Outcome.NOT_FOUND));
+        verify(notificationDatabaseService).updateStatuses(List.of(pending),
+                NotificationLetterRequest.class, RequestStatus.SENT);
+        verify(notificationDatabaseService).updateStatuses(List.of(failing, invalid),
+                NotificationLetterRequest.class, RequestStatus.FAILED);
+        verify(notificationDatabaseService).storeLetterResponses(anyCollection());
+        verify(letterDispatcher, never()).sendAndArchive(any(), any(), eq("invalid"), any(), any());
+    }
+
+    @Test
+    void rendersNoFurtherAheadOfUploadsThanPermitted() throws Exception {
+        var letters = IntStream.range(0, 10)
+                .mapToObj(i -> createSavedLetter("letter-" + i, RequestStatus.PENDING))
+                .toList();
+        when(notificationDatabaseService.getLetters(anySet())).thenReturn(letters);
+        when(notificationDatabaseService.claimRequests(anyCollection(),
+                eq(NotificationLetterRequest.class)))
+                .thenAnswer(invocation -> List.copyOf(invocation.getArgument(0)));
+        when(letterDispatcher.renderLetter(any(), any(), any(), any(), eq(CONTEXT_ID)))
+                .thenAnswer(invocation -> new ByteArrayInputStream(new byte[0]));
+        var uploadsAllowed = new CountDownLatch(1);
+        when(letterDispatcher.sendAndArchive(any(Postage.class), any(LetterTemplateKey.class),
+                any(), any(), eq(CONTEXT_ID))).thenAnswer(invocation -> {
+                    uploadsAllowed.await();
+                    return new GovUkNotifyService.LetterResp(true, null);
+                });
+
+        var results = CompletableFuture.supplyAsync(() -> bulkLetterDispatcher.sendLetters(
+                letters.stream().map(letter -> new LetterRequest(APP_ID,
+                        letter.getRequest().getSenderDetails().getReference())).toList(),
+                CONTEXT_ID));
+
+        verify(letterDispatcher, after(500).times(RENDER_THREADS + MAX_CONCURRENT_UPLOADS))
+                .renderLetter(any(), any(), any(), any(), any());
+        uploadsAllowed.countDown();
+        assertThat(results.get(5, TimeUnit.SECONDS)).extracting(BulkSendResult::outcome)
+                .containsOnly(Outcome.SENT);
+    }
+
+    @Test
+    void schedulesRetryOfLetterGovNotifyFailedToAccept() throws IOException {
+        var failing = createSavedLetter("failing", RequestStatus.PENDING);
+        when(notificationDatabaseService.getLetters(Set.of("failing")))
+                .thenReturn(List.of(failing));
+        when(notificationDatabaseService.claimRequests(anyCollection(),
+                eq(NotificationLetterRequest.class)))
+                .thenAnswer(invocation -> List.copyOf(invocation.getArgument(0)));
+        when(letterDispatcher.renderLetter(any(), any(), any(), any(), eq(CONTEXT_ID)))
+                .thenAnswer(invocation -> new ByteArrayInputStream(new byte[0]));
+        when(letterDispatcher.sendAndArchive(any(Postage.class), any(LetterTemplateKey.class),
+                eq("failing"), any(), eq(CONTEXT_ID)))
+                .thenReturn(new GovUkNotifyService.LetterResp(false, null, 0));
+        when(sendRetryScheduler.scheduleRetry(failing, NotificationLetterRequest.class, 0))
+                .thenReturn(true);
+
+        var results = bulkLetterDispatcher.sendLetters(
+                List.of(new LetterRequest(APP_ID, "failing")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "failing", Outcome.RETRY_SCHEDULED));
+        verify(notificationDatabaseService).updateStatuses(List.of(),
+                NotificationLetterRequest.class, RequestStatus.FAILED);
+    }
+
+    @Test
+    void doesNotSendLetterClaimedElsewhere() throws IOException {
+        var processing = createSavedLetter("processing", RequestStatus.PENDING);
+        when(notificationDatabaseService.getLetters(Set.of("processing")))
+                .thenReturn(List.of(processing));
+        when(notificationDatabaseService.claimRequests(anyCollection(),
+                eq(NotificationLetterRequest.class))).thenReturn(List.of());
+
+        var results = bulkLetterDispatcher.sendLetters(
+                List.of(new LetterRequest(APP_ID, "processing")), CONTEXT_ID);
+
+        assertThat(results).containsExactly(
+                new BulkSendResult(APP_ID, "processing", Outcome.ALREADY_PROCESSING));
+        verify(letterDispatcher, never()).renderLetter(any(), any(), any(), any(), any());
+    }
+
+    private static NotificationLetterRequest createSavedLetter(final String reference,
+                                                               final RequestStatus status) {
+        var letterRequest = TestUtils.createLetterRequest();
+        letterRequest.getSenderDetails().setAppId(APP_ID);
+        letterRequest.getSenderDetails().setReference(reference);
+        letterRequest.getLetterDetails().setLetterId(null);
+        var notificationRequest = new NotificationLetterRequest(letterRequest);
+        notificationRequest.setId(reference + "-id");
+        notificationRequest.setStatus(status);
+        return notificationRequest;
+    }
+
+}
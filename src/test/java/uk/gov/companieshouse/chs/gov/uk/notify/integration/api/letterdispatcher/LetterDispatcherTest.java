@@ -1,10 +1,21 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,23 +24,29 @@ import java.util.Map;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.SentLetterArchive;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.LetterTemplateKey;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
-import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils;
 import uk.gov.companieshouse.logging.Logger;
 
 @ExtendWith(MockitoExtension.class)
 @Tag("unit-test")
 class LetterDispatcherTest {
 
+    private static final LetterTemplateKey TEMPLATE_KEY =
+            new LetterTemplateKey("app", "letter", "template");
+
     @Mock
     private GovUkNotifyService govUkNotifyService;
     @Mock
@@ -39,7 +56,9 @@ class LetterDispatcherTest {
     @Mock
     private HtmlPdfGenerator pdfGenerator;
     @Mock
-    private PersonalisationDetailsParser parser;
+    private SentLetterArchive sentLetterArchive;
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
     @Mock
     private Logger logger;
 
@@ -54,20 +73,18 @@ class LetterDispatcherTest {
         String contextId = "ctx";
         String personalisedLetter = "<html>letter</html>";
         String govNotifyReference = "app-letter-ref";
-        String personalisationDetails = "{}";
         LetterReference letterReference = new LetterReference("app", "letter", "ref");
-        Map<String, String> personalisationDetailsMap = Collections.emptyMap();
+        Map<String, Object> personalisationDetails = Collections.emptyMap();
 
-        when(parser.parsePersonalisationDetails(personalisationDetails, contextId))
-                .thenReturn(personalisationDetailsMap);
         when(templatePersonaliser.personaliseLetterTemplate(
                 new LetterTemplateKey(letterReference.appId(), letterReference.letterId(),
                         templateId),
                 letterReference.reference(),
-                personalisationDetailsMap, address)).thenReturn(personalisedLetter);
+                personalisationDetails, address)).thenReturn(personalisedLetter);
 
         InputStream pdfStream = new ByteArrayInputStream(new byte[0]);
-        when(pdfGenerator.generatePdfFromHtml(personalisedLetter, govNotifyReference))
+        when(pdfGenerator.generatePdfFromHtml(eq(personalisedLetter), eq(govNotifyReference),
+                any(Tags.class)))
                 .thenReturn(pdfStream);
 
         GovUkNotifyService.LetterResp letterResp = mock(GovUkNotifyService.LetterResp.class);
@@ -89,21 +106,19 @@ class LetterDispatcherTest {
         String contextId = "ctx";
         String personalisedLetter = "<html>letter</html>";
         String govNotifyReference = "ref";
-        String personalisationDetails = "{}";
         // An old letter does not have a letterId
         LetterReference letterReference = new LetterReference("app", null, "ref");
-        Map<String, String> personalisationDetailsMap = Collections.emptyMap();
+        Map<String, Object> personalisationDetails = Collections.emptyMap();
 
-        when(parser.parsePersonalisationDetails(personalisationDetails, contextId))
-                .thenReturn(personalisationDetailsMap);
         when(templatePersonaliser.personaliseLetterTemplate(
                 new LetterTemplateKey(letterReference.appId(), letterReference.letterId(),
                         templateId),
                 letterReference.reference(),
-                personalisationDetailsMap, address)).thenReturn(personalisedLetter);
+                personalisationDetails, address)).thenReturn(personalisedLetter);
 
         InputStream pdfStream = new ByteArrayInputStream(new byte[0]);
-        when(pdfGenerator.generatePdfFromHtml(personalisedLetter, govNotifyReference))
+        when(pdfGenerator.generatePdfFromHtml(eq(personalisedLetter), eq(govNotifyReference),
+                any(Tags.class)))
                 .thenReturn(pdfStream);
 
         GovUkNotifyService.LetterResp letterResp = mock(GovUkNotifyService.LetterResp.class);
@@ -116,4 +131,62 @@ class LetterDispatcherTest {
         assertSame(letterResp, result);
         verify(notificationDatabaseService).storeResponse(letterResp);
     }
+
+    @Test
+    void sendAndArchiveArchivesPdfSent() throws IOException {
+        byte[] pdf = {1, 2, 3};
+        when(sentLetterArchive.isEnabled()).thenReturn(true);
+        when(govUkNotifyService.sendLetter(eq(Postage.ECONOMY), eq("ref"), any(InputStream.class)))
+                .thenReturn(new GovUkNotifyService.LetterResp(true, null));
+
+        letterDispatcher.sendAndArchive(Postage.ECONOMY, TEMPLATE_KEY, "ref",
+                new ByteArrayInputStream(pdf), "ctx");
+
+        var uploaded = ArgumentCaptor.forClass(InputStream.class);
+        verify(govUkNotifyService).sendLetter(eq(Postage.ECONOMY), eq("ref"), uploaded.capture());
+        var archived = ArgumentCaptor.forClass(SentLetterArchive.ArchivingInputStream.class);
+        verify(sentLetterArchive).archive(eq("ref"), archived.capture());
+        assertSame(uploaded.getValue(), archived.getValue());
+    }
+
+    @Test
+    void sendAndArchiveDoesNotArchiveUnsentPdf() throws IOException {
+        when(sentLetterArchive.isEnabled()).thenReturn(true);
+        when(govUkNotifyService.sendLetter(eq(Postage.ECONOMY), eq("ref"), any(InputStream.class)))
+                .thenReturn(new GovUkNotifyService.LetterResp(false, null));
+
+        letterDispatcher.sendAndArchive(Postage.ECONOMY, TEMPLATE_KEY, "ref",
+                new ByteArrayInputStream(new byte[1]), "ctx");
+
+        verify(sentLetterArchive, never()).archive(anyString(), any());
+    }
+
+    @Test
+    void sendAndArchiveRecordsUploadAndOutcome() throws IOException {
+        when(govUkNotifyService.sendLetter(eq(Postage.ECONOMY), eq("ref"), any(InputStream.class)))
+                .thenReturn(new GovUkNotifyService.LetterResp(true, null));
+
+        letterDispatcher.sendAndArchive(Postage.ECONOMY, TEMPLATE_KEY, "ref",
+                new ByteArrayInputStream(new byte[1]), "ctx");
+
+        var tags = MetricsUtils.createLetterTags(TEMPLATE_KEY).and(MetricsUtils.OUTCOME, "sent");
+        assertThat(meterRegistry.get(LetterDispatcher.UPLOAD_METRIC).tags(tags).timer().count(),
+                is(1L));
+        assertThat(meterRegistry.get(LetterDispatcher.DISPATCH_METRIC).tags(tags).counter().count(),
+                is(1.0));
+    }
+
+    @Test
+    void renderLetterCountsRenderingError() {
+        var reference = new LetterReference("app", "letter", "ref");
+        when(templatePersonaliser.personaliseLetterTemplate(any(), anyString(), anyMap(), any()))
+                .thenThrow(new IllegalArgumentException("Thrown by test."));
+
+        assertThrows(IllegalArgumentException.class, () -> letterDispatcher.renderLetter(
+                reference, "template", new AddressDao(), Map.of(), "ctx"));
+
+        var tags = MetricsUtils.createLetterTags(TEMPLATE_KEY).and(MetricsUtils.OUTCOME, "error");
+        assertThat(meterRegistry.get(LetterDispatcher.DISPATCH_METRIC).tags(tags).counter().count(),
+                is(1.0));
+    }
 }
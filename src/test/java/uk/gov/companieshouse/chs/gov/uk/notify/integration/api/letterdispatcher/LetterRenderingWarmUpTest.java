@@ -0,0 +1,83 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation.TemplatePersonaliser;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.MetricsUtils;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class LetterRenderingWarmUpTest {
+
+    @Mock
+    private TemplatePersonaliser templatePersonaliser;
+
+    @Mock
+    private HtmlPdfGenerator pdfGenerator;
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    void reportsDownUntilEveryTemplateRendered() throws Exception {
+        var warmUp = new LetterRenderingWarmUp(templatePersonaliser, pdfGenerator, true, logger);
+        when(templatePersonaliser.personaliseLetterTemplate(any(),
+                eq(LetterRenderingWarmUp.WARM_UP_REFERENCE), anyMap(), any()))
+                .thenReturn("<html/>");
+        when(pdfGenerator.generatePdfFromHtml(eq("<html/>"), anyString(), any()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(new byte[0]));
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.DOWN);
+
+        warmUp.run(null);
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        verify(pdfGenerator, times(LetterRenderingWarmUp.TEMPLATES.size()))
+                .generatePdfFromHtml(eq("<html/>"), anyString(), argThat(tags ->
+                        tags.stream().anyMatch(tag -> tag.getKey().equals(MetricsUtils.WARM_UP)
+                                && tag.getValue().equals("true"))));
+    }
+
+    @Test
+    void completesDespiteTemplateFailingToRender() throws Exception {
+        var warmUp = new LetterRenderingWarmUp(templatePersonaliser, pdfGenerator, true, logger);
+        when(templatePersonaliser.personaliseLetterTemplate(any(), anyString(), anyMap(), any()))
+                .thenReturn("<html/>");
+        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString(), any()))
+                .thenThrow(new IOException("Thrown by test."));
+
+        warmUp.run(null);
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void reportsUpWithoutRenderingWhenDisabled() throws Exception {
+        var warmUp = new LetterRenderingWarmUp(templatePersonaliser, pdfGenerator, false, logger);
+
+        warmUp.run(null);
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        verifyNoInteractions(templatePersonaliser, pdfGenerator);
+    }
+
+}
@@ -0,0 +1,163 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class LetterSendWorkerTest {
+
+    private static final String LETTER_ID = "letter-request-id";
+    private static final String CONTEXT_ID = "context";
+
+    @Mock
+    private LetterDispatcher letterDispatcher;
+    @Mock
+    private NotificationDatabaseService notificationDatabaseService;
+    @Mock
+    private SendRetryScheduler sendRetryScheduler;
+    @Mock
+    private Logger logger;
+
+    private LetterSendWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new LetterSendWorker(letterDispatcher, notificationDatabaseService,
+                sendRetryScheduler, true, 1, 10, logger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    void sendsClaimedLetter() throws Exception {
+        var letterRequest = new NotificationLetterRequest(TestUtils.createLetterRequest());
+        letterRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimPendingLetter(LETTER_ID))
+                .thenReturn(Optional.of(letterRequest));
+        when(letterDispatcher.sendLetter(any(Postage.class), any(), any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.LetterResp(true, null));
+
+        worker.submit(LETTER_ID, CONTEXT_ID);
+
+        verify(notificationDatabaseService, timeout(1000)).saveLetter(letterRequest);
+        assertThat(letterRequest.getStatus()).isEqualTo(RequestStatus.SENT);
+    }
+
+    @Test
+    void failsLetterNotRetriedOnFailure() throws Exception {
+        var letterRequest = new NotificationLetterRequest(TestUtils.createLetterRequest());
+        letterRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimPendingLetter(LETTER_ID))
+                .thenReturn(Optional.of(letterRequest));
+        when(letterDispatcher.sendLetter(any(Postage.class), any(), any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.LetterResp(false, null));
+
+        worker.submit(LETTER_ID, CONTEXT_ID);
+
+        verify(notificationDatabaseService, timeout(1000))
+                .failClaim(letterRequest, NotificationLetterRequest.class);
+        verify(notificationDatabaseService, never()).saveLetter(any());
+    }
+
+    @Test
+    void schedulesRetryOnFailure() throws Exception {
+        var letterRequest = new NotificationLetterRequest(TestUtils.createLetterRequest());
+        letterRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimPendingLetter(LETTER_ID))
+                .thenReturn(Optional.of(letterRequest));
+        when(letterDispatcher.sendLetter(any(Postage.class), any(), any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.LetterResp(false, null, 503));
+        when(sendRetryScheduler.scheduleRetry(letterRequest, NotificationLetterRequest.class, 503))
+                .thenReturn(true);
+
+        worker.submit(LETTER_ID, CONTEXT_ID);
+
+        verify(sendRetryScheduler, timeout(1000))
+                .scheduleRetry(letterRequest, NotificationLetterRequest.class, 503);
+        verify(notificationDatabaseService, after(200).never()).failClaim(any(), any());
+        verify(notificationDatabaseService, never()).saveLetter(any());
+    }
+
+    @Test
+    void returnsLetterToPendingWhenRateLimited() throws Exception {
+        var letterRequest = new NotificationLetterRequest(TestUtils.createLetterRequest());
+        letterRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimPendingLetter(LETTER_ID))
+                .thenReturn(Optional.of(letterRequest));
+        when(letterDispatcher.sendLetter(any(Postage.class), any(), any(), any(), any(), any()))
+                .thenThrow(new NotifyRateLimitExceededException("Gov Notify rate limit reached",
+                        Duration.ofSeconds(1)));
+
+        worker.submit(LETTER_ID, CONTEXT_ID);
+
+        verify(notificationDatabaseService, timeout(1000))
+                .releaseClaim(letterRequest, NotificationLetterRequest.class);
+        verify(notificationDatabaseService, never()).saveLetter(any());
+    }
+
+    @Test
+    void doesNotSendLetterClaimedElsewhere() {
+        when(notificationDatabaseService.claimPendingLetter(LETTER_ID))
+                .thenReturn(Optional.empty());
+
+        worker.submit(LETTER_ID, CONTEXT_ID);
+
+        verify(notificationDatabaseService, timeout(1000)).claimPendingLetter(LETTER_ID);
+        verify(notificationDatabaseService, after(200).never()).saveLetter(any());
+        verifyNoInteractions(letterDispatcher);
+    }
+
+    @Test
+    void sweepSubmitsPendingLetters() {
+        when(notificationDatabaseService.getPendingLetterIds(10)).thenReturn(List.of(LETTER_ID));
+        when(notificationDatabaseService.claimPendingLetter(LETTER_ID))
+                .thenReturn(Optional.empty());
+
+        worker.sweepPendingLetters();
+
+        verify(notificationDatabaseService, timeout(1000)).claimPendingLetter(LETTER_ID);
+    }
+
+    @Test
+    void sweepDoesNothingWhenDisabled() {
+        var disabledWorker = new LetterSendWorker(letterDispatcher, notificationDatabaseService,
+                sendRetryScheduler, false, 1, 10, logger);
+
+        disabledWorker.sweepPendingLetters();
+        disabledWorker.shutdown();
+
+        verify(notificationDatabaseService, never()).getPendingLetterIds(anyInt());
+    }
+
+}
@@ -0,0 +1,105 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The load test results against which later runs are checked for regressions, stored as
+ * properties named <code>&lt;request kind&gt;.&lt;metric&gt;</code>, e.g.
+ * <code>email.p95</code>. Only the metrics present in the baseline are checked.
+ */
+class LoadBaseline {
+
+    static final String THROUGHPUT = "throughput";
+    static final String P50 = "p50";
+    static final String P95 = "p95";
+    static final String P99 = "p99";
+    static final String ERROR_RATE = "error-rate";
+
+    private final Properties baseline;
+
+    private LoadBaseline(final Properties baseline) {
+        this.baseline = baseline;
+    }
+
+    static LoadBaseline load(final Path file) throws IOException {
+        var baseline = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                baseline.load(reader);
+            }
+        }
+        return new LoadBaseline(baseline);
+    }
+
+    static void record(final Path file, final Map<String, LoadStatistics.Summary> summaries)
+            throws IOException {
+        var baseline = new Properties();
+        summaries.forEach((kind, summary) -> {
+            baseline.setProperty(kind + "." + THROUGHPUT, format(summary.throughput()));
+            baseline.setProperty(kind + "." + P50, format(summary.p50()));
+            baseline.setProperty(kind + "." + P95, format(summary.p95()));
+            baseline.setProperty(kind + "." + P99, format(summary.p99()));
+            baseline.setProperty(kind + "." + ERROR_RATE, format(summary.errorRate()));
+        });
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            baseline.store(writer, "Load test baseline; latencies in milliseconds");
+        }
+    }
+
+    /**
+     * Checks the results of the requests of one kind against the baseline.
+     *
+     * @param kind the kind of request
+     * @param summary the results of the requests
+     * @param tolerance the fraction by which throughput may fall and latency may rise
+     * @param errorRateAllowance the amount by which the error rate may rise
+     * @return a description of each regression found
+     */
+    List<String> findRegressions(final String kind,
+                                 final LoadStatistics.Summary summary,
+                                 final double tolerance,
+                                 final double errorRateAllowance) {
+        var regressions = new ArrayList<String>();
+        checkAtLeast(regressions, kind, THROUGHPUT, summary.throughput(), 1 - tolerance, 0);
+        checkAtMost(regressions, kind, P50, summary.p50(), 1 + tolerance, 0);
+        checkAtMost(regressions, kind, P95, summary.p95(), 1 + tolerance, 0);
+        checkAtMost(regressions, kind, P99, summary.p99(), 1 + tolerance, 0);
+        checkAtMost(regressions, kind, ERROR_RATE, summary.errorRate(), 1, errorRateAllowance);
+        return regressions;
+    }
+
+    private void checkAtLeast(final List<String> regressions, final String kind,
+                              final String metric, final double actual,
+                              final double factor, final double allowance) {
+        var expected = baseline.getProperty(kind + "." + metric);
+        if (expected != null && actual < Double.parseDouble(expected) * factor - allowance) {
+            regressions.add(kind + "." + metric + " fell to " + format(actual)
+                    + " from baseline " + expected);
+        }
+    }
+
+    private void checkAtMost(final List<String> regressions, final String kind,
+                             final String metric, final double actual,
+                             final double factor, final double allowance) {
+        var expected = baseline.getProperty(kind + "." + metric);
+        if (expected != null && actual > Double.parseDouble(expected) * factor + allowance) {
+            regressions.add(kind + "." + metric + " rose to " + format(actual)
+                    + " from baseline " + expected);
+        }
+    }
+
+    static String format(final double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+}
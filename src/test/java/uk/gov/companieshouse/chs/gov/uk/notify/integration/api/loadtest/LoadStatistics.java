@@ -0,0 +1,65 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.loadtest;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the latency and outcome of each request of one kind made by the load test, and
+ * summarises them once the load test is complete.
+ */
+class LoadStatistics {
+
+    /**
+     * The summary of the requests of one kind made over the duration of the load test.
+     *
+     * @param requests the number of requests made
+     * @param errors the number of requests that did not succeed
+     * @param throughput the requests made per second
+     * @param p50 the median latency in milliseconds
+     * @param p95 the 95th percentile latency in milliseconds
+     * @param p99 the 99th percentile latency in milliseconds
+     */
+    record Summary(int requests, int errors, double throughput, double p50, double p95,
+                   double p99) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+    }
+
+    private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    void record(final long latencyNanos, final boolean success) {
+        latencies.add(latencyNanos);
+        if (!success) {
+            errors.incrementAndGet();
+        }
+    }
+
+    Summary summarise(final Duration elapsed) {
+        var sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        var seconds = elapsed.toNanos() / 1e9;
+        return new Summary(
+                sorted.length,
+                errors.get(),
+                seconds == 0 ? 0 : sorted.length / seconds,
+                percentile(sorted, 50),
+                percentile(sorted, 95),
+                percentile(sorted, 99));
+    }
+
+    /**
+     * Gets a percentile of the latencies recorded, by the nearest rank method.
+     */
+    private static double percentile(final long[] sorted, final int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+}
@@ -0,0 +1,306 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.companieshouse.api.util.security.EricConstants.ERIC_AUTHORISED_KEY_ROLES;
+import static uk.gov.companieshouse.api.util.security.EricConstants.ERIC_IDENTITY_TYPE;
+import static uk.gov.companieshouse.api.util.security.SecurityConstants.API_KEY_IDENTITY_TYPE;
+import static uk.gov.companieshouse.api.util.security.SecurityConstants.INTERNAL_USER_ROLE;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.test.MockNotificationClient;
+
+/**
+ * Drives a mix of send email, send letter and view letter traffic through the running
+ * application, which sends to {@link MockNotificationClient} and stores to a Mongo test
+ * container, and checks the throughput, latency percentiles and error rate of each kind of
+ * request against a stored baseline.
+ * <p>
+ * Run with <code>mvn -Pload-test test</code>, configured through these system properties:
+ * </p>
+ * <ul>
+ *     <li><code>loadtest.requests</code>: the number of requests measured (1000)</li>
+ *     <li><code>loadtest.warm-up</code>: the number of requests made, but not measured,
+ *     beforehand (50)</li>
+ *     <li><code>loadtest.concurrency</code>: the number of requests made at once (16)</li>
+ *     <li><code>loadtest.mix</code>: the relative weights of each kind of request
+ *     (<code>email=50,letter=30,view=20</code>)</li>
+ *     <li><code>loadtest.view-letters</code>: the number of distinct letters viewed (20)</li>
+ *     <li><code>loadtest.seed</code>: the seed from which the order of requests is drawn
+ *     (1)</li>
+ *     <li><code>loadtest.baseline</code>: the baseline file
+ *     (<code>src/test/resources/load-test/baseline.properties</code>)</li>
+ *     <li><code>loadtest.tolerance</code>: the fraction by which throughput may fall and
+ *     latency may rise before the test fails (0.2)</li>
+ *     <li><code>loadtest.error-rate-allowance</code>: the amount by which the error rate may
+ *     rise before the test fails (0.01)</li>
+ *     <li><code>loadtest.record-baseline</code>: records the results as the new baseline
+ *     instead of checking them (false)</li>
+ * </ul>
+ * <p>
+ * The rate limits and failures simulated by {@link MockNotificationClient} are configured by
+ * its own <code>notify.mock.*</code> properties, which may also be set as system properties.
+ * The application's own Gov Notify rate limit is raised out of the way, so that the test measures
+ * the application rather than the rate limit.
+ * The results are written to <code>target/load-test/report.txt</code>.
+ * </p>
+ */
+@Tag("load-test")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+        "gov.uk.notify.rate-limit.requests-per-minute=1000000",
+        "gov.uk.notify.rate-limit.burst=10000"})
+@ActiveProfiles("test")
+class LoadTest extends AbstractMongoDBTest {
+
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 1000);
+    private static final int WARM_UP = Integer.getInteger("loadtest.warm-up", 50);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 16);
+    private static final String MIX =
+            System.getProperty("loadtest.mix", "email=50,letter=30,view=20");
+    private static final int VIEW_LETTERS = Integer.getInteger("loadtest.view-letters", 20);
+    private static final long SEED = Long.getLong("loadtest.seed", 1L);
+    private static final Path BASELINE = Path.of(System.getProperty(
+            "loadtest.baseline", "src/test/resources/load-test/baseline.properties"));
+    private static final double TOLERANCE =
+            Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2"));
+    private static final double ERROR_RATE_ALLOWANCE =
+            Double.parseDouble(System.getProperty("loadtest.error-rate-allowance", "0.01"));
+    private static final boolean RECORD_BASELINE = Boolean.getBoolean("loadtest.record-baseline");
+    private static final Path REPORT = Path.of("target", "load-test", "report.txt");
+
+    private static final String REFERENCE_PREFIX =
+            MockNotificationClient.MOCK_REFERENCE_PREFIX + "-load-";
+    private static final String CONTEXT_ID = "LoadTestX9uND6rXQxfbZNc";
+    private static final String X_REQUEST_ID = "X-Request-ID";
+    private static final String ERIC_IDENTITY = "ERIC-Identity";
+    private static final String ERIC_IDENTITY_VALUE = "65e73495c8e2";
+    private static final Map<String, Object> EMAIL_PERSONALISATION_DETAILS =
+            Map.of("name", "Load Test");
+
+    enum Kind {
+        EMAIL, LETTER, VIEW;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    record Request(Kind kind, String reference) {
+        // Empty: using only auto-generated methods
+    }
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+
+    @Test
+    @DisplayName("Sustains the throughput, latency and error rate of the baseline")
+    void sustainsBaseline() throws Exception {
+
+        // Given
+        var plan = plan(WARM_UP + REQUESTS, parseMix(MIX), new Random(SEED));
+        seed(plan);
+
+        // When
+        var statistics = newStatistics();
+        Duration elapsed;
+        try (var executor = Executors.newFixedThreadPool(CONCURRENCY)) {
+            run(executor, plan.subList(0, WARM_UP), newStatistics());
+            var started = System.nanoTime();
+            run(executor, plan.subList(WARM_UP, plan.size()), statistics);
+            elapsed = Duration.ofNanos(System.nanoTime() - started);
+        }
+
+        // Then
+        var summaries = new LinkedHashMap<String, LoadStatistics.Summary>();
+        for (Map.Entry<Kind, LoadStatistics> kindStatistics : statistics.entrySet()) {
+            var summary = kindStatistics.getValue().summarise(elapsed);
+            if (summary.requests() > 0) {
+                summaries.put(kindStatistics.getKey().key(), summary);
+            }
+        }
+        report(summaries, elapsed);
+
+        if (RECORD_BASELINE) {
+            LoadBaseline.record(BASELINE, summaries);
+            return;
+        }
+        var baseline = LoadBaseline.load(BASELINE);
+        var regressions = new ArrayList<String>();
+        summaries.forEach((kind, summary) -> regressions.addAll(
+                baseline.findRegressions(kind, summary, TOLERANCE, ERROR_RATE_ALLOWANCE)));
+        assertThat("Regressions against " + BASELINE + ": " + regressions,
+                regressions, is(empty()));
+    }
+
+    private static Map<Kind, Integer> parseMix(final String mix) {
+        var weights = new EnumMap<Kind, Integer>(Kind.class);
+        for (String entry : mix.split(",")) {
+            var weight = entry.trim().split("=");
+            weights.put(Kind.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)),
+                    Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Draws the requests to be made from the mix. Each email and letter is sent once only, as it
+     * would be in production, whereas views are spread over a small number of letters.
+     */
+    private static List<Request> plan(final int requests,
+                                      final Map<Kind, Integer> mix,
+                                      final Random random) {
+        var totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        var plan = new ArrayList<Request>(requests);
+        var views = 0;
+        for (int i = 0; i < requests; i++) {
+            var draw = random.nextInt(totalWeight);
+            var kind = Kind.EMAIL;
+            for (Map.Entry<Kind, Integer> weight : mix.entrySet()) {
+                kind = weight.getKey();
+                draw -= weight.getValue();
+                if (draw < 0) {
+                    break;
+                }
+            }
+            var reference = kind == Kind.VIEW
+                    ? REFERENCE_PREFIX + "view-" + (views++ % VIEW_LETTERS)
+                    : REFERENCE_PREFIX + kind.key() + "-" + i;
+            plan.add(new Request(kind, reference));
+        }
+        return plan;
+    }
+
+    /**
+     * Stores the email and letter requests to be sent, and the letters to be viewed, as the
+     * upstream service would before calling this one.
+     */
+    private void seed(final List<Request> plan) {
+        var emails = new ArrayList<NotificationEmailRequest>();
+        var letters = new ArrayList<NotificationLetterRequest>();
+        for (Request request : plan) {
+            if (request.kind() == Kind.EMAIL) {
+                var email = TestUtils.createEmailRequest();
+                email.getSenderDetails().setReference(request.reference());
+                email.getEmailDetails().setPersonalisationDetails(EMAIL_PERSONALISATION_DETAILS);
+                emails.add(new NotificationEmailRequest(email));
+            } else if (request.kind() == Kind.LETTER) {
+                letters.add(new NotificationLetterRequest(
+                        TestUtils.createLetterRequestWithReference(request.reference())));
+            }
+        }
+        for (int i = 0; i < VIEW_LETTERS; i++) {
+            letters.add(new NotificationLetterRequest(
+                    TestUtils.createLetterRequestWithReference(REFERENCE_PREFIX + "view-" + i)));
+        }
+        notificationEmailRequestRepository.saveAll(emails);
+        notificationLetterRequestRepository.saveAll(letters);
+    }
+
+    private static Map<Kind, LoadStatistics> newStatistics() {
+        var statistics = new EnumMap<Kind, LoadStatistics>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            statistics.put(kind, new LoadStatistics());
+        }
+        return statistics;
+    }
+
+    private void run(final ExecutorService executor,
+                     final List<Request> requests,
+                     final Map<Kind, LoadStatistics> statistics)
+            throws InterruptedException, ExecutionException {
+        var futures = new ArrayList<Future<Void>>(requests.size());
+        for (Request request : requests) {
+            futures.add(executor.submit(() -> {
+                var started = System.nanoTime();
+                var success = send(request);
+                statistics.get(request.kind()).record(System.nanoTime() - started, success);
+                return null;
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+    }
+
+    private boolean send(final Request request) throws InterruptedException {
+        var baseUri = "http://localhost:" + port + "/gov-uk-notify-integration";
+        var body = "{\"app_id\": \"chips\", \"reference\": \"" + request.reference() + "\"}";
+        var builder = switch (request.kind()) {
+            case EMAIL -> HttpRequest.newBuilder(URI.create(baseUri + "/email"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .header("Content-Type", "application/json");
+            case LETTER -> HttpRequest.newBuilder(URI.create(baseUri + "/letter"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .header("Content-Type", "application/json");
+            case VIEW -> HttpRequest.newBuilder(URI.create(baseUri
+                            + "/letters/view_by_reference?reference="
+                            + URLEncoder.encode(request.reference(), UTF_8)))
+                    .GET()
+                    .header("Accept", "application/pdf");
+        };
+        var httpRequest = builder
+                .header(X_REQUEST_ID, CONTEXT_ID)
+                .header(ERIC_IDENTITY, ERIC_IDENTITY_VALUE)
+                .header(ERIC_IDENTITY_TYPE, API_KEY_IDENTITY_TYPE)
+                .header(ERIC_AUTHORISED_KEY_ROLES, INTERNAL_USER_ROLE)
+                .build();
+        try {
+            var response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() / 100 == 2;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    private static void report(final Map<String, LoadStatistics.Summary> summaries,
+                               final Duration elapsed) throws IOException {
+        var report = new StringBuilder(String.format(Locale.ROOT,
+                "%d requests at concurrency %d in %.1fs%n",
+                REQUESTS, CONCURRENCY, elapsed.toMillis() / 1000.0));
+        report.append(String.format(Locale.ROOT, "%-8s %9s %8s %10s %10s %10s %10s %10s%n",
+                "kind", "requests", "errors", "error %", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+        summaries.forEach((kind, summary) -> report.append(String.format(Locale.ROOT,
+                "%-8s %9d %8d %10.2f %10.1f %10.1f %10.1f %10.1f%n",
+                kind, summary.requests(), summary.errors(), summary.errorRate() * 100,
+                summary.throughput(), summary.p50(), summary.p95(), summary.p99())));
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, report);
+    }
+
+}
@@ -4,14 +4,21 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.PERSONALISATION_DETAILS;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createLetterRequest;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createLetterRequestWithAddressLine1;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createLetterRequestWithReference;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.setLegacyPersonalisationDetails;
 
 import java.util.List;
 import java.util.Optional;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.LetterRequestDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
@@ -20,6 +27,9 @@ import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.Notif
 @SpringBootTest
 class NotificationLetterRequestRepositoryTest extends AbstractMongoDBTest {
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Test
     void When_NewRequestSaved_Expect_IdAssigned() {
         LetterRequestDao letterRequest = createLetterRequestWithAddressLine1("123 Main St");
@@ -114,10 +124,46 @@ class NotificationLetterRequestRepositoryTest extends AbstractMongoDBTest {
         assertFalse(result.isPresent());
     }
 
+    @Test
+    void When_RequestSaved_Expect_PersonalisationDetailsStoredAsSubDocument() {
+        var savedRequest = notificationLetterRequestRepository.save(
+                new NotificationLetterRequest(createLetterRequest()));
+
+        var personalisationDetails = getStoredPersonalisationDetails(savedRequest.getId());
+
+        var subDocument = assertInstanceOf(Document.class, personalisationDetails);
+        assertEquals("00006400", subDocument.get("company_number"));
+    }
+
+    @Test
+    void When_RequestWithPersonalisationDetailsAsJsonStringSavedAgain_Expect_SubDocument() {
+        var letterRequest = createLetterRequest();
+        setLegacyPersonalisationDetails(letterRequest.getLetterDetails(), PERSONALISATION_DETAILS);
+        var savedRequest = notificationLetterRequestRepository.save(
+                new NotificationLetterRequest(letterRequest));
+        assertInstanceOf(String.class, getStoredPersonalisationDetails(savedRequest.getId()));
+
+        var retrievedRequest =
+                notificationLetterRequestRepository.findById(savedRequest.getId()).orElseThrow();
+        var personalisationDetails =
+                retrievedRequest.getRequest().getLetterDetails().getPersonalisationDetails();
+        assertEquals("00006400", personalisationDetails.get("company_number"));
+        notificationLetterRequestRepository.save(retrievedRequest);
+
+        assertInstanceOf(Document.class, getStoredPersonalisationDetails(savedRequest.getId()));
+    }
+
     private LetterRequestDao saveLetterWithReference(String appId, String reference) {
         var letter = createLetterRequestWithReference(reference);
         letter.getSenderDetails().setAppId(appId);
         notificationLetterRequestRepository.save(new NotificationLetterRequest(letter));
         return letter;
     }
+
+    private Object getStoredPersonalisationDetails(String id) {
+        return mongoTemplate.findById(id, Document.class, "letter_details")
+                .get("request", Document.class)
+                .get("letter_details", Document.class)
+                .get("personalisation_details");
+    }
 }
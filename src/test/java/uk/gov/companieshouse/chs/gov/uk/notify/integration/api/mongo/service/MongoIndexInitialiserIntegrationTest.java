@@ -0,0 +1,97 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest.COMPANY_NUMBER_INDEX;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationRequest.UNIQUE_REFERENCE_INDEX;
+
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+
+@SpringBootTest
+class MongoIndexInitialiserIntegrationTest extends AbstractMongoDBTest {
+
+    private static final String APP_ID = "request.sender_details.app_id";
+    private static final String REFERENCE = "request.sender_details.reference";
+    private static final String COMPANY_NUMBER =
+            "request.letter_details.personalisation_details.company_number";
+
+    @Autowired
+    private MongoIndexInitialiser mongoIndexInitialiser;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoIndexInitialiser.createIndexes();
+        notificationEmailRequestRepository.save(
+                new NotificationEmailRequest(TestUtils.createEmailRequest()));
+        notificationLetterRequestRepository.save(
+                new NotificationLetterRequest(TestUtils.createLetterRequest()));
+    }
+
+    @Test
+    void When_FindingEmailByUniqueReference_Expect_IndexScan() {
+        assertUsesReferenceIndex("email_details",
+                new Document(APP_ID, "chips").append(REFERENCE, "ref"));
+    }
+
+    @Test
+    void When_FindingLetterByUniqueReference_Expect_IndexScan() {
+        assertUsesReferenceIndex("letter_details",
+                new Document(APP_ID, "chips").append(REFERENCE, "ref"));
+    }
+
+    @Test
+    void When_FindingLetterByReference_Expect_IndexScan() {
+        assertUsesReferenceIndex("letter_details", new Document(REFERENCE, "ref"));
+    }
+
+    @Test
+    void When_FindingLettersByReferences_Expect_IndexScan() {
+        assertUsesReferenceIndex("letter_details",
+                new Document(REFERENCE, new Document("$in", List.of("ref1", "ref2"))));
+    }
+
+    @Test
+    void When_FindingLettersByCompanyNumber_Expect_IndexScan() {
+        assertUsesIndex("letter_details", new Document(COMPANY_NUMBER, "00006400"),
+                COMPANY_NUMBER_INDEX);
+    }
+
+    @Test
+    void When_CreatingIndexesAgain_Expect_NoError() {
+        mongoIndexInitialiser.createIndexes();
+
+        assertUsesReferenceIndex("email_details", new Document(REFERENCE, "ref"));
+    }
+
+    private void assertUsesReferenceIndex(final String collection, final Document filter) {
+        assertUsesIndex(collection, filter, UNIQUE_REFERENCE_INDEX);
+    }
+
+    private void assertUsesIndex(final String collection,
+                                 final Document filter,
+                                 final String index) {
+        var plan = mongoTemplate.getCollection(collection).find(filter).explain()
+                .get("queryPlanner", Document.class)
+                .get("winningPlan", Document.class)
+                .toJson();
+
+        assertThat(plan, containsString("IXSCAN"));
+        assertThat(plan, containsString(index));
+        assertThat(plan, not(containsString("COLLSCAN")));
+    }
+
+}
@@ -0,0 +1,60 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class MongoIndexInitialiserTest {
+
+    private static final String FAILURE_MESSAGE = "Failed to create indexes.";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    void logsFailureWithinStartupBudget() throws InterruptedException {
+        when(mongoTemplate.getConverter()).thenThrow(new IllegalStateException("no database"));
+
+        new MongoIndexInitialiser(mongoTemplate, Duration.ofSeconds(5), logger)
+                .afterPropertiesSet();
+
+        verify(logger).error(eq(FAILURE_MESSAGE), any(Exception.class));
+    }
+
+    @Test
+    void logsFailureAfterStartupBudget() throws InterruptedException {
+        var budgetPassed = new CountDownLatch(1);
+        when(mongoTemplate.getConverter()).thenAnswer(invocation -> {
+            budgetPassed.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("duplicate filename");
+        });
+
+        new MongoIndexInitialiser(mongoTemplate, Duration.ofMillis(10), logger)
+                .afterPropertiesSet();
+
+        verify(logger).info(anyString());
+        verify(logger, never()).error(anyString(), any(Exception.class));
+        budgetPassed.countDown();
+        verify(logger, timeout(5000)).error(eq(FAILURE_MESSAGE), any(Exception.class));
+    }
+}
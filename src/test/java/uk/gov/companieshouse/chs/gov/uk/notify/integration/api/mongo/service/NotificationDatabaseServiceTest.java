@@ -4,17 +4,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createEmailRequest;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createLetterRequestWithAddressLine1;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createSampleEmailResponse;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.createSampleLetterResponse;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.EmailRequestDao;
@@ -23,6 +29,7 @@ import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.Notif
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailResponse;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterResponse;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
 
 @SpringBootTest
@@ -31,6 +38,9 @@ class NotificationDatabaseServiceTest extends AbstractMongoDBTest {
     @Autowired
     private NotificationDatabaseService notificationDatabaseService;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Test
     void When_GetEmailByUniqueReference_ThenEmailRetrieved() {
         String appId = "chips";
@@ -161,6 +171,295 @@ class NotificationDatabaseServiceTest extends AbstractMongoDBTest {
         }
     }
 
+    @Test
+    void When_ClaimPendingLetter_ThenLetterClaimedOnce() {
+        NotificationLetterRequest letter = new NotificationLetterRequest(TestUtils.createLetterRequest());
+        letter.setStatus(RequestStatus.PENDING);
+        String letterId = notificationDatabaseService.saveLetter(letter).getId();
+
+        assertTrue(notificationDatabaseService.getPendingLetterIds(Integer.MAX_VALUE).contains(letterId));
+
+        Optional<NotificationLetterRequest> claimed = notificationDatabaseService.claimPendingLetter(letterId);
+
+        assertTrue(claimed.isPresent());
+        assertEquals(RequestStatus.PROCESSING, claimed.get().getStatus());
+        assertFalse(notificationDatabaseService.getPendingLetterIds(Integer.MAX_VALUE).contains(letterId));
+        assertFalse(notificationDatabaseService.claimPendingLetter(letterId).isPresent());
+
+        claimed.get().setStatus(RequestStatus.SENT);
+        assertEquals(RequestStatus.SENT, notificationDatabaseService.saveLetter(claimed.get()).getStatus());
+    }
+
+    @Test
+    void When_ClaimEmail_ThenEmailClaimedUntilReleased() {
+        EmailRequestDao email = createEmailRequest();
+        email.getSenderDetails().setAppId("chips");
+        email.getSenderDetails().setReference("CLAIM-1");
+        saveEmail(email);
+
+        RequestClaim<NotificationEmailRequest> claim =
+                notificationDatabaseService.claimEmail("chips", "CLAIM-1");
+        assertEquals(RequestClaim.Outcome.CLAIMED, claim.outcome());
+        assertEquals(RequestStatus.PROCESSING, claim.request().getStatus());
+
+        assertEquals(RequestClaim.Outcome.ALREADY_PROCESSING,
+                notificationDatabaseService.claimEmail("chips", "CLAIM-1").outcome());
+
+        notificationDatabaseService.releaseClaim(claim.request(), NotificationEmailRequest.class);
+        assertEquals(RequestStatus.PENDING, claim.request().getStatus());
+
+        RequestClaim<NotificationEmailRequest> reclaim =
+                notificationDatabaseService.claimEmail("chips", "CLAIM-1");
+        assertEquals(RequestClaim.Outcome.CLAIMED, reclaim.outcome());
+
+        reclaim.request().setStatus(RequestStatus.SENT);
+        notificationDatabaseService.saveEmail(reclaim.request());
+        assertEquals(RequestClaim.Outcome.ALREADY_SENT,
+                notificationDatabaseService.claimEmail("chips", "CLAIM-1").outcome());
+        assertEquals(RequestClaim.Outcome.NOT_FOUND,
+                notificationDatabaseService.claimEmail("chips", "UNKNOWN").outcome());
+    }
+
+    @Test
+    void When_QueueLetter_ThenLetterPendingAndNotClaimable() {
+        LetterRequestDao letter = TestUtils.createLetterRequest();
+        letter.getSenderDetails().setAppId("chips");
+        letter.getSenderDetails().setReference("QUEUE-1");
+        saveLetter(letter);
+
+        RequestClaim<NotificationLetterRequest> queued =
+                notificationDatabaseService.queueLetter("chips", "QUEUE-1");
+        assertEquals(RequestClaim.Outcome.CLAIMED, queued.outcome());
+        assertEquals(RequestStatus.PENDING, queued.request().getStatus());
+
+        Optional<NotificationLetterRequest> claimed =
+                notificationDatabaseService.claimPendingLetter(queued.request().getId());
+        assertTrue(claimed.isPresent());
+        assertEquals(RequestClaim.Outcome.ALREADY_PROCESSING,
+                notificationDatabaseService.claimLetter("chips", "QUEUE-1").outcome());
+    }
+
+    @Test
+    void When_ScheduleAttemptDue_ThenEmailClaimedOnceByPoll() {
+        EmailRequestDao email = createEmailRequest();
+        email.getSenderDetails().setAppId("chips");
+        email.getSenderDetails().setReference("RETRY-1");
+        saveEmail(email);
+
+        NotificationEmailRequest claimed =
+                notificationDatabaseService.claimEmail("chips", "RETRY-1").request();
+        notificationDatabaseService.scheduleAttempt(claimed, NotificationEmailRequest.class,
+                LocalDateTime.now().minusMinutes(1), true);
+        assertEquals(RequestStatus.PENDING, claimed.getStatus());
+        assertEquals(1, claimed.getFailureCount());
+
+        List<NotificationEmailRequest> due =
+                notificationDatabaseService.claimDueRequests(NotificationEmailRequest.class, 10);
+        assertEquals(List.of(claimed.getId()), due.stream().map(NotificationEmailRequest::getId).toList());
+        assertEquals(RequestStatus.PROCESSING, due.getFirst().getStatus());
+        assertEquals(1, due.getFirst().getFailureCount());
+        assertNull(due.getFirst().getNextAttemptAt());
+
+        assertTrue(notificationDatabaseService.claimDueRequests(NotificationEmailRequest.class, 10).isEmpty());
+    }
+
+    @Test
+    void When_ScheduleAttemptNotDue_ThenLetterNotClaimed() {
+        LetterRequestDao letter = TestUtils.createLetterRequest();
+        letter.getSenderDetails().setAppId("chips");
+        letter.getSenderDetails().setReference("RETRY-2");
+        saveLetter(letter);
+
+        NotificationLetterRequest claimed =
+                notificationDatabaseService.claimLetter("chips", "RETRY-2").request();
+        notificationDatabaseService.scheduleAttempt(claimed, NotificationLetterRequest.class,
+                LocalDateTime.now().plusHours(1), false);
+        assertEquals(0, claimed.getFailureCount());
+
+        assertTrue(notificationDatabaseService.claimDueRequests(NotificationLetterRequest.class, 10).isEmpty());
+        assertFalse(notificationDatabaseService.getPendingLetterIds(Integer.MAX_VALUE).contains(claimed.getId()));
+        assertFalse(notificationDatabaseService.claimPendingLetter(claimed.getId()).isPresent());
+
+        // The caller may still ask for the letter to be sent now.
+        RequestClaim<NotificationLetterRequest> reclaim =
+                notificationDatabaseService.claimLetter("chips", "RETRY-2");
+        assertEquals(RequestClaim.Outcome.CLAIMED, reclaim.outcome());
+        assertNull(reclaim.request().getNextAttemptAt());
+    }
+
+    @Test
+    void When_ClaimEmail_ThenLeasedUntilReleased() {
+        EmailRequestDao email = createEmailRequest();
+        email.getSenderDetails().setAppId("chips");
+        email.getSenderDetails().setReference("LEASE-1");
+        saveEmail(email);
+
+        NotificationEmailRequest claimed =
+                notificationDatabaseService.claimEmail("chips", "LEASE-1").request();
+        assertNotNull(claimed.getLeaseOwner());
+        assertTrue(claimed.getLeaseExpiresAt().isAfter(LocalDateTime.now()));
+
+        notificationDatabaseService.releaseClaim(claimed, NotificationEmailRequest.class);
+
+        NotificationEmailRequest released =
+                notificationDatabaseService.getEmail("chips", "LEASE-1").orElseThrow();
+        assertEquals(RequestStatus.PENDING, released.getStatus());
+        assertNull(released.getLeaseOwner());
+        assertNull(released.getLeaseExpiresAt());
+    }
+
+    @Test
+    void When_LeaseTakenOver_ThenClaimNotReleased() {
+        EmailRequestDao email = createEmailRequest();
+        email.getSenderDetails().setAppId("chips");
+        email.getSenderDetails().setReference("LEASE-2");
+        saveEmail(email);
+
+        NotificationEmailRequest claimed =
+                notificationDatabaseService.claimEmail("chips", "LEASE-2").request();
+        mongoTemplate.updateFirst(query(where("_id").is(claimed.getId())),
+                new Update().set("lease_owner", "other-instance"), NotificationEmailRequest.class);
+
+        notificationDatabaseService.releaseClaim(claimed, NotificationEmailRequest.class);
+
+        assertEquals(RequestStatus.PROCESSING, notificationDatabaseService
+                .getEmail("chips", "LEASE-2").orElseThrow().getStatus());
+    }
+
+    @Test
+    void When_LeasesExpire_ThenRequestsReleasedInBulk() {
+        for (String reference : List.of("EXPIRED-1", "EXPIRED-2", "LIVE-1")) {
+            LetterRequestDao letter = TestUtils.createLetterRequest();
+            letter.getSenderDetails().setAppId("chips");
+            letter.getSenderDetails().setReference(reference);
+            saveLetter(letter);
+            notificationDatabaseService.claimLetter("chips", reference);
+        }
+        mongoTemplate.updateMulti(
+                query(where("request.sender_details.reference").in("EXPIRED-1", "EXPIRED-2")),
+                new Update().set("lease_expires_at", LocalDateTime.now().minusMinutes(1)),
+                NotificationLetterRequest.class);
+        mongoTemplate.updateFirst(
+                query(where("request.sender_details.reference").is("EXPIRED-2")),
+                new Update().set("failure_count", 2),
+                NotificationLetterRequest.class);
+        LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+        long released = notificationDatabaseService.releaseExpiredLeases(
+                NotificationLetterRequest.class, nextAttemptAt, 2);
+
+        assertEquals(2, released);
+        NotificationLetterRequest retried =
+                notificationDatabaseService.getLetter("chips", "EXPIRED-1").orElseThrow();
+        assertEquals(RequestStatus.PENDING, retried.getStatus());
+        assertEquals(1, retried.getFailureCount());
+        assertNotNull(retried.getNextAttemptAt());
+        assertNull(retried.getLeaseOwner());
+        NotificationLetterRequest exhausted =
+                notificationDatabaseService.getLetter("chips", "EXPIRED-2").orElseThrow();
+        assertEquals(RequestStatus.FAILED, exhausted.getStatus());
+        assertEquals(3, exhausted.getFailureCount());
+        assertNull(exhausted.getNextAttemptAt());
+        assertEquals(RequestStatus.PROCESSING, notificationDatabaseService
+                .getLetter("chips", "LIVE-1").orElseThrow().getStatus());
+        assertFalse(notificationDatabaseService.getPendingLetterIds(Integer.MAX_VALUE)
+                .contains(exhausted.getId()));
+    }
+
+    @Test
+    void When_ClaimFailed_ThenLetterNotSweptButClaimableByCaller() {
+        LetterRequestDao letter = TestUtils.createLetterRequest();
+        letter.getSenderDetails().setAppId("chips");
+        letter.getSenderDetails().setReference("FAILED-1");
+        saveLetter(letter);
+
+        NotificationLetterRequest claimed =
+                notificationDatabaseService.claimLetter("chips", "FAILED-1").request();
+        notificationDatabaseService.scheduleAttempt(claimed, NotificationLetterRequest.class,
+                LocalDateTime.now().minusMinutes(1), true);
+        claimed = notificationDatabaseService
+                .claimDueRequests(NotificationLetterRequest.class, 10).getFirst();
+        notificationDatabaseService.failClaim(claimed, NotificationLetterRequest.class);
+
+        NotificationLetterRequest failed =
+                notificationDatabaseService.getLetter("chips", "FAILED-1").orElseThrow();
+        assertEquals(RequestStatus.FAILED, failed.getStatus());
+        assertNull(failed.getLeaseOwner());
+        assertFalse(notificationDatabaseService.getPendingLetterIds(Integer.MAX_VALUE)
+                .contains(failed.getId()));
+        assertFalse(notificationDatabaseService.claimPendingLetter(failed.getId()).isPresent());
+        assertTrue(notificationDatabaseService
+                .claimDueRequests(NotificationLetterRequest.class, 10).isEmpty());
+
+        RequestClaim<NotificationLetterRequest> reclaim =
+                notificationDatabaseService.claimLetter("chips", "FAILED-1");
+        assertEquals(RequestClaim.Outcome.CLAIMED, reclaim.outcome());
+        assertEquals(0, reclaim.request().getFailureCount());
+    }
+
+    @Test
+    void When_GetEmailsAndUpdateStatuses_ThenEmailsRetrievedAndUpdatedInBulk() {
+        EmailRequestDao email1 = createEmailRequest();
+        email1.getSenderDetails().setReference("BULK-1");
+        EmailRequestDao email2 = createEmailRequest();
+        email2.getSenderDetails().setReference("BULK-2");
+        saveEmail(email1);
+        saveEmail(email2);
+
+        List<NotificationEmailRequest> retrievedEmails =
+                notificationDatabaseService.getEmails(List.of("BULK-1", "BULK-2"));
+        assertEquals(2, retrievedEmails.size());
+
+        List<NotificationEmailRequest> claimedEmails = notificationDatabaseService
+                .claimRequests(retrievedEmails, NotificationEmailRequest.class);
+        assertEquals(2, claimedEmails.size());
+        notificationDatabaseService.updateStatuses(claimedEmails, NotificationEmailRequest.class,
+                RequestStatus.SENT);
+
+        for (NotificationEmailRequest email : notificationDatabaseService.getEmails(List.of("BULK-1", "BULK-2"))) {
+            assertEquals(RequestStatus.SENT, email.getStatus());
+        }
+    }
+
+    @Test
+    void When_ClaimRequests_ThenOnlyRequestsNotHeldElsewhereClaimed() {
+        EmailRequestDao email1 = createEmailRequest();
+        email1.getSenderDetails().setAppId("chips");
+        email1.getSenderDetails().setReference("BULK-CLAIM-1");
+        EmailRequestDao email2 = createEmailRequest();
+        email2.getSenderDetails().setAppId("chips");
+        email2.getSenderDetails().setReference("BULK-CLAIM-2");
+        saveEmail(email1);
+        saveEmail(email2);
+        List<NotificationEmailRequest> retrievedEmails =
+                notificationDatabaseService.getEmails(List.of("BULK-CLAIM-1", "BULK-CLAIM-2"));
+
+        NotificationEmailRequest heldElsewhere =
+                notificationDatabaseService.claimEmail("chips", "BULK-CLAIM-2").request();
+        List<NotificationEmailRequest> claimed = notificationDatabaseService
+                .claimRequests(retrievedEmails, NotificationEmailRequest.class);
+
+        assertEquals(1, claimed.size());
+        assertEquals("BULK-CLAIM-1",
+                claimed.getFirst().getRequest().getSenderDetails().getReference());
+        assertEquals(RequestStatus.PROCESSING, claimed.getFirst().getStatus());
+        assertNotNull(claimed.getFirst().getLeaseOwner());
+        assertTrue(notificationDatabaseService
+                .claimRequests(retrievedEmails, NotificationEmailRequest.class).isEmpty());
+        assertEquals(heldElsewhere.getLeaseExpiresAt(), notificationDatabaseService
+                .getEmail("chips", "BULK-CLAIM-2").orElseThrow().getLeaseExpiresAt());
+    }
+
+    @Test
+    void When_StoreEmailResponses_ThenResponsesStored() {
+        List<NotificationEmailResponse> savedResponses = notificationDatabaseService.storeEmailResponses(List.of(
+                new GovUkNotifyService.EmailResp(true, createSampleEmailResponse()),
+                new GovUkNotifyService.EmailResp(true, createSampleEmailResponse())));
+
+        assertEquals(2, savedResponses.size());
+        savedResponses.forEach(response -> assertNotNull(response.getId()));
+    }
+
     private NotificationEmailRequest saveEmail(EmailRequestDao emailRequest) {
         return notificationDatabaseService.saveEmail(new NotificationEmailRequest(emailRequest));
     }
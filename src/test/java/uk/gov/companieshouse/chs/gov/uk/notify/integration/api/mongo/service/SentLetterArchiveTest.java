@@ -0,0 +1,88 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTest;
+
+@SpringBootTest
+class SentLetterArchiveTest extends AbstractMongoDBTest {
+
+    private static final byte[] PDF = "%PDF-1.4 sent letter".getBytes();
+    private static final byte[] OTHER_PDF = "%PDF-1.4 sent letter again".getBytes();
+
+    @Autowired
+    private SentLetterArchive sentLetterArchive;
+
+    @Autowired
+    private GridFsTemplate gridFsTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void deleteArchive() {
+        gridFsTemplate.delete(new Query());
+    }
+
+    @Test
+    void When_LetterArchived_Then_ExactPdfFetchedByReference() throws IOException {
+        archive("chips-letter-ref1", PDF);
+
+        var fetched = sentLetterArchive.fetch("chips-letter-ref1");
+
+        assertTrue(fetched.isPresent());
+        try (var pdf = fetched.get()) {
+            assertArrayEquals(PDF, pdf.readAllBytes());
+        }
+        assertFalse(sentLetterArchive.fetch("chips-letter-ref2").isPresent());
+    }
+
+    @Test
+    void When_PdfPartlyReadWhenArchived_Then_WholePdfArchived() throws IOException {
+        try (var pdf = new SentLetterArchive.ArchivingInputStream(
+                new ByteArrayInputStream(PDF))) {
+            pdf.readNBytes(4);
+            pdf.skip(2);
+            sentLetterArchive.archive("chips-letter-ref1", pdf);
+        }
+
+        try (var pdf = sentLetterArchive.fetch("chips-letter-ref1").orElseThrow()) {
+            assertArrayEquals(PDF, pdf.readAllBytes());
+        }
+    }
+
+    @Test
+    void When_ReferenceArchivedAgain_Then_FirstPdfKept() throws IOException {
+        archive("chips-letter-ref1", PDF);
+        archive("chips-letter-ref1", OTHER_PDF);
+
+        var files = gridFsTemplate.find(new Query()).into(new ArrayList<>());
+
+        assertEquals(1, files.size());
+        assertEquals(1, mongoTemplate.count(new Query(), SentLetterArchive.CHUNKS_COLLECTION));
+        try (var pdf = sentLetterArchive.fetch("chips-letter-ref1").orElseThrow()) {
+            assertArrayEquals(PDF, pdf.readAllBytes());
+        }
+    }
+
+    private void archive(final String reference, final byte[] pdf) throws IOException {
+        try (var archiving = new SentLetterArchive.ArchivingInputStream(
+                new ByteArrayInputStream(pdf))) {
+            sentLetterArchive.archive(reference, archiving);
+        }
+    }
+
+}
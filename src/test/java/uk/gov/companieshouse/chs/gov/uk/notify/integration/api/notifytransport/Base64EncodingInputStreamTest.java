@@ -0,0 +1,56 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.Base64EncodingInputStream.CHUNK_SIZE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Unit tests the {@link Base64EncodingInputStream}.
+ */
+@Tag("unit-test")
+class Base64EncodingInputStreamTest {
+
+    @ParameterizedTest(name = "Encodes {0} bytes as the JDK encoder does")
+    @ValueSource(ints = {0, 1, 2, 3, 4, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1,
+            5 * CHUNK_SIZE + 2})
+    void encodesAsJdkEncoderDoes(int size) throws IOException {
+        var input = randomBytes(size);
+
+        var encoded = new Base64EncodingInputStream(new ByteArrayInputStream(input)).readAllBytes();
+
+        assertThat(encoded, is(Base64.getEncoder().encode(input)));
+    }
+
+    @Test
+    @DisplayName("Encodes the same whether read a byte at a time or in blocks")
+    void encodesSameReadByteAtATime() throws IOException {
+        var input = randomBytes(CHUNK_SIZE + 5);
+        var stream = new Base64EncodingInputStream(new ByteArrayInputStream(input));
+        var encoded = new ByteArrayOutputStream();
+
+        int read;
+        while ((read = stream.read()) != -1) {
+            encoded.write(read);
+        }
+
+        assertThat(encoded.toByteArray(), is(Base64.getEncoder().encode(input)));
+        assertThat(stream.read(new byte[4], 0, 4), is(-1));
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
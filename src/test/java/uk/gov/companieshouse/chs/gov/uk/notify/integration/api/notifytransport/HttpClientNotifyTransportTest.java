@@ -0,0 +1,163 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests the {@link HttpClientNotifyTransport} against a stub Gov Notify API.
+ */
+@Tag("unit-test")
+class HttpClientNotifyTransportTest {
+
+    private static final String SERVICE_ID = "26785a09-ab16-4eb0-8407-a37497a57506";
+    private static final String API_KEY =
+            "test_key-" + SERVICE_ID + "-3d844edf-8d35-48ac-975b-e847b4f122b0";
+    private static final UUID NOTIFICATION_ID = UUID.randomUUID();
+    private static final String EMAIL_RESPONSE = """
+            {"id":"%s","reference":"email-reference",
+             "content":{"subject":"Subject","body":"Body","from_email":"from@example.com"},
+             "template":{"id":"%s","version":1,"uri":"https://example.com/template"}}"""
+            .formatted(NOTIFICATION_ID, UUID.randomUUID());
+    private static final String LETTER_RESPONSE = """
+            {"id":"%s","reference":"letter-reference","postage":"second"}"""
+            .formatted(NOTIFICATION_ID);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer notifyApi;
+    private volatile HttpExchange received;
+    private volatile byte[] receivedBody;
+    private volatile int responseStatus = 201;
+    private volatile String responseBody;
+
+    private HttpClientNotifyTransport transportUnderTest;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        notifyApi = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        notifyApi.createContext("/", exchange -> {
+            received = exchange;
+            receivedBody = exchange.getRequestBody().readAllBytes();
+            var body = responseBody.getBytes(UTF_8);
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        notifyApi.start();
+        transportUnderTest = new HttpClientNotifyTransport(API_KEY,
+                "http://localhost:" + notifyApi.getAddress().getPort(),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transportUnderTest.close();
+        notifyApi.stop(0);
+    }
+
+    @Test
+    @DisplayName("Posts an email, authenticated with a token, and returns the response")
+    void postsEmail() throws Exception {
+        responseBody = EMAIL_RESPONSE;
+
+        var response = transportUnderTest.sendEmail("template-id", "test@example.com",
+                Map.of("name", "Test User"), "email-reference");
+
+        assertThat(response.getNotificationId(), is(NOTIFICATION_ID));
+        assertThat(received.getRequestMethod(), is("POST"));
+        assertThat(received.getRequestURI().getPath(), is("/v2/notifications/email"));
+        assertThat(received.getRequestHeaders().getFirst("Authorization"), startsWith("Bearer "));
+        assertThat(received.getRequestHeaders().getFirst("Content-Type"), is("application/json"));
+        var body = objectMapper.readTree(receivedBody);
+        assertThat(body.get("template_id").asText(), is("template-id"));
+        assertThat(body.get("email_address").asText(), is("test@example.com"));
+        assertThat(body.get("personalisation").get("name").asText(), is("Test User"));
+        assertThat(body.get("reference").asText(), is("email-reference"));
+    }
+
+    @Test
+    @DisplayName("Posts a precompiled letter as base64 content and returns the response")
+    void postsLetter() throws Exception {
+        responseBody = LETTER_RESPONSE;
+        var pdf = "%PDF-1.7 letter".getBytes(UTF_8);
+
+        var response = transportUnderTest.sendPrecompiledLetterWithInputStream(
+                "letter-reference", new ByteArrayInputStream(pdf), "second");
+
+        assertThat(response.getNotificationId(), is(NOTIFICATION_ID));
+        assertThat(received.getRequestURI().getPath(), is("/v2/notifications/letter"));
+        var body = objectMapper.readTree(receivedBody);
+        assertThat(body.get("reference").asText(), is("letter-reference"));
+        assertThat(Base64.getDecoder().decode(body.get("content").asText()), is(pdf));
+        assertThat(body.get("postage").asText(), is("second"));
+    }
+
+    @Test
+    @DisplayName("Streams a letter larger than a chunk, with its reference escaped in the JSON")
+    void streamsLargeLetter() throws Exception {
+        responseBody = LETTER_RESPONSE;
+        var pdf = new byte[3 * Base64EncodingInputStream.CHUNK_SIZE + 1];
+        new Random(1).nextBytes(pdf);
+
+        transportUnderTest.sendPrecompiledLetterWithInputStream(
+                "letter \"reference\"", new ByteArrayInputStream(pdf), null);
+
+        var body = objectMapper.readTree(receivedBody);
+        assertThat(body.get("reference").asText(), is("letter \"reference\""));
+        assertThat(Base64.getDecoder().decode(body.get("content").asText()), is(pdf));
+        assertThat(body.has("postage"), is(false));
+    }
+
+    @Test
+    @DisplayName("Refuses to supply a letter body again, its PDF having been read")
+    void suppliesLetterBodyOnce() {
+        var body = HttpClientNotifyTransport.readOnce(() -> new ByteArrayInputStream(new byte[1]));
+
+        body.get();
+
+        assertThrows(IllegalStateException.class, body::get);
+    }
+
+    @Test
+    @DisplayName("Reports the status of an error response")
+    void reportsErrorStatus() {
+        responseStatus = 429;
+        responseBody = "{\"errors\":[{\"error\":\"RateLimitError\"}],\"status_code\":429}";
+        var personalisation = Map.of("name", "Test User");
+
+        var exception = assertThrows(NotifyHttpException.class,
+                () -> transportUnderTest.sendEmail("template-id", "test@example.com",
+                        personalisation, "email-reference"));
+
+        assertThat(exception.getHttpResult(), is(429));
+        assertThat(exception.getMessage(), startsWith("Status code: 429 {\"errors\""));
+    }
+
+    @Test
+    @DisplayName("Takes the service ID from the API key")
+    void takesServiceIdFromApiKey() {
+        assertThat(transportUnderTest.getServiceId(), is(SERVICE_ID));
+    }
+}
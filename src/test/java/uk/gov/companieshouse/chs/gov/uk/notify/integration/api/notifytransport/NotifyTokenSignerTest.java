@@ -0,0 +1,84 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests the {@link NotifyTokenSigner}.
+ */
+@Tag("unit-test")
+class NotifyTokenSignerTest {
+
+    private static final String SERVICE_ID = "26785a09-ab16-4eb0-8407-a37497a57506";
+    private static final String SECRET = "3d844edf-8d35-48ac-975b-e847b4f122b0";
+    private static final String API_KEY = "test_key-" + SERVICE_ID + "-" + SECRET;
+    private static final long NOW = 1_700_000_000L;
+
+    private AtomicLong now;
+
+    private NotifyTokenSigner signerUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(NOW);
+        signerUnderTest = new NotifyTokenSigner(API_KEY, now::get);
+    }
+
+    @Test
+    @DisplayName("Takes the service ID from the API key")
+    void takesServiceIdFromApiKey() {
+        assertThat(signerUnderTest.getServiceId(), is(SERVICE_ID));
+    }
+
+    @Test
+    @DisplayName("Signs a token issued by the service now with the secret from the API key")
+    void signsTokenWithSecret() throws Exception {
+        var parts = signerUnderTest.getToken().split("\\.");
+
+        assertThat(parts.length, is(3));
+        assertThat(decode(parts[0]), is("{\"typ\":\"JWT\",\"alg\":\"HS256\"}"));
+        assertThat(decode(parts[1]), is("{\"iss\":\"" + SERVICE_ID + "\",\"iat\":" + NOW + "}"));
+
+        var mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(UTF_8), "HmacSHA256"));
+        var expectedSignature = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                mac.doFinal((parts[0] + "." + parts[1]).getBytes(UTF_8)));
+        assertThat(parts[2], is(expectedSignature));
+    }
+
+    @Test
+    @DisplayName("Reuses a token for a few seconds only")
+    void reusesTokenForFewSecondsOnly() {
+        var token = signerUnderTest.getToken();
+
+        now.addAndGet(NotifyTokenSigner.TOKEN_REUSE_SECONDS - 1);
+        assertThat(signerUnderTest.getToken(), is(token));
+
+        now.addAndGet(1);
+        assertThat(signerUnderTest.getToken(), is(not(token)));
+    }
+
+    @Test
+    @DisplayName("Tolerates a key too short to hold a service ID and secret")
+    void toleratesShortKey() {
+        var signer = new NotifyTokenSigner("fake-key-for-tests", now::get);
+
+        assertThat(signer.getServiceId(), is(""));
+        assertThat(signer.getToken().split("\\.").length, is(3));
+    }
+
+    private static String decode(String part) {
+        return new String(Base64.getUrlDecoder().decode(part), UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit-test")
+class PdfOutputStreamTest {
+
+    @Test
+    @DisplayName("Reads back exactly the bytes written, beyond the initial capacity")
+    void readsBackBytesWritten() throws Exception {
+        var outputStream = new PdfOutputStream(4);
+        outputStream.write("%PDF-1.4 content".getBytes(UTF_8));
+
+        try (var inputStream = outputStream.toInputStream()) {
+            assertThat(new String(inputStream.readAllBytes(), UTF_8), is("%PDF-1.4 content"));
+        }
+    }
+
+    @Test
+    @DisplayName("Reports the number of bytes written as available to read")
+    void reportsBytesAvailable() throws Exception {
+        var outputStream = new PdfOutputStream(1024);
+        outputStream.write(new byte[100]);
+
+        assertThat(outputStream.toInputStream().available(), is(100));
+    }
+
+}
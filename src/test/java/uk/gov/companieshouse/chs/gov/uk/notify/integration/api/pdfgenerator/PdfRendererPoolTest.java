@@ -0,0 +1,90 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class PdfRendererPoolTest {
+
+    @Mock
+    private SvgReplacedElementFactory svgReplacedElementFactory;
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    @DisplayName("Reuses a renderer released back to the pool")
+    void reusesReleasedRenderer() throws Exception {
+        var pool = new PdfRendererPool(svgReplacedElementFactory, 1, logger);
+
+        var renderer = pool.borrow();
+        pool.release(renderer);
+
+        assertThat(pool.borrow(), is(sameInstance(renderer)));
+    }
+
+    @Test
+    @DisplayName("Replaces a renderer discarded after a failed render")
+    void replacesDiscardedRenderer() throws Exception {
+        var pool = new PdfRendererPool(svgReplacedElementFactory, 1, logger);
+
+        var renderer = pool.borrow();
+        pool.discard(renderer);
+
+        assertThat(pool.borrow(), is(not(sameInstance(renderer))));
+    }
+
+    @Test
+    @DisplayName("Creates a renderer that failed to be replaced on the next borrow")
+    void createsFailedReplacementOnBorrow() throws Exception {
+        var pool = new PdfRendererPool(failingOnCalls(2), 1, logger);
+
+        var renderer = pool.borrow();
+        pool.discard(renderer);
+
+        assertThat(pool.borrow(), is(not(sameInstance(renderer))));
+    }
+
+    @Test
+    @DisplayName("Keeps trying to create a missing renderer on each borrow")
+    void retriesMissingRendererOnBorrow() throws Exception {
+        var pool = new PdfRendererPool(failingOnCalls(2, 3), 1, logger);
+
+        pool.discard(pool.borrow());
+
+        assertThrows(IOException.class, pool::borrow);
+        assertThat(pool.borrow(), is(notNullValue()));
+    }
+
+    private static Supplier<ITextRenderer> failingOnCalls(final int... failingCalls) {
+        var calls = new AtomicInteger();
+        return () -> {
+            var call = calls.incrementAndGet();
+            for (int failingCall : failingCalls) {
+                if (call == failingCall) {
+                    throw new UncheckedIOException(new IOException("Unable to register font"));
+                }
+            }
+            return new ITextRenderer();
+        };
+    }
+
+}
@@ -0,0 +1,105 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.pdf.PdfWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.svg.SVGDocument;
+
+/**
+ * Unit tests the {@link SvgArtworkCache}.
+ */
+@Tag("unit-test")
+class SvgArtworkCacheTest {
+
+    private static final String SVG_IMAGE = "assets/templates/letters/common/warning.svg";
+
+    private SVGDocument svg;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SvgArtworkCache cacheUnderTest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        var url = getClass().getClassLoader().getResource(SVG_IMAGE);
+        svg = new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName())
+                .createSVGDocument(url.toString());
+        meterRegistry = new SimpleMeterRegistry();
+        cacheUnderTest = new SvgArtworkCache(meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Draws each SVG image into a PDF once only")
+    void drawsEachImageIntoPdfOnceOnly() {
+        var contentByte = createPdfWriter().getDirectContent();
+
+        var first = cacheUnderTest.getTemplate(svg, contentByte, 20, 20);
+        var second = cacheUnderTest.getTemplate(svg, contentByte, 20, 20);
+
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    @DisplayName("Draws SVG image again at a different size")
+    void drawsImageAgainAtDifferentSize() {
+        var contentByte = createPdfWriter().getDirectContent();
+
+        var small = cacheUnderTest.getTemplate(svg, contentByte, 20, 20);
+        var large = cacheUnderTest.getTemplate(svg, contentByte, 40, 40);
+
+        assertThat(large, is(not(sameInstance(small))));
+    }
+
+    @Test
+    @DisplayName("Draws SVG image into each PDF it appears in")
+    void drawsImageIntoEachPdf() {
+        var first = cacheUnderTest.getTemplate(svg, createPdfWriter().getDirectContent(), 20, 20);
+        var second = cacheUnderTest.getTemplate(svg, createPdfWriter().getDirectContent(), 20, 20);
+
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    @Test
+    @DisplayName("Draws SVG image into a PDF again once its templates are released")
+    void drawsImageAgainOnceTemplatesReleased() {
+        var contentByte = createPdfWriter().getDirectContent();
+
+        var first = cacheUnderTest.getTemplate(svg, contentByte, 20, 20);
+        cacheUnderTest.releaseTemplates();
+        var second = cacheUnderTest.getTemplate(svg, contentByte, 20, 20);
+
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    @Test
+    @DisplayName("Times transcoding of SVG image once only, and drawing of it into each PDF")
+    void timesTranscodingOnceAndDrawingPerPdf() {
+        cacheUnderTest.getTemplate(svg, createPdfWriter().getDirectContent(), 20, 20);
+        cacheUnderTest.getTemplate(svg, createPdfWriter().getDirectContent(), 20, 20);
+
+        assertThat(meterRegistry.get(SvgArtworkCache.SVG_TRANSCODE_METRIC)
+                .tag("image", "warning.svg").timer().count(), is(1L));
+        assertThat(meterRegistry.get(SvgArtworkCache.SVG_DRAW_METRIC)
+                .tag("image", "warning.svg").timer().count(), is(2L));
+    }
+
+    private static PdfWriter createPdfWriter() {
+        var document = new Document();
+        var writer = PdfWriter.getInstance(document, new ByteArrayOutputStream());
+        document.open();
+        return writer;
+    }
+
+}
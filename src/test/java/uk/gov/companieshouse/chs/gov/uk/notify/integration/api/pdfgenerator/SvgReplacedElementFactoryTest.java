@@ -0,0 +1,88 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.render.BlockBox;
+import uk.gov.companieshouse.logging.Logger;
+
+/**
+ * Unit tests the caching of parsed SVG documents by the {@link SvgReplacedElementFactory}.
+ */
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class SvgReplacedElementFactoryTest {
+
+    private static final String SVG_IMAGE = "assets/templates/letters/common/warning.svg";
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private BlockBox box;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SvgReplacedElementFactory factoryUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factoryUnderTest = new SvgReplacedElementFactory(logger, meterRegistry,
+                new SvgArtworkCache(meterRegistry));
+    }
+
+    @Test
+    @DisplayName("Parses each SVG image once only")
+    void parsesEachSvgImageOnceOnly() throws Exception {
+        when(box.getElement()).thenReturn(createImageElement(), createImageElement());
+
+        assertThat(factoryUnderTest.createReplacedElement(null, box, null, 10, 10),
+                is(notNullValue()));
+        assertThat(factoryUnderTest.createReplacedElement(null, box, null, 10, 10),
+                is(notNullValue()));
+
+        assertThat(getCount("miss"), is(1.0));
+        assertThat(getCount("hit"), is(1.0));
+    }
+
+    @Test
+    @DisplayName("Parses SVG image again once the cache is cleared")
+    void parsesSvgImageAgainOnceCacheCleared() throws Exception {
+        when(box.getElement()).thenReturn(createImageElement(), createImageElement());
+
+        factoryUnderTest.createReplacedElement(null, box, null, 10, 10);
+        factoryUnderTest.clearCache();
+        factoryUnderTest.createReplacedElement(null, box, null, 10, 10);
+
+        assertThat(getCount("miss"), is(2.0));
+        assertThat(getCount("hit"), is(0.0));
+    }
+
+    private double getCount(final String result) {
+        return meterRegistry.counter("letter.svg.cache", "result", result).count();
+    }
+
+    private static Element createImageElement() throws Exception {
+        var html = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        var body = html.createElement("body");
+        html.appendChild(body);
+        var image = html.createElement("img");
+        image.setAttribute("src", SVG_IMAGE);
+        body.appendChild(image);
+        return image;
+    }
+
+}
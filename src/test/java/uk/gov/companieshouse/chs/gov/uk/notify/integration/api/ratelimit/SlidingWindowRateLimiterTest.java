@@ -0,0 +1,171 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ratelimit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests the {@link SlidingWindowRateLimiter}.
+ */
+@Tag("unit-test")
+class SlidingWindowRateLimiterTest {
+
+    private static final String KEY = "key";
+    private static final long START = 1_700_000_000_000L;
+
+    private AtomicLong now;
+
+    private SlidingWindowRateLimiter limiterUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(START);
+        limiterUnderTest = new SlidingWindowRateLimiter(3, Duration.ofMinutes(1), 60, now::get);
+    }
+
+    @Test
+    @DisplayName("Permits requests up to the limit within the window")
+    void permitsRequestsUpToLimit() {
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(true));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(true));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(true));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(false));
+        assertThat(limiterUnderTest.getCount(KEY), is(3));
+    }
+
+    @Test
+    @DisplayName("Does not count rejected requests")
+    void doesNotCountRejectedRequests() {
+        for (int i = 0; i < 10; i++) {
+            limiterUnderTest.tryAcquire(KEY);
+        }
+
+        assertThat(limiterUnderTest.getCount(KEY), is(3));
+    }
+
+    @Test
+    @DisplayName("Permits requests again once earlier requests leave the window")
+    void permitsRequestsOnceEarlierRequestsLeaveWindow() {
+        limiterUnderTest.tryAcquire(KEY);
+        now.addAndGet(30_000);
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.tryAcquire(KEY);
+
+        now.set(START + 59_999);
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(false));
+
+        now.set(START + 61_000);
+        assertThat(limiterUnderTest.getCount(KEY), is(2));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(true));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(false));
+
+        now.set(START + 91_000);
+        assertThat(limiterUnderTest.getCount(KEY), is(1));
+    }
+
+    @Test
+    @DisplayName("Forgets all requests once the window has passed many times over")
+    void forgetsRequestsAfterLongIdle() {
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.tryAcquire(KEY);
+
+        now.addAndGet(Duration.ofDays(1).toMillis());
+
+        assertThat(limiterUnderTest.getCount(KEY), is(0));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(true));
+    }
+
+    @Test
+    @DisplayName("Limits each key separately")
+    void limitsEachKeySeparately() {
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.tryAcquire(KEY);
+
+        assertThat(limiterUnderTest.tryAcquire("other"), is(true));
+        assertThat(limiterUnderTest.getCount("other"), is(1));
+        assertThat(limiterUnderTest.getCount("unused"), is(0));
+    }
+
+    @Test
+    @DisplayName("Applies a changed limit to the requests already counted")
+    void appliesChangedLimit() {
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.tryAcquire(KEY);
+
+        limiterUnderTest.setLimit(2);
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(false));
+
+        limiterUnderTest.setLimit(4);
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(true));
+    }
+
+    @Test
+    @DisplayName("Forgets all requests when reset")
+    void forgetsRequestsWhenReset() {
+        limiterUnderTest.tryAcquire(KEY);
+        limiterUnderTest.reset();
+
+        assertThat(limiterUnderTest.getCount(KEY), is(0));
+    }
+
+    @Test
+    @DisplayName("Never permits more than the limit to concurrent requests")
+    void neverPermitsMoreThanLimitConcurrently() throws Exception {
+        var limit = 1000;
+        var threads = 8;
+        var limiter = new SlidingWindowRateLimiter(limit, Duration.ofMinutes(1), 60, () -> START);
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threads; t++) {
+                Callable<Integer> acquirer = () -> {
+                    start.await();
+                    var permitted = 0;
+                    for (int i = 0; i < limit; i++) {
+                        if (limiter.tryAcquire(KEY)) {
+                            permitted++;
+                        }
+                    }
+                    return permitted;
+                };
+                results.add(executor.submit(acquirer));
+            }
+            start.countDown();
+
+            var permitted = 0;
+            for (var result : results) {
+                permitted += result.get();
+            }
+
+            assertThat(permitted, is(lessThanOrEqualTo(limit)));
+            assertThat(limiter.getCount(KEY), is(permitted));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Rejects a window that cannot be divided into equal slices")
+    void rejectsWindowThatCannotBeSliced() {
+        var window = Duration.ofMillis(1000);
+        assertThrows(IllegalArgumentException.class,
+                () -> new SlidingWindowRateLimiter(1, window, 7));
+    }
+
+}
@@ -0,0 +1,93 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.ratelimit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests the {@link TokenBucketRateLimiter}.
+ */
+@Tag("unit-test")
+class TokenBucketRateLimiterTest {
+
+    private static final String KEY = "key";
+
+    private AtomicLong now;
+
+    private TokenBucketRateLimiter limiterUnderTest;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(-Duration.ofHours(1).toNanos());
+        // One token a second, up to three.
+        limiterUnderTest = new TokenBucketRateLimiter(60, Duration.ofMinutes(1), 3, now::get);
+    }
+
+    @Test
+    @DisplayName("Permits a burst of requests up to the size of the bucket")
+    void permitsBurstUpToBucketSize() {
+        assertThat(limiterUnderTest.getAvailableTokens(KEY), is(3));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ZERO));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ZERO));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ZERO));
+        assertThat(limiterUnderTest.getAvailableTokens(KEY), is(0));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    @DisplayName("Reports how long it will be until the next token is added")
+    void reportsWaitForNextToken() {
+        drain();
+
+        now.addAndGet(Duration.ofMillis(400).toNanos());
+
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ofMillis(600)));
+    }
+
+    @Test
+    @DisplayName("Adds tokens at the rate configured")
+    void addsTokensAtRate() {
+        drain();
+
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        assertThat(limiterUnderTest.getAvailableTokens(KEY), is(2));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ZERO));
+        assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ZERO));
+        assertThat(limiterUnderTest.tryAcquire(KEY).isZero(), is(false));
+    }
+
+    @Test
+    @DisplayName("Holds no more tokens than the size of the bucket")
+    void holdsNoMoreThanBucketSize() {
+        drain();
+
+        now.addAndGet(Duration.ofHours(1).toNanos());
+
+        assertThat(limiterUnderTest.getAvailableTokens(KEY), is(3));
+        drain();
+        assertThat(limiterUnderTest.tryAcquire(KEY).isZero(), is(false));
+    }
+
+    @Test
+    @DisplayName("Limits each key separately")
+    void limitsEachKeySeparately() {
+        drain();
+
+        assertThat(limiterUnderTest.tryAcquire("other"), is(Duration.ZERO));
+        assertThat(limiterUnderTest.getAvailableTokens("other"), is(2));
+    }
+
+    private void drain() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiterUnderTest.tryAcquire(KEY), is(Duration.ZERO));
+        }
+    }
+
+}
@@ -11,16 +11,13 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.postSendLetterRequest;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.IS_WELSH;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser.parsePersonalisationDetails;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.JsonParser;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -42,9 +39,9 @@ import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTe
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.LetterRequestDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
 import uk.gov.service.notify.LetterResponse;
-import uk.gov.service.notify.NotificationClient;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
 
 @SpringBootTest(properties = {
@@ -58,7 +55,7 @@ class LetterSavingSenderRestApiIntegrationTest extends AbstractMongoDBTest {
     private MockMvc mockMvc;
 
     @MockitoBean
-    private NotificationClient notificationClient;
+    private NotifyTransport notifyTransport;
 
     private LetterRequestDao letterRequest = TestUtils.createLetterRequest();
 
@@ -122,16 +119,16 @@ class LetterSavingSenderRestApiIntegrationTest extends AbstractMongoDBTest {
 
     private void configureRequest(final String letterType, final String templateId,
             final String personalisationDetailsFilename, boolean isWelsh) throws IOException {
-        var personalisationDetails = JsonParser.parseString(resourceToString(
+        var personalisationDetails = parsePersonalisationDetails(resourceToString(
                 "/fixtures/personalisation-details/" + personalisationDetailsFilename + ".json",
-                UTF_8)).getAsJsonObject();
-        personalisationDetails.addProperty(IS_WELSH, isWelsh);
+                UTF_8));
+        personalisationDetails.put(IS_WELSH, isWelsh);
 
         var letterDetails = letterRequest.getLetterDetails();
 
         letterDetails.setLetterId(letterType);
         letterDetails.setTemplateId(templateId);
-        letterDetails.setPersonalisationDetails(personalisationDetails.toString());
+        letterDetails.setPersonalisationDetails(personalisationDetails);
     }
 
     private void saveRequestInDatabase() {
@@ -145,7 +142,7 @@ class LetterSavingSenderRestApiIntegrationTest extends AbstractMongoDBTest {
         // Given
         var responseReceived = new LetterResponse(
                 resourceToString("/fixtures/send-letter-response.json", UTF_8));
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 anyString(), any(InputStream.class), anyString())).thenReturn(responseReceived);
 
         // When and then
@@ -216,16 +213,15 @@ class LetterSavingSenderRestApiIntegrationTest extends AbstractMongoDBTest {
             assertThat(page1, containsString(addressLine7));
 
             // Personalisation details
-            Map<String,String> personalisationDetails =
-                    new ObjectMapper().readValue(letterRequest.getLetterDetails().getPersonalisationDetails(),
-                            new TypeReference<>() {});
-            var pscFullName = personalisationDetails.get("psc_name");
+            var personalisationDetails =
+                    letterRequest.getLetterDetails().getPersonalisationDetails();
+            var pscFullName = (String) personalisationDetails.get("psc_name");
             assertThat(page1, containsString(pscFullName));
-            var companyName = personalisationDetails.get("company_name");
+            var companyName = (String) personalisationDetails.get("company_name");
             assertThat(page1, containsString(companyName));
-            var deadlineDate = personalisationDetails.get("idv_verification_due_date");
+            var deadlineDate = (String) personalisationDetails.get("idv_verification_due_date");
             assertThat(page1, containsString(deadlineDate));
-            var startDate = personalisationDetails.get("idv_start_date");
+            var startDate = (String) personalisationDetails.get("idv_start_date");
             assertThat(page1, containsString(startDate));
         }
     }
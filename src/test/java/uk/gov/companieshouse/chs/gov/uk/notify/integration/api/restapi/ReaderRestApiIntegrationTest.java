@@ -21,13 +21,12 @@ import static uk.gov.companieshouse.api.util.security.SecurityConstants.INTERNAL
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils.getPageText;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.Constants.DATE_FORMATTER;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Tags;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Map;
 import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -37,6 +36,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
@@ -47,9 +47,10 @@ import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.AbstractMongoDBTe
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.LetterRequestDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.sentletterfetcher.RenderedLetterCache;
 import uk.gov.service.notify.LetterResponse;
-import uk.gov.service.notify.NotificationClient;
 
 @SpringBootTest(properties =
         {"logging.level.org.springframework.data.mongodb.core.MongoTemplate=DEBUG"})
@@ -79,18 +80,24 @@ class ReaderRestApiIntegrationTest extends AbstractMongoDBTest {
     @Autowired
     private MockMvc mockMvc;
 
-    @Autowired
-    private ObjectMapper objectMapper;
-
     @MockitoBean
-    private NotificationClient notificationClient;
+    private NotifyTransport notifyTransport;
 
     @MockitoSpyBean
     private HtmlPdfGenerator pdfGenerator;
 
+    @Autowired
+    private RenderedLetterCache renderedLetterCache;
+
     @Mock
     private InputStream precompiledPdfInputStream;
 
+    @BeforeEach
+    void setUp() {
+        // Tests view identical letters, so each must render its letter afresh.
+        renderedLetterCache.clear();
+    }
+
     @Test
     void When_RequestingNonExistentEmailById_Expect_NotFoundResponse() throws Exception {
         String nonExistentId = "nonexistent123456789";
@@ -183,9 +190,12 @@ class ReaderRestApiIntegrationTest extends AbstractMongoDBTest {
         var letterRequest = createLetter();
 
         // When and then
-        var letterPdf = viewLetterPdfByReference(TOKEN_REFERENCE,
-                status().isOk()).andReturn().getResponse().getContentAsByteArray();
+        var response = viewLetterPdfByReference(TOKEN_REFERENCE,
+                status().isOk()).andReturn().getResponse();
+        var letterPdf = response.getContentAsByteArray();
 
+        assertThat(response.getHeader(HttpHeaders.CONTENT_LENGTH),
+                is(String.valueOf(letterPdf.length)));
         assertThat(log.getAll().contains(EXPECTED_SECURITY_OK_LOG_MESSAGE), is(true));
         assertThat(log.getAll().contains(
                 getExpectedViewLetterInvocationLogMessage(
@@ -202,10 +212,8 @@ class ReaderRestApiIntegrationTest extends AbstractMongoDBTest {
         var page1 = getPageText(document, 1);
 
         // Check letter sending date in letter PDF is the calculated date provided
-        Map<String,String> personalisationDetails =
-                objectMapper.readValue(letterRequest.getLetterDetails().getPersonalisationDetails(),
-                        new TypeReference<>() {});
-        var calculatedDate = personalisationDetails.get("idv_start_date");
+        var calculatedDate = letterRequest.getLetterDetails().getPersonalisationDetails()
+                .get("idv_start_date");
         assertThat(page1, containsString("Date:\n" + calculatedDate));
 
     }
@@ -259,8 +267,9 @@ class ReaderRestApiIntegrationTest extends AbstractMongoDBTest {
         // Given
         createLetter();
 
-        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class));
-        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString()))
+        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class),
+                any(Tags.class));
+        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString(), any(Tags.class)))
                 .thenThrow(new IOException("Thrown by test."));
 
         // When and then
@@ -284,8 +293,9 @@ class ReaderRestApiIntegrationTest extends AbstractMongoDBTest {
         // Given
         createLetter();
 
-        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class));
-        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString()))
+        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class),
+                any(Tags.class));
+        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString(), any(Tags.class)))
                 .thenReturn(precompiledPdfInputStream);
         doThrow(new IOException("Thrown by test.")).when(precompiledPdfInputStream).close();
 
@@ -310,7 +320,7 @@ class ReaderRestApiIntegrationTest extends AbstractMongoDBTest {
     private NotificationLetterRequest saveLetter(LetterRequestDao request) throws Exception {
         var responseReceived = new LetterResponse(
                 resourceToString("/fixtures/send-letter-response.json", UTF_8));
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 anyString(), any(InputStream.class), anyString())).thenReturn(responseReceived);
 
         return notificationLetterRequestRepository.save(new NotificationLetterRequest(request));
@@ -27,14 +27,16 @@ import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.constants.ContextVariables.TRIGGERING_EVENT_DATE;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService.ERROR_MESSAGE_KEY;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService.NIL_UUID;
+import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.utils.PersonalisationDetailsParser.parsePersonalisationDetails;
 
-import com.google.gson.JsonParser;
 import com.lowagie.text.pdf.PdfWriter;
 import com.lowagie.text.pdf.PdfXConformanceException;
 import com.lowagie.text.pdf.internal.PdfXConformanceImp;
+import io.micrometer.core.instrument.Tags;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.Objects;
 import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
 import org.apache.commons.lang3.StringUtils;
@@ -62,13 +64,13 @@ import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.AddressDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.LetterRequestDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.HtmlPdfGenerator;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.pdfgenerator.SvgReplacedElementFactory;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatelookup.TemplateLookup;
 import uk.gov.service.notify.LetterResponse;
-import uk.gov.service.notify.NotificationClient;
 import uk.gov.service.notify.NotificationClientException;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
 
@@ -149,7 +151,7 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
     private MockMvc mockMvc;
 
     @MockitoBean
-    private NotificationClient notificationClient;
+    private NotifyTransport notifyTransport;
 
     @MockitoSpyBean
     private HtmlPdfGenerator pdfGenerator;
@@ -182,7 +184,7 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
         var responseReceived = new LetterResponse(
                 resourceToString("/fixtures/send-letter-response.json", UTF_8));
         var capturedFileSignature = new StringBuilder();
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 anyString(), any(InputStream.class), anyString()))
                 .thenAnswer(invocation -> {
                     InputStream inputStream = invocation.getArgument(1);
@@ -215,10 +217,11 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
     @DisplayName("Send letter with unparsable personalisation details")
     void sendLetterWithUnparsablePersonalisationDetails(CapturedOutput log) throws Exception {
         // Given
-        var personalisationDetailsString = letterRequest.getLetterDetails()
-                .getPersonalisationDetails().replace("}", ",}"); // this comma makes it unparsable
-        letterRequest.getLetterDetails()
-                .setPersonalisationDetails(personalisationDetailsString);
+        // As saved before personalisation details were held as a sub-document.
+        var personalisationDetailsString = TestUtils.PERSONALISATION_DETAILS
+                .replace("}", ",}"); // this comma makes it unparsable
+        TestUtils.setLegacyPersonalisationDetails(letterRequest.getLetterDetails(),
+                personalisationDetailsString);
         saveRequestInDatabase();
 
         // When and then
@@ -244,7 +247,7 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
         // status code rather than the 403 status code expected. Unfortunately, the relevant
         // NotificationClientException constructor is package accessible only. For the purposes
         // of this test however, it's good enough.
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 anyString(), any(InputStream.class), anyString()))
                 .thenThrow(
                         new NotificationClientException(INVALID_GOV_NOTIFY_API_KEY_ERROR_MESSAGE));
@@ -387,8 +390,9 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
     void sendLetterReportsPdfIOException(CapturedOutput log) throws Exception {
 
         // Given
-        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class));
-        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString()))
+        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class),
+                any(Tags.class));
+        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString(), any(Tags.class)))
                 .thenThrow(new IOException("Thrown by test."));
 
         saveRequestInDatabase();
@@ -412,11 +416,12 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
         // Given
         var responseReceived = new LetterResponse(
                 resourceToString("/fixtures/send-letter-response.json", UTF_8));
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 anyString(), any(InputStream.class), anyString())).thenReturn(responseReceived);
 
-        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class));
-        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString()))
+        doNothing().when(pdfGenerator).generatePdfFromHtml(anyString(), any(OutputStream.class),
+                any(Tags.class));
+        when(pdfGenerator.generatePdfFromHtml(anyString(), anyString(), any(Tags.class)))
                 .thenReturn(precompiledPdfInputStream);
         doThrow(new IOException("Thrown by test.")).when(precompiledPdfInputStream).close();
 
@@ -446,6 +451,7 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
     void sendLetterReportsCreationSvgImageException(CapturedOutput log) throws Exception {
 
         // Given
+        svgReplacedElementFactory.clearCache();
         when(svgReplacedElementFactory.getDocumentFactory()).thenReturn(svgDocumentFactory);
         when(svgDocumentFactory.createSVGDocument(anyString())).
                 thenThrow(new IOException("Thrown by test."));
@@ -593,13 +599,10 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
 
         // Given
         var letterDetails = letterRequest.getLetterDetails();
-        var personalisationDetailsString = letterDetails.getPersonalisationDetails();
-        var personalisationDetails = JsonParser
-                .parseString(personalisationDetailsString)
-                .getAsJsonObject();
-        personalisationDetails.addProperty(REFERENCE, "Test reference");
+        var personalisationDetails = new HashMap<>(letterDetails.getPersonalisationDetails());
+        personalisationDetails.put(REFERENCE, "Test reference");
 
-        letterDetails.setPersonalisationDetails(personalisationDetails.toString());
+        letterDetails.setPersonalisationDetails(personalisationDetails);
         saveRequestInDatabase();
 
         // When and then
@@ -638,13 +641,10 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
     void sendLetterWithIncorrectlyFormattedDate(CapturedOutput log) throws Exception {
         // Given
         var letterDetails = letterRequest.getLetterDetails();
-        var personalisationDetailsString = letterDetails.getPersonalisationDetails();
-        var personalisationDetails = JsonParser
-                .parseString(personalisationDetailsString)
-                .getAsJsonObject();
-        personalisationDetails.addProperty(TRIGGERING_EVENT_DATE, "Monday, 30 June 2025");
+        var personalisationDetails = new HashMap<>(letterDetails.getPersonalisationDetails());
+        personalisationDetails.put(TRIGGERING_EVENT_DATE, "Monday, 30 June 2025");
 
-        letterDetails.setPersonalisationDetails(personalisationDetails.toString());
+        letterDetails.setPersonalisationDetails(personalisationDetails);
         saveRequestInDatabase();
 
         // When and then
@@ -664,14 +664,10 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
     void sendLetterWithIncorrectlyNamedMonth(CapturedOutput log) throws Exception {
         // Given
         var letterDetails = letterRequest.getLetterDetails();
-        var personalisationDetailsString = letterDetails.getPersonalisationDetails();
-
-        var personalisationDetails = JsonParser
-                .parseString(personalisationDetailsString)
-                .getAsJsonObject();
-        personalisationDetails.addProperty(PSC_APPOINTMENT_DATE, "24 Jun 2025");
+        var personalisationDetails = new HashMap<>(letterDetails.getPersonalisationDetails());
+        personalisationDetails.put(PSC_APPOINTMENT_DATE, "24 Jun 2025");
 
-        letterDetails.setPersonalisationDetails(personalisationDetails.toString());
+        letterDetails.setPersonalisationDetails(personalisationDetails);
         saveRequestInDatabase();
 
         // When and then
@@ -702,7 +698,7 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
 
         var responseReceived = new LetterResponse(
                 resourceToString("/fixtures/send-letter-response.json", UTF_8));
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 eq(govNotifyReference), any(InputStream.class), eq("economy")))
                 .thenReturn(responseReceived);
 
@@ -744,7 +740,7 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
         }
         var responseReceived = new LetterResponse(
                 resourceToString("/fixtures/send-letter-response.json", UTF_8));
-        when(notificationClient.sendPrecompiledLetterWithInputStream(
+        when(notifyTransport.sendPrecompiledLetterWithInputStream(
                 eq(govNotifyReference), any(InputStream.class), eq("second")))
                 .thenReturn(responseReceived);
 
@@ -761,7 +757,8 @@ class SenderRestApiIntegrationTest extends AbstractMongoDBTest {
         String personalisationString = resourceToString("/fixtures/personalisation-details/" + personalisationDetailsFilename + ".json", UTF_8);
         letterRequest.getLetterDetails().setLetterId(letterType);
         letterRequest.getLetterDetails().setTemplateId(templateId);
-        letterRequest.getLetterDetails().setPersonalisationDetails(personalisationString);
+        letterRequest.getLetterDetails()
+                .setPersonalisationDetails(parsePersonalisationDetails(personalisationString));
     }
 
     private void verifyLetterResponseStoredCorrectly(LetterResponse receivedResponse) {
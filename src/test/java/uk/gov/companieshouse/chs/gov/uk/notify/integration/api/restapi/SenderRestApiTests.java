@@ -1,6 +1,7 @@
 package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.restapi;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -9,15 +10,16 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
+import static org.springframework.http.HttpStatus.ACCEPTED;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
-import java.util.Optional;
-import org.json.JSONObject;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,14 +32,19 @@ import org.springframework.http.ResponseEntity;
 import uk.gov.companieshouse.api.chs.notification.integration.model.EmailRequest;
 import uk.gov.companieshouse.api.chs.notification.integration.model.LetterRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterDispatcher;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterReference;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterSendWorker;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.EmailRequestDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.LetterRequestDao;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.RequestClaim;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.RequestClaim.Outcome;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry.SendRetryScheduler;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService.EmailResp;
 import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
@@ -54,7 +61,10 @@ class SenderRestApiTests {
             "verification_due_date", "15 February 2024",
             "welsh_verification_due_date", "15 Chwefror 2024"
     );
-    private static final String REQUEST_BODY_PERSONALISATION = new JSONObject().put("name", "Test User").put("verification_due_date", "15 February 2024").toString();
+    private static final Map<String, Object> REQUEST_BODY_PERSONALISATION = Map.of(
+            "name", "Test User",
+            "verification_due_date", "15 February 2024"
+    );
     private static final String XHEADER = "1";
     private static final String APP_ID = "chips";
 
@@ -67,6 +77,12 @@ class SenderRestApiTests {
     @Mock
     private LetterDispatcher letterDispatcher;
 
+    @Mock
+    private LetterSendWorker letterSendWorker;
+
+    @Mock
+    private SendRetryScheduler sendRetryScheduler;
+
     // This allows us to see what is logged during unit test execution, assuming that is
     // thought useful, when the logger is injected. If what is logged is
     // not of interest, then just inject the logger with @Mock.
@@ -97,13 +113,15 @@ class SenderRestApiTests {
                 VALID_PERSONALISATION);
         assertThat(response.getStatusCode()).isEqualTo(CREATED);
 
-        verify(notificationDatabaseService, times(2)).saveEmail(notificationRequest);
+        verify(notificationDatabaseService, times(1)).saveEmail(notificationRequest);
         assertThat(notificationRequest.getStatus()).isEqualTo(RequestStatus.SENT);
+        assertThat(emailRequest.getEmailDetails().getPersonalisationDetails())
+                .isEqualTo(REQUEST_BODY_PERSONALISATION);
     }
 
     @Test
     void whenEmailRequestAlreadySentExpectSkipRequest(){
-        NotificationEmailRequest notificationRequest = mockEmailRequest();
+        NotificationEmailRequest notificationRequest = mockEmailRequest(Outcome.ALREADY_SENT);
         notificationRequest.setStatus(RequestStatus.SENT);
 
         EmailRequest req = createSampleEmailRequest(notificationRequest.getRequest());
@@ -121,7 +139,8 @@ class SenderRestApiTests {
         String appId = emailRequest.getSenderDetails().getAppId();
         String reference = emailRequest.getSenderDetails().getReference();
         EmailRequest req = createSampleEmailRequest(emailRequest);
-        when(notificationDatabaseService.getEmail(appId, reference)).thenReturn(Optional.empty());
+        when(notificationDatabaseService.claimEmail(appId, reference))
+                .thenReturn(new RequestClaim<>(Outcome.NOT_FOUND, null));
 
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
 
@@ -135,21 +154,32 @@ class SenderRestApiTests {
     void whenEmailContainsBadDateVariablesExpectFailedToPublishWelshDatesError(){
         NotificationEmailRequest notificationRequest = mockEmailRequest();
         EmailRequestDao emailRequest = notificationRequest.getRequest();
-        emailRequest.getEmailDetails().setPersonalisationDetails(new JSONObject()
-                .put("name", "Test User")
-                .put("verification_due_date", "15  2024")
-                .toString());
+        emailRequest.getEmailDetails().setPersonalisationDetails(Map.of(
+                "name", "Test User",
+                "verification_due_date", "15  2024"));
 
-        when(notificationDatabaseService.saveEmail(notificationRequest))
-                .thenReturn(notificationRequest);
+        EmailRequest req = createSampleEmailRequest(emailRequest);
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST);
+
+        verify(notificationDatabaseService, never()).saveEmail(notificationRequest);
+        verify(notificationDatabaseService).failClaim(notificationRequest, NotificationEmailRequest.class);
+    }
+
+    @Test
+    void whenEmailPersonalisationDetailsUnparsableExpectBadRequest(){
+        NotificationEmailRequest notificationRequest = mockEmailRequest();
+        EmailRequestDao emailRequest = notificationRequest.getRequest();
+        TestUtils.setLegacyPersonalisationDetails(emailRequest.getEmailDetails(), "{\"name\":}");
 
         EmailRequest req = createSampleEmailRequest(emailRequest);
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
 
         assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST);
 
-        verify(notificationDatabaseService).saveEmail(notificationRequest);
-        assertThat(notificationRequest.getStatus()).isEqualTo(RequestStatus.PROCESSING);
+        verifyNoInteractions(govUKNotifyEmailFacade);
+        verify(notificationDatabaseService).failClaim(notificationRequest, NotificationEmailRequest.class);
     }
 
     @Test
@@ -162,16 +192,83 @@ class SenderRestApiTests {
         when(govUKNotifyEmailFacade.sendEmail(emaiAddress, templateId, reference,
                 VALID_PERSONALISATION)).thenReturn(new GovUkNotifyService.EmailResp(false, null));
 
-        when(notificationDatabaseService.saveEmail(notificationRequest))
-                .thenReturn(notificationRequest);
-
         EmailRequest req = createSampleEmailRequest(emailRequest);
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
 
         assertThat(response.getStatusCode()).isEqualTo(INTERNAL_SERVER_ERROR);
 
-        verify(notificationDatabaseService).saveEmail(notificationRequest);
-        assertThat(notificationRequest.getStatus()).isEqualTo(RequestStatus.PROCESSING);
+        verify(notificationDatabaseService, never()).saveEmail(notificationRequest);
+        verify(notificationDatabaseService).failClaim(notificationRequest, NotificationEmailRequest.class);
+    }
+
+    @Test
+    void whenEmailRateLimitReachedExpectClaimReleasedAndExceptionPropagated(){
+        NotificationEmailRequest notificationRequest = mockEmailRequest();
+        EmailRequestDao emailRequest = notificationRequest.getRequest();
+        String emaiAddress = emailRequest.getRecipientDetails().getEmailAddress();
+        String templateId = emailRequest.getEmailDetails().getTemplateId();
+        String reference = emailRequest.getSenderDetails().getReference();
+        when(govUKNotifyEmailFacade.sendEmail(emaiAddress, templateId, reference,
+                VALID_PERSONALISATION)).thenThrow(new NotifyRateLimitExceededException(
+                        "Gov Notify rate limit reached", Duration.ofSeconds(1)));
+
+        EmailRequest req = createSampleEmailRequest(emailRequest);
+
+        assertThatThrownBy(() -> notifyIntegrationSenderController.sendEmail(req, XHEADER))
+                .isInstanceOf(NotifyRateLimitExceededException.class);
+
+        verify(notificationDatabaseService, never()).storeResponse(any(EmailResp.class));
+        verify(notificationDatabaseService).releaseClaim(notificationRequest, NotificationEmailRequest.class);
+        verify(notificationDatabaseService, never()).failClaim(any(), any());
+    }
+
+    @Test
+    void whenEmailFailureRetryableExpectRetryScheduledAndAccepted(){
+        NotificationEmailRequest notificationRequest = mockEmailRequest();
+        EmailRequestDao emailRequest = notificationRequest.getRequest();
+        when(govUKNotifyEmailFacade.sendEmail(any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.EmailResp(false, null, 503));
+        when(sendRetryScheduler.scheduleRetry(notificationRequest, NotificationEmailRequest.class,
+                503)).thenReturn(true);
+
+        EmailRequest req = createSampleEmailRequest(emailRequest);
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
+
+        assertThat(response.getStatusCode()).isEqualTo(ACCEPTED);
+        verify(notificationDatabaseService, never()).saveEmail(any());
+        verify(notificationDatabaseService, never()).releaseClaim(any(), any());
+        verify(notificationDatabaseService, never()).failClaim(any(), any());
+    }
+
+    @Test
+    void whenEmailRateLimitReachedWithRetryEnabledExpectRetryScheduledAndAccepted(){
+        NotificationEmailRequest notificationRequest = mockEmailRequest();
+        EmailRequestDao emailRequest = notificationRequest.getRequest();
+        var retryAfter = Duration.ofSeconds(1);
+        when(govUKNotifyEmailFacade.sendEmail(any(), any(), any(), any()))
+                .thenThrow(new NotifyRateLimitExceededException(
+                        "Gov Notify rate limit reached", retryAfter));
+        when(sendRetryScheduler.scheduleRateLimitedRetry(notificationRequest,
+                NotificationEmailRequest.class, retryAfter)).thenReturn(true);
+
+        EmailRequest req = createSampleEmailRequest(emailRequest);
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
+
+        assertThat(response.getStatusCode()).isEqualTo(ACCEPTED);
+        verify(notificationDatabaseService, never()).releaseClaim(any(), any());
+    }
+
+    @Test
+    void whenEmailRequestAlreadyProcessingExpectConflict(){
+        NotificationEmailRequest notificationRequest = mockEmailRequest(Outcome.ALREADY_PROCESSING);
+
+        EmailRequest req = createSampleEmailRequest(notificationRequest.getRequest());
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendEmail(req, XHEADER);
+
+        assertThat(response.getStatusCode()).isEqualTo(CONFLICT);
+
+        verifyNoInteractions(govUKNotifyEmailFacade);
+        verify(notificationDatabaseService, never()).saveEmail(any());
     }
 
     @ParameterizedTest
@@ -207,7 +304,8 @@ class SenderRestApiTests {
 
         assertThat(response.getStatusCode()).isEqualTo(CREATED);
 
-        verify(notificationDatabaseService, times(2)).saveLetter(notificationRequest);
+        verify(notificationDatabaseService, times(1)).saveLetter(notificationRequest);
+        verify(notificationDatabaseService, never()).releaseClaim(any(), any());
         assertThat(notificationRequest.getStatus()).isEqualTo(RequestStatus.SENT);
     }
 
@@ -243,7 +341,8 @@ class SenderRestApiTests {
 
     @Test
     void sendLetter_shouldNotSendDuplicate_requestAlreadySent() {
-        NotificationLetterRequest letterRequest = mockLetterRequest("letterId", "other");
+        NotificationLetterRequest letterRequest = mockLetterRequest("letterId", "other",
+                Outcome.ALREADY_SENT);
         letterRequest.setStatus(RequestStatus.SENT);
         LetterRequest req = createSampleLetterRequest(letterRequest);
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context9999");
@@ -257,7 +356,8 @@ class SenderRestApiTests {
         String appId = "app";
         String reference = "reference";
         LetterRequest req = new LetterRequest(appId, reference);
-        when(notificationDatabaseService.getLetter(appId, reference)).thenReturn(Optional.empty());
+        when(notificationDatabaseService.claimLetter(appId, reference))
+                .thenReturn(new RequestClaim<>(Outcome.NOT_FOUND, null));
 
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context9999");
 
@@ -272,13 +372,43 @@ class SenderRestApiTests {
         when(letterDispatcher.sendLetter(any(), any(), any(), any(), any(), any()))
                 .thenReturn(new GovUkNotifyService.LetterResp(false, new LetterResponse("{ id: bff67204-a33f-4dcf-8ec3-49fa5fce0321 }")));
 
-        when(notificationDatabaseService.saveLetter(letterRequest)).thenReturn(letterRequest);
-
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context9999");
 
         assertThat(response.getStatusCode()).isEqualTo(INTERNAL_SERVER_ERROR);
-        verify(notificationDatabaseService).saveLetter(letterRequest);
-        assertThat(letterRequest.getStatus()).isEqualTo(RequestStatus.PROCESSING);
+        verify(notificationDatabaseService, never()).saveLetter(letterRequest);
+        verify(notificationDatabaseService).failClaim(letterRequest, NotificationLetterRequest.class);
+    }
+
+    @Test
+    void sendLetter_shouldReturnAccepted_whenRetryScheduledOnDispatcherFailure() throws Exception {
+        NotificationLetterRequest letterRequest = mockLetterRequest("letterId", "other");
+        LetterRequest req = createSampleLetterRequest(letterRequest);
+        when(letterDispatcher.sendLetter(any(), any(), any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.LetterResp(false, null, 500));
+        when(sendRetryScheduler.scheduleRetry(letterRequest, NotificationLetterRequest.class, 500))
+                .thenReturn(true);
+
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context9999");
+
+        assertThat(response.getStatusCode()).isEqualTo(ACCEPTED);
+        verify(notificationDatabaseService, never()).saveLetter(letterRequest);
+        verify(notificationDatabaseService, never()).releaseClaim(any(), any());
+        verify(notificationDatabaseService, never()).failClaim(any(), any());
+    }
+
+    @Test
+    void sendLetter_shouldReleaseClaimAndPropagate_whenRateLimitedWithoutRetry() throws Exception {
+        NotificationLetterRequest letterRequest = mockLetterRequest("letterId", "other");
+        LetterRequest req = createSampleLetterRequest(letterRequest);
+        when(letterDispatcher.sendLetter(any(), any(), any(), any(), any(), any()))
+                .thenThrow(new NotifyRateLimitExceededException(
+                        "Gov Notify rate limit reached", Duration.ofSeconds(1)));
+
+        assertThatThrownBy(() -> notifyIntegrationSenderController.sendLetter(req, "context9999"))
+                .isInstanceOf(NotifyRateLimitExceededException.class);
+
+        verify(notificationDatabaseService).releaseClaim(letterRequest, NotificationLetterRequest.class);
+        verify(notificationDatabaseService, never()).failClaim(any(), any());
     }
 
     @Test
@@ -288,13 +418,41 @@ class SenderRestApiTests {
         when(letterDispatcher.sendLetter(any(), any(), any(), any(), any(), any()))
                 .thenThrow(new IOException("PDF error"));
 
-        when(notificationDatabaseService.saveLetter(letterRequest)).thenReturn(letterRequest);
-
         ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context0000");
 
         assertThat(response.getStatusCode()).isEqualTo(INTERNAL_SERVER_ERROR);
-        verify(notificationDatabaseService).saveLetter(letterRequest);
-        assertThat(letterRequest.getStatus()).isEqualTo(RequestStatus.PROCESSING);
+        verify(notificationDatabaseService, never()).saveLetter(letterRequest);
+        verify(notificationDatabaseService).failClaim(letterRequest, NotificationLetterRequest.class);
+    }
+
+    @Test
+    void sendLetter_shouldReturnConflict_requestAlreadyProcessing() {
+        NotificationLetterRequest letterRequest = mockLetterRequest("letterId", "other",
+                Outcome.ALREADY_PROCESSING);
+        LetterRequest req = createSampleLetterRequest(letterRequest);
+
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context9999");
+
+        assertThat(response.getStatusCode()).isEqualTo(CONFLICT);
+        verifyNoInteractions(letterDispatcher);
+        verify(notificationDatabaseService, never()).releaseClaim(any(), any());
+    }
+
+    @Test
+    void sendLetter_shouldReturnAccepted_whenSendingAsynchronously() {
+        NotificationLetterRequest letterRequest = createLetterRequest("letterId", "other");
+        letterRequest.setId("letter-request-id");
+        LetterRequest req = createSampleLetterRequest(letterRequest);
+        when(letterSendWorker.isEnabled()).thenReturn(true);
+        when(notificationDatabaseService.queueLetter(APP_ID, VALID_REFERENCE))
+                .thenReturn(new RequestClaim<>(Outcome.CLAIMED, letterRequest));
+
+        ResponseEntity<Void> response = notifyIntegrationSenderController.sendLetter(req, "context1111");
+
+        assertThat(response.getStatusCode()).isEqualTo(ACCEPTED);
+        assertThat(letterRequest.getStatus()).isEqualTo(RequestStatus.PENDING);
+        verify(letterSendWorker).submit("letter-request-id", "context1111");
+        verifyNoInteractions(letterDispatcher);
     }
 
     private LetterRequest createSampleLetterRequest(NotificationLetterRequest letterRequest) {
@@ -310,6 +468,19 @@ class SenderRestApiTests {
     }
 
     private NotificationLetterRequest mockLetterRequest(String letterId, String templateId) {
+        return mockLetterRequest(letterId, templateId, Outcome.CLAIMED);
+    }
+
+    private NotificationLetterRequest mockLetterRequest(String letterId, String templateId,
+                                                        Outcome claimOutcome) {
+        NotificationLetterRequest notificationRequest = createLetterRequest(letterId, templateId);
+        notificationRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimLetter(APP_ID, VALID_REFERENCE))
+                .thenReturn(new RequestClaim<>(claimOutcome, notificationRequest));
+        return notificationRequest;
+    }
+
+    private NotificationLetterRequest createLetterRequest(String letterId, String templateId) {
         String reference = VALID_REFERENCE;
         String appId = APP_ID;
         LetterRequestDao letterRequest = TestUtils.createLetterRequest();
@@ -320,12 +491,14 @@ class SenderRestApiTests {
         NotificationLetterRequest notificationRequest = new NotificationLetterRequest(
                 letterRequest);
         notificationRequest.setStatus(RequestStatus.PENDING);
-        when(notificationDatabaseService.getLetter(appId, reference))
-                .thenReturn(Optional.of(notificationRequest));
         return notificationRequest;
     }
 
     private NotificationEmailRequest mockEmailRequest() {
+        return mockEmailRequest(Outcome.CLAIMED);
+    }
+
+    private NotificationEmailRequest mockEmailRequest(Outcome claimOutcome) {
         String appId = APP_ID;
         String reference = VALID_REFERENCE;
         String templateId = VALID_TEMPLATE_ID;
@@ -336,9 +509,9 @@ class SenderRestApiTests {
         emailRequest.getEmailDetails().setPersonalisationDetails(REQUEST_BODY_PERSONALISATION);
         NotificationEmailRequest notificationRequest = new NotificationEmailRequest(
                 emailRequest);
-        notificationRequest.setStatus(RequestStatus.PENDING);
-        when(notificationDatabaseService.getEmail(appId, reference))
-                .thenReturn(Optional.of(notificationRequest));
+        notificationRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimEmail(appId, reference))
+                .thenReturn(new RequestClaim<>(claimOutcome, notificationRequest));
         return notificationRequest;
     }
 
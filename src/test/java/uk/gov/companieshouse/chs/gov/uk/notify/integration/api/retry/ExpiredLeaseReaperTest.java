@@ -0,0 +1,60 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class ExpiredLeaseReaperTest {
+
+    @Mock
+    private NotificationDatabaseService notificationDatabaseService;
+    @Mock
+    private SendRetryScheduler sendRetryScheduler;
+    @Mock
+    private Logger logger;
+
+    private ExpiredLeaseReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        reaper = new ExpiredLeaseReaper(notificationDatabaseService, sendRetryScheduler, logger);
+        when(sendRetryScheduler.getMaxAttempts()).thenReturn(8);
+    }
+
+    @Test
+    void schedulesExpiredRequestsForRetryWhenRetryingEnabled() {
+        when(sendRetryScheduler.isEnabled()).thenReturn(true);
+
+        reaper.releaseExpiredLeases();
+
+        verify(notificationDatabaseService).releaseExpiredLeases(
+                eq(NotificationEmailRequest.class), notNull(), eq(7));
+        verify(notificationDatabaseService).releaseExpiredLeases(
+                eq(NotificationLetterRequest.class), notNull(), eq(7));
+    }
+
+    @Test
+    void leavesExpiredRequestsForCallersWhenRetryingDisabled() {
+        reaper.releaseExpiredLeases();
+
+        verify(notificationDatabaseService).releaseExpiredLeases(
+                eq(NotificationEmailRequest.class), isNull(), eq(7));
+        verify(notificationDatabaseService).releaseExpiredLeases(
+                eq(NotificationLetterRequest.class), isNull(), eq(7));
+    }
+}
@@ -0,0 +1,160 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.letterdispatcher.LetterDispatcher;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationLetterRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.RequestStatus;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class SendRetryPollerTest {
+
+    private static final int BATCH_SIZE = 10;
+    private static final int POOL_SIZE = 2;
+
+    @Mock
+    private SendRetryScheduler sendRetryScheduler;
+    @Mock
+    private NotificationDatabaseService notificationDatabaseService;
+    @Mock
+    private GovUkNotifyService govUkNotifyService;
+    @Mock
+    private LetterDispatcher letterDispatcher;
+    @Mock
+    private Logger logger;
+
+    private SendRetryPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        poller = new SendRetryPoller(sendRetryScheduler, notificationDatabaseService,
+                govUkNotifyService, letterDispatcher, BATCH_SIZE, POOL_SIZE, logger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        poller.shutdown();
+    }
+
+    @Test
+    void sendsDueEmail() {
+        var emailRequest = dueEmail();
+        when(govUkNotifyService.sendEmail(any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.EmailResp(true, null));
+
+        poller.sendDueRequests();
+
+        verify(notificationDatabaseService).saveEmail(emailRequest);
+        assertThat(emailRequest.getStatus()).isEqualTo(RequestStatus.SENT);
+    }
+
+    @Test
+    void schedulesFurtherAttemptWhenEmailFailsAgain() {
+        var emailRequest = dueEmail();
+        when(govUkNotifyService.sendEmail(any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.EmailResp(false, null, 503));
+        when(sendRetryScheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class, 503))
+                .thenReturn(true);
+
+        poller.sendDueRequests();
+
+        verify(notificationDatabaseService, never()).saveEmail(any());
+        verify(notificationDatabaseService, never()).failClaim(any(), any());
+    }
+
+    @Test
+    void failsEmailOnceAttemptsUsedUp() {
+        var emailRequest = dueEmail();
+        when(govUkNotifyService.sendEmail(any(), any(), any(), any()))
+                .thenReturn(new GovUkNotifyService.EmailResp(false, null, 503));
+
+        poller.sendDueRequests();
+
+        verify(notificationDatabaseService)
+                .failClaim(emailRequest, NotificationEmailRequest.class);
+        verify(notificationDatabaseService, never()).releaseClaim(any(), any());
+    }
+
+    @Test
+    void schedulesRateLimitedLetterWithoutReleasingIt() throws Exception {
+        when(sendRetryScheduler.isEnabled()).thenReturn(true);
+        var letterRequest = new NotificationLetterRequest(TestUtils.createLetterRequest());
+        letterRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimDueRequests(NotificationLetterRequest.class,
+                BATCH_SIZE)).thenReturn(List.of(letterRequest));
+        var retryAfter = Duration.ofSeconds(2);
+        when(letterDispatcher.sendLetter(any(Postage.class), any(), any(), any(), any(), any()))
+                .thenThrow(new NotifyRateLimitExceededException("Gov Notify rate limit reached",
+                        retryAfter));
+
+        poller.sendDueRequests();
+
+        verify(sendRetryScheduler).scheduleRateLimitedRetry(letterRequest,
+                NotificationLetterRequest.class, retryAfter);
+        verify(notificationDatabaseService, never()).failClaim(any(), any());
+    }
+
+    @Test
+    void sendsClaimedRequestsConcurrently() throws Exception {
+        when(sendRetryScheduler.isEnabled()).thenReturn(true);
+        var emailRequests = List.of(
+                new NotificationEmailRequest(TestUtils.createEmailRequest()),
+                new NotificationEmailRequest(TestUtils.createEmailRequest()));
+        when(notificationDatabaseService.claimDueRequests(NotificationEmailRequest.class,
+                BATCH_SIZE)).thenReturn(emailRequests);
+        var sending = new CountDownLatch(POOL_SIZE);
+        when(govUkNotifyService.sendEmail(any(), any(), any(), any())).thenAnswer(invocation -> {
+            sending.countDown();
+            // Only returns once both emails are being sent at the same time.
+            assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+            return new GovUkNotifyService.EmailResp(true, null);
+        });
+
+        poller.sendDueRequests();
+
+        emailRequests.forEach(emailRequest ->
+                assertThat(emailRequest.getStatus()).isEqualTo(RequestStatus.SENT));
+    }
+
+    @Test
+    void claimsNothingWhenDisabled() {
+        poller.sendDueRequests();
+
+        verify(notificationDatabaseService, never()).claimDueRequests(any(), anyInt());
+        verifyNoInteractions(govUkNotifyService, letterDispatcher);
+    }
+
+    private NotificationEmailRequest dueEmail() {
+        when(sendRetryScheduler.isEnabled()).thenReturn(true);
+        var emailRequest = new NotificationEmailRequest(TestUtils.createEmailRequest());
+        emailRequest.setStatus(RequestStatus.PROCESSING);
+        when(notificationDatabaseService.claimDueRequests(NotificationEmailRequest.class,
+                BATCH_SIZE)).thenReturn(List.of(emailRequest));
+        return emailRequest;
+    }
+}
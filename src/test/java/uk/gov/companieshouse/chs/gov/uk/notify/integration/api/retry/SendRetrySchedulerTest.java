@@ -0,0 +1,142 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.TestUtils;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.model.NotificationEmailRequest;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.mongo.service.NotificationDatabaseService;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class SendRetrySchedulerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration BASE_DELAY = Duration.ofSeconds(30);
+    private static final Duration MAX_DELAY = Duration.ofMinutes(30);
+    private static final Duration RATE_LIMIT_SPREAD = Duration.ofMinutes(1);
+
+    @Mock
+    private NotificationDatabaseService notificationDatabaseService;
+
+    private double random;
+    private NotificationEmailRequest emailRequest;
+
+    private SendRetryScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        random = 0.0;
+        emailRequest = new NotificationEmailRequest(TestUtils.createEmailRequest());
+        scheduler = createScheduler(true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 500, 502, 503})
+    void schedulesRetryOfServerErrorsAndNoResponse(int httpStatus) {
+        var scheduled = scheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class,
+                httpStatus);
+
+        assertThat(scheduled).isTrue();
+        verify(notificationDatabaseService).scheduleAttempt(emailRequest,
+                NotificationEmailRequest.class, NOW.plus(BASE_DELAY.dividedBy(2)), true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {400, 403})
+    void doesNotRetryClientErrors(int httpStatus) {
+        var scheduled = scheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class,
+                httpStatus);
+
+        assertThat(scheduled).isFalse();
+        verify(notificationDatabaseService, never())
+                .scheduleAttempt(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void doublesDelayWithEachFailureUpToMaximum() {
+        assertThat(scheduler.backoff(1)).isEqualTo(BASE_DELAY);
+        assertThat(scheduler.backoff(2)).isEqualTo(BASE_DELAY.multipliedBy(2));
+        assertThat(scheduler.backoff(4)).isEqualTo(BASE_DELAY.multipliedBy(8));
+        assertThat(scheduler.backoff(7)).isEqualTo(MAX_DELAY);
+        assertThat(scheduler.backoff(100)).isEqualTo(MAX_DELAY);
+    }
+
+    @Test
+    void jittersDelayBetweenHalfAndAllOfBackoff() {
+        emailRequest.setFailureCount(2);
+        random = 0.5;
+
+        scheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class, 503);
+
+        verify(notificationDatabaseService).scheduleAttempt(emailRequest,
+                NotificationEmailRequest.class, NOW.plusSeconds(90), true);
+    }
+
+    @Test
+    void givesUpOnceAttemptsUsedUp() {
+        emailRequest.setFailureCount(MAX_ATTEMPTS - 1);
+
+        var scheduled = scheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class,
+                503);
+
+        assertThat(scheduled).isFalse();
+        verify(notificationDatabaseService, never())
+                .scheduleAttempt(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void schedulesRateLimitedRetryWithoutCountingFailure() {
+        random = 0.5;
+
+        var scheduled = scheduler.scheduleRateLimitedRetry(emailRequest,
+                NotificationEmailRequest.class, Duration.ofSeconds(5));
+
+        assertThat(scheduled).isTrue();
+        verify(notificationDatabaseService).scheduleAttempt(emailRequest,
+                NotificationEmailRequest.class, NOW.plusSeconds(35), false);
+    }
+
+    @Test
+    void treatsGovNotifyRateLimitAsRateLimitedRatherThanFailure() {
+        emailRequest.setFailureCount(MAX_ATTEMPTS - 1);
+
+        var scheduled = scheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class,
+                429);
+
+        assertThat(scheduled).isTrue();
+        verify(notificationDatabaseService).scheduleAttempt(emailRequest,
+                NotificationEmailRequest.class, NOW, false);
+    }
+
+    @Test
+    void schedulesNothingWhenDisabled() {
+        var disabledScheduler = createScheduler(false);
+
+        assertThat(disabledScheduler.scheduleRetry(emailRequest, NotificationEmailRequest.class,
+                503)).isFalse();
+        assertThat(disabledScheduler.scheduleRateLimitedRetry(emailRequest,
+                NotificationEmailRequest.class, Duration.ofSeconds(1))).isFalse();
+        verify(notificationDatabaseService, never())
+                .scheduleAttempt(any(), any(), any(), anyBoolean());
+    }
+
+    private SendRetryScheduler createScheduler(boolean enabled) {
+        return new SendRetryScheduler(notificationDatabaseService, enabled, MAX_ATTEMPTS,
+                BASE_DELAY, MAX_DELAY, RATE_LIMIT_SPREAD, () -> NOW, () -> random);
+    }
+}
@@ -0,0 +1,204 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.sentletterfetcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit-test")
+class RenderedLetterCacheTest {
+
+    private static final long MAX_DISK_BYTES = 100;
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    @DisplayName("Derives the same key from the same values only")
+    void derivesKeysFromValues() {
+        var cache = createCache(1024, "");
+
+        assertThat(cache.keyOf("a", "bc"), is(cache.keyOf("a", "bc")));
+        assertThat(cache.keyOf("a", "bc"), is(not(cache.keyOf("ab", "c"))));
+        assertThat(cache.keyOf("a", null), is(not(cache.keyOf("a"))));
+    }
+
+    @Test
+    @DisplayName("Derives a different key from the same values once the templates change")
+    void derivesKeysFromTemplatesVersion() {
+        var cache = createCache(1024, "");
+        var redeployedCache = new RenderedLetterCache(1024, "", MAX_DISK_BYTES, TIME_TO_LIVE,
+                "templates-v2", logger);
+
+        assertThat(redeployedCache.keyOf("a", "bc"), is(not(cache.keyOf("a", "bc"))));
+    }
+
+    @Test
+    @DisplayName("Hashes the letter template assets deployed as their version")
+    void hashesTemplateAssets() {
+        assertThat(RenderedLetterCache.hashTemplateAssets(),
+                is(RenderedLetterCache.hashTemplateAssets()));
+    }
+
+    @Test
+    @DisplayName("Renders a letter PDF once and serves it from memory thereafter")
+    void rendersOnce() throws Exception {
+        var cache = createCache(1024, "");
+        var renders = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            var pdf = cache.get("key", () -> {
+                renders.incrementAndGet();
+                return new byte[] {1, 2, 3};
+            });
+            assertThat(pdf.readAllBytes(), is(new byte[] {1, 2, 3}));
+        }
+
+        assertThat(renders.get(), is(1));
+    }
+
+    @Test
+    @DisplayName("Evicts the least recently viewed letter PDF once over the size limit")
+    void evictsLeastRecentlyUsed() throws Exception {
+        var cache = createCache(20, "");
+        var renders = new AtomicInteger();
+        RenderedLetterCache.LetterRenderer renderer = () -> {
+            renders.incrementAndGet();
+            return new byte[10];
+        };
+
+        cache.get("first", renderer);
+        cache.get("second", renderer);
+        cache.get("first", renderer);
+        cache.get("third", renderer);
+        assertThat(renders.get(), is(3));
+
+        cache.get("first", renderer);
+        assertThat(renders.get(), is(3));
+        cache.get("second", renderer);
+        assertThat(renders.get(), is(4));
+    }
+
+    @Test
+    @DisplayName("Reads a letter PDF evicted from memory back from disk")
+    void readsBackFromDisk(@TempDir Path directory) throws Exception {
+        var cache = createCache(1024, directory.toString());
+        var renders = new AtomicInteger();
+        RenderedLetterCache.LetterRenderer renderer = () -> {
+            renders.incrementAndGet();
+            return new byte[] {4, 5, 6};
+        };
+
+        cache.get("key", renderer);
+        cache.clear();
+
+        assertThat(cache.get("key", renderer).readAllBytes(), is(new byte[] {4, 5, 6}));
+        assertThat(renders.get(), is(1));
+    }
+
+    @Test
+    @DisplayName("Deletes letter PDFs from disk once unused for longer than the time to live")
+    void evictsExpiredFromDisk(@TempDir Path directory) throws Exception {
+        var cache = createCache(1024, directory.toString());
+        cache.get("expired", () -> new byte[] {1});
+        cache.get("current", () -> new byte[] {2});
+        Files.setLastModifiedTime(directory.resolve("expired.pdf"),
+                FileTime.from(Instant.now().minus(TIME_TO_LIVE).minusSeconds(1)));
+
+        cache.evictFromDisk();
+
+        assertThat(Files.exists(directory.resolve("expired.pdf")), is(false));
+        assertThat(Files.exists(directory.resolve("current.pdf")), is(true));
+    }
+
+    @Test
+    @DisplayName("Deletes the least recently used letter PDFs from disk once over the size limit")
+    void evictsLeastRecentlyUsedFromDisk(@TempDir Path directory) throws Exception {
+        var cache = createCache(1024, directory.toString());
+        var now = Instant.now();
+        for (int i = 0; i < 3; i++) {
+            var key = "letter" + i;
+            cache.get(key, () -> new byte[(int) MAX_DISK_BYTES / 2]);
+            Files.setLastModifiedTime(directory.resolve(key + ".pdf"),
+                    FileTime.from(now.minusSeconds(10L - i)));
+        }
+        cache.clear();
+        // Reading the oldest PDF back from disk marks it as the most recently used.
+        cache.get("letter0", () -> new byte[0]);
+
+        cache.evictFromDisk();
+
+        assertThat(Files.exists(directory.resolve("letter0.pdf")), is(true));
+        assertThat(Files.exists(directory.resolve("letter1.pdf")), is(false));
+        assertThat(Files.exists(directory.resolve("letter2.pdf")), is(true));
+    }
+
+    @Test
+    @DisplayName("Renders a letter PDF requested concurrently only once")
+    void rendersConcurrentRequestsOnce() throws Exception {
+        var cache = createCache(1024, "");
+        var renders = new AtomicInteger();
+        var rendering = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        RenderedLetterCache.LetterRenderer renderer = () -> {
+            renders.incrementAndGet();
+            rendering.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[] {7};
+        };
+
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            Future<byte[]> first = executor.submit(() -> cache.get("key", renderer).readAllBytes());
+            rendering.await();
+            Future<byte[]> second = executor.submit(() -> cache.get("key", renderer).readAllBytes());
+            release.countDown();
+
+            assertThat(first.get(), is(new byte[] {7}));
+            assertThat(second.get(), is(new byte[] {7}));
+        }
+        assertThat(renders.get(), is(1));
+    }
+
+    @Test
+    @DisplayName("Does not cache a letter PDF that failed to render")
+    void doesNotCacheFailure() throws Exception {
+        var cache = createCache(1024, "");
+
+        assertThrows(IOException.class, () -> cache.get("key", () -> {
+            throw new IOException("Thrown by test.");
+        }));
+
+        assertThat(cache.get("key", () -> new byte[] {8}).readAllBytes(), is(new byte[] {8}));
+    }
+
+    private RenderedLetterCache createCache(final long maxBytes, final String directory) {
+        return new RenderedLetterCache(maxBytes, directory, MAX_DISK_BYTES, TIME_TO_LIVE,
+                "templates-v1", logger);
+    }
+
+}
@@ -3,6 +3,10 @@ package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -25,8 +29,9 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.exception.NotifyRateLimitExceededException;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.notifytransport.NotifyTransport;
 import uk.gov.service.notify.LetterResponse;
-import uk.gov.service.notify.NotificationClient;
 import uk.gov.service.notify.NotificationClientException;
 import uk.gov.service.notify.SendEmailResponse;
 
@@ -41,6 +46,8 @@ import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.GovUkNotifyService.ERROR_MESSAGE_KEY;
@@ -51,7 +58,7 @@ public class GovUKNotifyServiceTest {
     private GovUkNotifyService govUkNotifyService;
 
     @Mock
-    private NotificationClient mockClient;
+    private NotifyTransport mockClient;
 
     @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
@@ -78,7 +85,7 @@ public class GovUKNotifyServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
-        ProxyFactory factory = new ProxyFactory(new GovUkNotifyService(mockClient, objectMapper));
+        ProxyFactory factory = new ProxyFactory(new GovUkNotifyService(mockClient, objectMapper, 20, 5, 2900, 100, 1));
         Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
         factory.addAdvice(new MethodValidationInterceptor(validator));
         govUkNotifyService = (GovUkNotifyService) factory.getProxy();
@@ -285,4 +292,96 @@ public class GovUKNotifyServiceTest {
             );
         }
     }
+
+    @Nested
+    @DisplayName("Concurrency Limit Tests")
+    class ConcurrencyLimitTests {
+
+        @Test
+        @DisplayName("When_EmailPermitUnavailable_Expect_CallWaitsForPermit")
+        void When_EmailPermitUnavailable_Expect_CallWaitsForPermit() throws Exception {
+            var limitedService = new GovUkNotifyService(mockClient, objectMapper, 1, 1, 2900, 100, 1);
+            var firstCallStarted = new CountDownLatch(1);
+            var releaseFirstCall = new CountDownLatch(1);
+            var callsInFlight = new AtomicInteger();
+            var maxCallsInFlight = new AtomicInteger();
+            when(mockEmailResponse.getNotificationId()).thenReturn(UUID.randomUUID());
+            when(mockClient.sendEmail(anyString(), anyString(), anyMap(), anyString())).thenAnswer(invocation -> {
+                maxCallsInFlight.accumulateAndGet(callsInFlight.incrementAndGet(), Math::max);
+                firstCallStarted.countDown();
+                releaseFirstCall.await(5, TimeUnit.SECONDS);
+                callsInFlight.decrementAndGet();
+                return mockEmailResponse;
+            });
+
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                var first = executor.submit(() -> limitedService.sendEmail(VALID_EMAIL, VALID_TEMPLATE_ID, VALID_REFERENCE, VALID_PERSONALISATION));
+                assertTrue(firstCallStarted.await(5, TimeUnit.SECONDS));
+                var second = executor.submit(() -> limitedService.sendEmail(VALID_EMAIL, VALID_TEMPLATE_ID, VALID_REFERENCE, VALID_PERSONALISATION));
+                releaseFirstCall.countDown();
+
+                assertTrue(first.get(5, TimeUnit.SECONDS).success());
+                assertTrue(second.get(5, TimeUnit.SECONDS).success());
+            }
+            assertEquals(1, maxCallsInFlight.get());
+        }
+
+        @Test
+        @DisplayName("When_InterruptedAwaitingLetterPermit_Expect_SendLetterReturnsFalse")
+        void When_InterruptedAwaitingLetterPermit_Expect_SendLetterReturnsFalse() throws NotificationClientException {
+            Thread.currentThread().interrupt();
+            try {
+                GovUkNotifyService.LetterResp result = govUkNotifyService.sendLetter(Postage.ECONOMY, VALID_REFERENCE, mockPdf);
+
+                assertFalse(result.success());
+                assertNull(result.response());
+                assertTrue(Thread.currentThread().isInterrupted());
+            } finally {
+                Thread.interrupted();
+            }
+            verify(mockClient, never()).sendPrecompiledLetterWithInputStream(anyString(), any(), anyString());
+        }
+    }
+
+    @Nested
+    @DisplayName("Rate Limit Tests")
+    class RateLimitTests {
+
+        @Test
+        @DisplayName("When_RateLimitReached_Expect_EmailsAndLettersRejectedWithoutCallingNotify")
+        void When_RateLimitReached_Expect_EmailsAndLettersRejectedWithoutCallingNotify() throws NotificationClientException {
+            var limitedService = new GovUkNotifyService(mockClient, objectMapper, 20, 5, 60, 2, 1);
+            when(mockEmailResponse.getNotificationId()).thenReturn(UUID.randomUUID());
+            when(mockClient.sendEmail(anyString(), anyString(), anyMap(), anyString())).thenReturn(mockEmailResponse);
+            when(mockLetterResponse.getNotificationId()).thenReturn(UUID.randomUUID());
+            when(mockClient.sendPrecompiledLetterWithInputStream(anyString(), any(), anyString())).thenReturn(mockLetterResponse);
+
+            assertTrue(limitedService.sendEmail(VALID_EMAIL, VALID_TEMPLATE_ID, VALID_REFERENCE, VALID_PERSONALISATION).success());
+            assertTrue(limitedService.sendLetter(Postage.ECONOMY, VALID_REFERENCE, mockPdf).success());
+
+            var emailException = assertThrows(NotifyRateLimitExceededException.class,
+                    () -> limitedService.sendEmail(VALID_EMAIL, VALID_TEMPLATE_ID, VALID_REFERENCE, VALID_PERSONALISATION));
+            var letterException = assertThrows(NotifyRateLimitExceededException.class,
+                    () -> limitedService.sendLetter(Postage.ECONOMY, VALID_REFERENCE, mockPdf));
+
+            assertTrue(emailException.getRetryAfter().isPositive());
+            assertTrue(letterException.getRetryAfter().isPositive());
+            verify(mockClient, times(1)).sendEmail(anyString(), anyString(), anyMap(), anyString());
+            verify(mockClient, times(1)).sendPrecompiledLetterWithInputStream(anyString(), any(), anyString());
+        }
+
+        @Test
+        @DisplayName("When_SeveralInstances_Expect_EachLimitedToItsShareOfTheRate")
+        void When_SeveralInstances_Expect_EachLimitedToItsShareOfTheRate() throws NotificationClientException {
+            var limitedService = new GovUkNotifyService(mockClient, objectMapper, 20, 5, 60, 2, 2);
+            when(mockEmailResponse.getNotificationId()).thenReturn(UUID.randomUUID());
+            when(mockClient.sendEmail(anyString(), anyString(), anyMap(), anyString())).thenReturn(mockEmailResponse);
+
+            assertTrue(limitedService.sendEmail(VALID_EMAIL, VALID_TEMPLATE_ID, VALID_REFERENCE, VALID_PERSONALISATION).success());
+            assertThrows(NotifyRateLimitExceededException.class,
+                    () -> limitedService.sendEmail(VALID_EMAIL, VALID_TEMPLATE_ID, VALID_REFERENCE, VALID_PERSONALISATION));
+
+            verify(mockClient, times(1)).sendEmail(anyString(), anyString(), anyMap(), anyString());
+        }
+    }
 }
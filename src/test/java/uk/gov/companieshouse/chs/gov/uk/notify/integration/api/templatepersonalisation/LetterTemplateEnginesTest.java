@@ -0,0 +1,37 @@
+package uk.gov.companieshouse.chs.gov.uk.notify.integration.api.templatepersonalisation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests the {@link LetterTemplateEngines}.
+ */
+@Tag("unit-test")
+class LetterTemplateEnginesTest {
+
+    private static final String PREFIX_1 = "assets/templates/letters/chips/idv_psc_direction/";
+    private static final String PREFIX_2 = "assets/templates/letters/chips/idv_psc_default/";
+
+    private final LetterTemplateEngines templateEngines = new LetterTemplateEngines();
+
+    @Test
+    @DisplayName("Reuses the template engine for an assets directory")
+    void reusesTemplateEngineForAssetsDirectory() {
+        assertThat(templateEngines.getTemplateEngine(PREFIX_1),
+                is(sameInstance(templateEngines.getTemplateEngine(PREFIX_1))));
+    }
+
+    @Test
+    @DisplayName("Uses a separate template engine for each assets directory")
+    void usesSeparateTemplateEngineForEachAssetsDirectory() {
+        assertThat(templateEngines.getTemplateEngine(PREFIX_2),
+                is(not(sameInstance(templateEngines.getTemplateEngine(PREFIX_1)))));
+    }
+
+}
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import uk.gov.companieshouse.chs.gov.uk.notify.integration.api.service.Postage;
 import uk.gov.service.notify.LetterResponse;
 import uk.gov.service.notify.NotificationClientException;
 import uk.gov.service.notify.SendEmailResponse;
@@ -34,6 +35,7 @@ class MockNotificationClientRateLimitTest {
     private static final String TEST_TEMPLATE_ID = UUID.randomUUID().toString();
     private static final String TEST_EMAIL = "test@example.com";
     private static final InputStream TEST_PDF = new ByteArrayInputStream("test content".getBytes());
+    private static final String TEST_POSTAGE = Postage.ECONOMY.toString();
 
     @BeforeEach
     public void setup() {
@@ -143,7 +145,8 @@ class MockNotificationClientRateLimitTest {
         for (int i = 0; i < mockClient.getMinuteLimit(); i++) {
             LetterResponse response = mockClient.sendPrecompiledLetterWithInputStream(
                     MOCK_REFERENCE + "-" + i,
-                    TEST_PDF
+                    TEST_PDF,
+                    TEST_POSTAGE
             );
             assertNotNull(response);
             assertNotNull(response.getNotificationId());
@@ -155,7 +158,8 @@ class MockNotificationClientRateLimitTest {
                 NotificationClientException.class,
                 () -> mockClient.sendPrecompiledLetterWithInputStream(
                         MOCK_REFERENCE + "-limit-exceeded",
-                        TEST_PDF
+                        TEST_PDF,
+                    TEST_POSTAGE
                 )
         );
 
@@ -165,7 +169,8 @@ class MockNotificationClientRateLimitTest {
 
         LetterResponse response = mockClient.sendPrecompiledLetterWithInputStream(
                 MOCK_REFERENCE + "-after-reset",
-                TEST_PDF
+                TEST_PDF,
+                TEST_POSTAGE
         );
 
         assertNotNull(response);
@@ -192,7 +197,8 @@ class MockNotificationClientRateLimitTest {
         for (int i = 0; i < mockClient.getMinuteLimit() / 2; i++) {
             LetterResponse response = mockClient.sendPrecompiledLetterWithInputStream(
                     MOCK_REFERENCE + "-letter-" + i,
-                    TEST_PDF
+                    TEST_PDF,
+                    TEST_POSTAGE
             );
             assertNotNull(response);
         }
@@ -213,7 +219,8 @@ class MockNotificationClientRateLimitTest {
                 NotificationClientException.class,
                 () -> mockClient.sendPrecompiledLetterWithInputStream(
                         MOCK_REFERENCE + "-over-limit",
-                        TEST_PDF
+                        TEST_PDF,
+                    TEST_POSTAGE
                 )
         );
     }